@@ -0,0 +1,137 @@
+package com.shrey.banking.load;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open loop: starts operations at a fixed rate whether or not earlier ones have answered, picking each from a
+ * weighted mix. Latency runs from the moment an operation was due, so a stalled server shows up in the
+ * percentiles instead of quietly lowering the request rate.
+ */
+final class LoadDriver {
+    private static final long SEED = 42;
+
+    private final List<Operation> mix = new ArrayList<>();
+    private int totalWeight;
+
+    /**
+     * One kind of call; returns false, or throws, when it failed
+     */
+    @FunctionalInterface
+    interface Call {
+        boolean call() throws Exception;
+    }
+
+    LoadDriver add(String name, int weight, Call call) {
+        mix.add(new Operation(name, weight, call, new Recorder()));
+        totalWeight += weight;
+        return this;
+    }
+
+    /**
+     * A call that succeeds on any 2xx answer
+     */
+    static Call http(HttpClient http, Supplier<HttpRequest> request) {
+        return () -> {
+            HttpResponse<Void> response = http.send(request.get(), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 300;
+        };
+    }
+
+    LoadReport run(String scenario, double rate, Duration duration) {
+        Instant startedAt = Instant.now();
+        long interval = (long) (1e9 / rate);
+        long total = (long) (rate * duration.toMillis() / 1000);
+        Random random = new Random(SEED);
+
+        long start = System.nanoTime();
+        // Closing the pool waits for the calls still in flight
+        try (ExecutorService calls = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long due = start + i * interval;
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                Operation operation = pick(random);
+                calls.execute(() -> {
+                    boolean ok;
+                    try {
+                        ok = operation.call().call();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        ok = false;
+                    } catch (Exception e) {
+                        ok = false;
+                    }
+                    operation.recorder().record(System.nanoTime() - due, ok);
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        List<LoadReport.EndpointStats> endpoints = new ArrayList<>();
+        for (Operation operation : mix) {
+            endpoints.add(operation.recorder().stats(operation.name(), elapsed));
+        }
+        return new LoadReport(scenario, startedAt, rate, elapsed / 1e9, endpoints, new LinkedHashMap<>());
+    }
+
+    private Operation pick(Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Operation operation : mix) {
+            ticket -= operation.weight();
+            if (ticket < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+
+    private record Operation(String name, int weight, Call call, Recorder recorder) {
+    }
+
+    private static class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        synchronized void record(long nanos, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        synchronized LoadReport.EndpointStats stats(String name, long elapsedNanos) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            if (sorted.length == 0) {
+                return new LoadReport.EndpointStats(name, 0, errors, 0, 0, 0, 0, 0);
+            }
+            return new LoadReport.EndpointStats(name, sorted.length, errors, sorted.length / (elapsedNanos / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            return sorted[(int) Math.ceil(quantile * sorted.length) - 1] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.shrey.banking.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of one {@link LoadDriver} run. Written as JSON to {@code target/load-reports}, or {@code -Dload.report.dir},
+ * as {@code <scenario>.json} for the latest run plus a timestamped copy, so runs can be diffed or charted later.
+ * Each write prints the change against the previous latest run of the same scenario.
+ */
+record LoadReport(String scenario, Instant startedAt, double targetRate, double durationSeconds,
+                  List<EndpointStats> endpoints, Map<String, Long> counters) {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    record EndpointStats(String name, int requests, int errors, double throughput,
+                         double p50Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+
+    /**
+     * Adds a figure measured outside the driver, e.g. mails received by the stand-in SMTP server
+     */
+    LoadReport counter(String name, long value) {
+        counters.put(name, value);
+        return this;
+    }
+
+    Path write() throws IOException {
+        Path dir = Paths.get(System.getProperty("load.report.dir", "target/load-reports"));
+        Files.createDirectories(dir);
+        Path latest = dir.resolve(scenario + ".json");
+
+        print(Files.exists(latest) ? objectMapper.readValue(latest.toFile(), LoadReport.class) : null);
+
+        objectMapper.writeValue(dir.resolve(scenario + "-" + startedAt.toEpochMilli() + ".json").toFile(), this);
+        objectMapper.writeValue(latest.toFile(), this);
+        return latest;
+    }
+
+    private void print(LoadReport previous) {
+        System.out.println();
+        System.out.printf("%s: %.0f ops/s for %.0f s%n", scenario, targetRate, durationSeconds);
+        System.out.printf("%-28s %8s %7s %9s %9s %9s %9s %9s %12s%n",
+                "endpoint", "requests", "errors", "per sec", "p50 ms", "p99 ms", "p999 ms", "max ms", "p99 vs last");
+        for (EndpointStats stats : endpoints) {
+            EndpointStats before = previous != null ? previous.endpoint(stats.name()) : null;
+            String change = before != null && before.p99Ms() > 0
+                    ? String.format("%+.0f%%", (stats.p99Ms() / before.p99Ms() - 1) * 100)
+                    : "-";
+            System.out.printf("%-28s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %12s%n", stats.name(), stats.requests(),
+                    stats.errors(), stats.throughput(), stats.p50Ms(), stats.p99Ms(), stats.p999Ms(), stats.maxMs(), change);
+        }
+        counters.forEach((name, value) -> System.out.printf("%-28s %8d%n", name, value));
+    }
+
+    private EndpointStats endpoint(String name) {
+        return endpoints.stream().filter(stats -> stats.name().equals(name)).findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,46 @@
+package com.shrey.banking.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    // The same switch moves Tomcat, @Scheduled and the Kafka listeners onto virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Bean(name = "paymentExecutor")
+    public TaskExecutor paymentExecutor(@Value("${app.payments.workers:8}") int workers,
+                                        @Value("${app.payments.queue-capacity:100}") int queueCapacity) {
+        if (virtualThreads) {
+            // Workers mostly wait on transaction-service, so the limit is about its load, not about threads
+            return new VirtualThreadTaskExecutor("Payment-", workers);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("Payment-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "emailExecutor")
+    public TaskExecutor emailExecutor(@Value("${app.threads.virtual.email-concurrency:2}") int concurrency) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor("Email-", concurrency);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("Email-");
+        executor.initialize();
+        return executor;
+    }
+}
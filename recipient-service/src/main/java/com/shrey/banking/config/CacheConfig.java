@@ -0,0 +1,31 @@
+package com.shrey.banking.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String RECIPIENTS_CACHE = "recipients";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${app.cache.maximum-size:10000}") long maximumSize,
+                                     @Value("${app.cache.ttl:10m}") Duration ttl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(RECIPIENTS_CACHE);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats());
+        // Puts and evictions inside a DB transaction only take effect once it commits
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -0,0 +1,75 @@
+package com.shrey.banking.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Payment topics, only used when payments travel over Kafka. Both topics are keyed by recipient ID,
+ * so all events for one recipient land on one partition and stay in order. Replies that cannot be read or
+ * booked end up on a dead-letter topic, after a few retries for the ones that could be read.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.payments.transport", havingValue = "kafka")
+public class KafkaConfig {
+
+    @Value("${app.kafka.topics.partitions:6}")
+    private int partitions;
+
+    @Bean
+    public NewTopic paymentRequestedTopic(@Value("${app.kafka.topics.payment-requested}") String name) {
+        return TopicBuilder.name(name).partitions(partitions).build();
+    }
+
+    @Bean
+    public NewTopic transactionCreatedTopic(@Value("${app.kafka.topics.transaction-created}") String name) {
+        return TopicBuilder.name(name).partitions(partitions).build();
+    }
+
+    @Bean
+    public NewTopic transactionCreatedDeadLetterTopic(@Value("${app.kafka.topics.transaction-created-dead-letter}") String name) {
+        return TopicBuilder.name(name).partitions(partitions).build();
+    }
+
+    /**
+     * Picked up by the listener container factory. Records the deserializer could not read are not retried and
+     * go to the dead-letter topic as the original bytes, on the partition they came from; the rest go as JSON.
+     */
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(KafkaTemplate<String, Object> kafkaTemplate,
+                                                 KafkaProperties kafkaProperties,
+                                                 MeterRegistry meterRegistry,
+                                                 @Value("${app.kafka.topics.transaction-created-dead-letter}") String deadLetterTopic,
+                                                 @Value("${app.kafka.consumer.retry.attempts:2}") long retryAttempts,
+                                                 @Value("${app.kafka.consumer.retry.backoff-ms:1000}") long retryBackoffMs) {
+        KafkaTemplate<String, byte[]> rawTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                kafkaProperties.buildProducerProperties(null), new StringSerializer(), new ByteArraySerializer()));
+        // Most specific first
+        Map<Class<?>, KafkaOperations<?, ?>> templates = new LinkedHashMap<>();
+        templates.put(byte[].class, rawTemplate);
+        templates.put(Object.class, kafkaTemplate);
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(templates,
+                (record, e) -> {
+                    meterRegistry.counter("kafka.consumer.dead-lettered", "topic", record.topic()).increment();
+                    return new TopicPartition(deadLetterTopic, record.partition());
+                });
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(retryBackoffMs, retryAttempts));
+    }
+}
@@ -0,0 +1,72 @@
+package com.shrey.banking.config;
+
+import feign.FeignException;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JCircuitBreakerFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4jBulkheadConfigurationBuilder;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4jBulkheadProvider;
+import org.springframework.cloud.client.circuitbreaker.Customizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker and bulkhead defaults for the Feign clients (one instance of each per client method).
+ * Feign's own timeouts bound every call, so the time limiter is switched off in application.properties.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    public Customizer<Resilience4JCircuitBreakerFactory> circuitBreakerDefaults(
+            @Value("${app.transaction-client.circuit-breaker.sliding-window-size:50}") int slidingWindowSize,
+            @Value("${app.transaction-client.circuit-breaker.minimum-number-of-calls:20}") int minimumNumberOfCalls,
+            @Value("${app.transaction-client.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${app.transaction-client.circuit-breaker.slow-call-duration-threshold-ms:3000}") long slowCallDurationThresholdMs,
+            @Value("${app.transaction-client.circuit-breaker.slow-call-rate-threshold:80}") float slowCallRateThreshold,
+            @Value("${app.transaction-client.circuit-breaker.wait-duration-in-open-state-ms:10000}") long waitDurationInOpenStateMs,
+            @Value("${app.transaction-client.circuit-breaker.permitted-calls-in-half-open-state:5}") int permittedCallsInHalfOpenState) {
+        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(Duration.ofMillis(slowCallDurationThresholdMs))
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .waitDurationInOpenState(Duration.ofMillis(waitDurationInOpenStateMs))
+                .permittedNumberOfCallsInHalfOpenState(permittedCallsInHalfOpenState)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordException(ResilienceConfig::isServerTrouble)
+                .build();
+        return factory -> factory.configureDefault(id -> new Resilience4JConfigBuilder(id)
+                .circuitBreakerConfig(circuitBreakerConfig)
+                .build());
+    }
+
+    @Bean
+    public Customizer<Resilience4jBulkheadProvider> bulkheadDefaults(
+            @Value("${app.transaction-client.bulkhead.max-concurrent-calls:32}") int maxConcurrentCalls,
+            @Value("${app.transaction-client.bulkhead.max-wait-ms:100}") long maxWaitMs) {
+        BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ofMillis(maxWaitMs))
+                .build();
+        return provider -> provider.configureDefault(id -> new Resilience4jBulkheadConfigurationBuilder()
+                .bulkheadConfig(bulkheadConfig)
+                .build());
+    }
+
+    /**
+     * A 4xx says the request was wrong, not that the service is in trouble, so it does not trip the breaker
+     */
+    private static boolean isServerTrouble(Throwable e) {
+        if (e instanceof FeignException feignException) {
+            int status = feignException.status();
+            return status < 0 || status == 408 || status == 429 || status >= 500;
+        }
+        return true;
+    }
+}
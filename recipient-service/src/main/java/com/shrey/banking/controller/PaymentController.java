@@ -1,9 +1,17 @@
 package com.shrey.banking.controller;
 
-import com.shrey.banking.dto.TransactionDTO;
+import com.shrey.banking.dto.BatchPaymentResult;
+import com.shrey.banking.dto.PaymentRequestItem;
+import com.shrey.banking.entity.Payment;
+import com.shrey.banking.service.BatchPaymentService;
 import com.shrey.banking.service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.List;
 
 @RestController
 @RequestMapping("/payments")
@@ -11,9 +19,32 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private BatchPaymentService batchPaymentService;
+
+    @PostMapping("/batch")
+    public BatchPaymentResult makePayments(@RequestBody List<PaymentRequestItem> items,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey)
+    {
+        return batchPaymentService.makePayments(items, idempotencyKey);
+    }
+
     @PostMapping("/{recipientId}")
-    public TransactionDTO makePayment(@PathVariable Long recipientId, @RequestParam(required = false) Double amount)
+    public ResponseEntity<Payment> makePayment(@PathVariable Long recipientId,
+                                               @RequestParam(required = false) Double amount,
+                                               @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey)
+    {
+        Payment payment = paymentService.requestPayment(recipientId, amount, idempotencyKey);
+        URI statusUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/payments/status/{paymentId}")
+                .buildAndExpand(payment.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(statusUrl).body(payment);
+    }
+
+    @GetMapping("/status/{paymentId}")
+    public Payment getStatus(@PathVariable Long paymentId)
     {
-        return paymentService.makePayment(recipientId, amount);
+        return paymentService.getPayment(paymentId);
     }
 }
\ No newline at end of file
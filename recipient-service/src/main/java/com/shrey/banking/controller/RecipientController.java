@@ -1,12 +1,12 @@
 package com.shrey.banking.controller;
 
+import com.shrey.banking.dto.CursorPage;
+import com.shrey.banking.dto.RecipientFilter;
 import com.shrey.banking.entity.Recipient;
 import com.shrey.banking.service.RecipientService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/recipients")
 public class RecipientController {
@@ -20,9 +20,18 @@ public class RecipientController {
     }
 
     @GetMapping
-    public List<Recipient> getAll()
+    public CursorPage<Recipient> getAll(@RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) Integer size,
+                                        @RequestParam(required = false) Double minAmount,
+                                        @RequestParam(required = false) Double maxAmount,
+                                        @RequestParam(required = false) String description)
     {
-        return recipientService.getAllRecipients();
+        RecipientFilter filter = RecipientFilter.builder()
+                .minAmount(minAmount)
+                .maxAmount(maxAmount)
+                .descriptionPrefix(description)
+                .build();
+        return recipientService.getRecipients(filter, cursor, size);
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,29 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchPaymentItemResult {
+    public enum Outcome {
+        COMPLETED,
+        // Accepted, the payment workers finish it; follow paymentId on /payments/status
+        PENDING,
+        FAILED,
+        // Not accepted, no payment was created
+        REJECTED
+    }
+
+    private int index;
+    private Long recipientId;
+    private Double amount;
+    private Outcome outcome;
+    private Long paymentId;
+    private Long transactionId;
+    private String error;
+}
@@ -0,0 +1,23 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchPaymentResult {
+    private int requested;
+    private int completed;
+    private int pending;
+    private int failed;
+    private int rejected;
+    private long durationMs;
+    // Same order as the request
+    private List<BatchPaymentItemResult> items;
+}
@@ -0,0 +1,14 @@
+package com.shrey.banking.dto;
+
+import com.shrey.banking.entity.Recipient;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentNotification {
+    private Recipient recipient;
+    private TransactionDTO transaction;
+}
@@ -0,0 +1,22 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Published by recipient-service, keyed by recipient ID, asking transaction-service to book a payment
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentRequestedEvent {
+    private Long paymentId;
+    private Long recipientId;
+    // Becomes the transaction reference, so a redelivered request books nothing twice
+    private String reference;
+    private String description;
+    private double amount;
+}
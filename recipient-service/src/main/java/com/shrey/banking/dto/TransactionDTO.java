@@ -14,4 +14,6 @@ public class TransactionDTO {
     private String description;
     private double amount;
     private LocalDate date;
+    // Dedupe key on the transaction-service side, retried creates with the same reference return the first one
+    private String reference;
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.shrey.banking.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(indexes = {
+        @Index(name = "idx_payment_idempotency_key", columnList = "idempotencyKey", unique = true),
+        @Index(name = "idx_payment_status_next_attempt", columnList = "status, nextAttemptAt")
+})
+public class Payment {
+    // Sequence rather than IDENTITY so batch payments can insert with JDBC batching
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_seq")
+    @SequenceGenerator(name = "payment_seq", sequenceName = "payment_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String idempotencyKey;
+
+    private Long recipientId;
+    private String description;
+    private double amount;
+    // As given in the request, null if it defaulted to the recipient's amount; replays of the key must match it
+    private Double requestedAmount;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentStatus status;
+
+    private int attempts;
+    // When PENDING: earliest next attempt. When PROCESSING: when the worker's claim expires.
+    private Instant nextAttemptAt;
+
+    private Long transactionId;
+    private String lastError;
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    // Bumped by every claim, so a worker or reply holding a stale copy cannot overwrite a newer state
+    @Version
+    private long version;
+}
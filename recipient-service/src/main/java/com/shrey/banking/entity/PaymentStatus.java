@@ -0,0 +1,8 @@
+package com.shrey.banking.entity;
+
+public enum PaymentStatus {
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
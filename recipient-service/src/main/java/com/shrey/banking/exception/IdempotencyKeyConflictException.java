@@ -0,0 +1,7 @@
+package com.shrey.banking.exception;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String idempotencyKey) {
+        super("Idempotency key " + idempotencyKey + " was already used for a different payment.");
+    }
+}
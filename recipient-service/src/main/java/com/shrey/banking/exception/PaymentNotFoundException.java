@@ -0,0 +1,7 @@
+package com.shrey.banking.exception;
+
+public class PaymentNotFoundException extends RuntimeException {
+    public PaymentNotFoundException(Long id) {
+        super("Payment with ID " + id + " not found.");
+    }
+}
@@ -0,0 +1,10 @@
+package com.shrey.banking.exception;
+
+/**
+ * Thrown without calling transaction-service when its circuit breaker is open or its bulkhead is full
+ */
+public class TransactionServiceUnavailableException extends RuntimeException {
+    public TransactionServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
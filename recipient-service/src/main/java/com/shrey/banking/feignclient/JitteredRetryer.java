@@ -0,0 +1,48 @@
+package com.shrey.banking.feignclient;
+
+import feign.RetryableException;
+import feign.Retryer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded retries with capped exponential backoff and full jitter, so callers that failed together
+ * do not come back together. A Retry-After from the server is honoured when it asks for longer.
+ */
+public class JitteredRetryer implements Retryer {
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final int maxAttempts;
+
+    private int attempt = 1;
+
+    public JitteredRetryer(long initialBackoffMs, long maxBackoffMs, int maxAttempts) {
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void continueOrPropagate(RetryableException e) {
+        if (attempt++ >= maxAttempts) {
+            throw e;
+        }
+
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 2, 20));
+        long backoff = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (e.retryAfter() != null) {
+            backoff = Math.max(backoff, Math.min(maxBackoffMs, e.retryAfter() - System.currentTimeMillis()));
+        }
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    @Override
+    public Retryer clone() {
+        return new JitteredRetryer(initialBackoffMs, maxBackoffMs, maxAttempts);
+    }
+}
@@ -5,9 +5,16 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 
-@FeignClient(name = "transaction-service", url = "${transaction-service.url}")
+import java.util.List;
+
+@FeignClient(name = "transaction-service", url = "${transaction-service.url}",
+        configuration = TransactionClientConfiguration.class, fallbackFactory = TransactionClientFallbackFactory.class)
 public interface TransactionClient {
 
     @PostMapping("/transactions")
     TransactionDTO createTransaction(@RequestBody TransactionDTO transaction);
+
+    // Same order as the request; entries with a known reference come back as the existing transaction
+    @PostMapping("/transactions/batch")
+    List<TransactionDTO> createTransactions(@RequestBody List<TransactionDTO> transactions);
 }
\ No newline at end of file
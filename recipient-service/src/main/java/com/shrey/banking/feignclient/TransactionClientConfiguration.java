@@ -0,0 +1,59 @@
+package com.shrey.banking.feignclient;
+
+import feign.FeignException;
+import feign.Request;
+import feign.RetryableException;
+import feign.Retryer;
+import feign.codec.ErrorDecoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client settings for {@link TransactionClient} only, so deliberately not a @Configuration picked up by the
+ * component scan. Connection pooling comes from the shared Apache HttpClient 5 pool
+ * (spring.cloud.openfeign.httpclient.*), circuit breaking and bulkheads from ResilienceConfig.
+ */
+public class TransactionClientConfiguration {
+
+    @Bean
+    public Request.Options transactionClientOptions(@Value("${app.transaction-client.connect-timeout-ms:2000}") long connectTimeoutMs,
+                                                    @Value("${app.transaction-client.read-timeout-ms:5000}") long readTimeoutMs,
+                                                    @Value("${app.transaction-client.batch-read-timeout-ms:60000}") long batchReadTimeoutMs) {
+        Request.Options options = new Request.Options(connectTimeoutMs, TimeUnit.MILLISECONDS, readTimeoutMs, TimeUnit.MILLISECONDS, true);
+        // A bulk call books thousands of rows, it gets its own read timeout
+        options.setMethodOptions("createTransactions",
+                new Request.Options(connectTimeoutMs, TimeUnit.MILLISECONDS, batchReadTimeoutMs, TimeUnit.MILLISECONDS, true));
+        return options;
+    }
+
+    @Bean
+    public Retryer transactionClientRetryer(@Value("${app.transaction-client.retry.max-attempts:3}") int maxAttempts,
+                                            @Value("${app.transaction-client.retry.initial-backoff-ms:100}") long initialBackoffMs,
+                                            @Value("${app.transaction-client.retry.max-backoff-ms:1000}") long maxBackoffMs) {
+        return new JitteredRetryer(initialBackoffMs, maxBackoffMs, maxAttempts);
+    }
+
+    /**
+     * Connection errors are always retryable in Feign; this adds the statuses that say "try again shortly".
+     * Retrying a POST is safe here because every transaction carries a reference transaction-service dedupes on.
+     */
+    @Bean
+    public ErrorDecoder transactionClientErrorDecoder() {
+        ErrorDecoder delegate = new ErrorDecoder.Default();
+        return (methodKey, response) -> {
+            Exception exception = delegate.decode(methodKey, response);
+            if (exception instanceof FeignException feignException && !(exception instanceof RetryableException)
+                    && isRetryableStatus(response.status())) {
+                return new RetryableException(response.status(), feignException.getMessage(),
+                        response.request().httpMethod(), feignException, (Long) null, response.request());
+            }
+            return exception;
+        };
+    }
+
+    private static boolean isRetryableStatus(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+}
@@ -0,0 +1,43 @@
+package com.shrey.banking.feignclient;
+
+import com.shrey.banking.dto.TransactionDTO;
+import com.shrey.banking.exception.TransactionServiceUnavailableException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.springframework.cloud.openfeign.FallbackFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * There is no sensible stand-in for a booked transaction, so the fallback only turns "not even attempted"
+ * into a fast {@link TransactionServiceUnavailableException} and passes real call failures through unchanged.
+ */
+@Component
+public class TransactionClientFallbackFactory implements FallbackFactory<TransactionClient> {
+
+    @Override
+    public TransactionClient create(Throwable cause) {
+        return new TransactionClient() {
+            @Override
+            public TransactionDTO createTransaction(TransactionDTO transaction) {
+                throw translate(cause);
+            }
+
+            @Override
+            public List<TransactionDTO> createTransactions(List<TransactionDTO> transactions) {
+                throw translate(cause);
+            }
+        };
+    }
+
+    private static RuntimeException translate(Throwable cause) {
+        if (cause instanceof CallNotPermittedException || cause instanceof BulkheadFullException) {
+            return new TransactionServiceUnavailableException("transaction-service unavailable: " + cause.getMessage(), cause);
+        }
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new IllegalStateException(cause);
+    }
+}
@@ -0,0 +1,27 @@
+package com.shrey.banking.messaging;
+
+import com.shrey.banking.dto.TransactionCreatedEvent;
+import com.shrey.banking.service.PaymentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Completes payments as transaction-service confirms them. Replies can be redelivered; completing an
+ * already completed payment is a no-op, so nobody gets the email twice. Replies that cannot be read never get
+ * here: the container hands them to the error handler, which moves them to the dead-letter topic.
+ */
+@Component
+@ConditionalOnProperty(name = "app.payments.transport", havingValue = "kafka")
+public class TransactionCreatedListener {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @KafkaListener(topics = "${app.kafka.topics.transaction-created}",
+            concurrency = "${app.kafka.consumer.concurrency:3}")
+    public void onTransactionCreated(TransactionCreatedEvent event) {
+        paymentService.completePayment(event);
+    }
+}
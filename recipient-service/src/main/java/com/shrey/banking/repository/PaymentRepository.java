@@ -0,0 +1,58 @@
+package com.shrey.banking.repository;
+
+import com.shrey.banking.entity.Payment;
+import com.shrey.banking.entity.PaymentStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface PaymentRepository extends JpaRepository<Payment, Long> {
+
+    Optional<Payment> findByIdempotencyKey(String idempotencyKey);
+
+    List<Payment> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+
+    /**
+     * Payments that are due for a worker: pending ones whose backoff has passed, and in-flight ones whose claim expired
+     */
+    @Query("select p.id from Payment p where p.status in :statuses and p.nextAttemptAt <= :now order by p.nextAttemptAt")
+    List<Long> findDueIds(@Param("statuses") Collection<PaymentStatus> statuses, @Param("now") Instant now, Pageable pageable);
+
+    /**
+     * Moves a due payment to PROCESSING until claimUntil. Returns 0 if someone else claimed it first.
+     */
+    @Modifying
+    @Query("update Payment p set p.status = com.shrey.banking.entity.PaymentStatus.PROCESSING, p.nextAttemptAt = :claimUntil, " +
+            "p.updatedAt = :now, p.version = p.version + 1 where p.id = :id and p.status in :statuses and p.nextAttemptAt <= :now")
+    int claim(@Param("id") Long id, @Param("statuses") Collection<PaymentStatus> statuses, @Param("now") Instant now,
+              @Param("claimUntil") Instant claimUntil);
+
+    /**
+     * Completes a payment only if it is still PROCESSING under the claim the caller took, i.e. at that version.
+     * Returns 0 if the claim expired and someone else picked the payment up.
+     */
+    @Modifying
+    @Query("update Payment p set p.status = com.shrey.banking.entity.PaymentStatus.COMPLETED, p.attempts = p.attempts + 1, " +
+            "p.transactionId = :transactionId, p.nextAttemptAt = null, p.lastError = null, p.updatedAt = :now, " +
+            "p.version = p.version + 1 " +
+            "where p.id = :id and p.version = :version and p.status = com.shrey.banking.entity.PaymentStatus.PROCESSING")
+    int completeClaimed(@Param("id") Long id, @Param("version") long version, @Param("transactionId") Long transactionId,
+                        @Param("now") Instant now);
+
+    /**
+     * Hands a payment back to the workers only if it is still PROCESSING under the caller's claim
+     */
+    @Modifying
+    @Query("update Payment p set p.status = com.shrey.banking.entity.PaymentStatus.PENDING, p.attempts = p.attempts + 1, " +
+            "p.nextAttemptAt = :retryAt, p.lastError = :error, p.updatedAt = :now, p.version = p.version + 1 " +
+            "where p.id = :id and p.version = :version and p.status = com.shrey.banking.entity.PaymentStatus.PROCESSING")
+    int releaseClaimed(@Param("id") Long id, @Param("version") long version, @Param("error") String error,
+                       @Param("now") Instant now, @Param("retryAt") Instant retryAt);
+}
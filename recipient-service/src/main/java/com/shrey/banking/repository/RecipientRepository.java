@@ -3,4 +3,4 @@ package com.shrey.banking.repository;
 import com.shrey.banking.entity.Recipient;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface RecipientRepository extends JpaRepository<Recipient, Long> { } 
\ No newline at end of file
+public interface RecipientRepository extends JpaRepository<Recipient, Long>, RecipientRepositoryCustom { } 
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.shrey.banking.repository;
+
+import com.shrey.banking.dto.RecipientFilter;
+import com.shrey.banking.entity.Recipient;
+
+import java.util.List;
+
+public interface RecipientRepositoryCustom {
+    /**
+     * Page of recipients matching the filter in id order, starting after afterId or at the top when it is null.
+     */
+    List<Recipient> findPage(RecipientFilter filter, Long afterId, int limit);
+}
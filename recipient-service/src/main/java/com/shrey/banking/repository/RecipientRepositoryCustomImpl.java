@@ -0,0 +1,50 @@
+package com.shrey.banking.repository;
+
+import com.shrey.banking.dto.RecipientFilter;
+import com.shrey.banking.entity.Recipient;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RecipientRepositoryCustomImpl implements RecipientRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Recipient> findPage(RecipientFilter filter, Long afterId, int limit) {
+        // Only the predicates that are actually set, so the primary key can drive the scan
+        StringBuilder jpql = new StringBuilder("select r from Recipient r where 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+
+        if (filter.getMinAmount() != null) {
+            jpql.append(" and r.amount >= :minAmount");
+            parameters.put("minAmount", filter.getMinAmount());
+        }
+        if (filter.getMaxAmount() != null) {
+            jpql.append(" and r.amount <= :maxAmount");
+            parameters.put("maxAmount", filter.getMaxAmount());
+        }
+        if (filter.getDescriptionPrefix() != null && !filter.getDescriptionPrefix().isEmpty()) {
+            jpql.append(" and r.description like :descriptionPrefix escape '\\'");
+            parameters.put("descriptionPrefix", escapeLike(filter.getDescriptionPrefix()) + "%");
+        }
+        if (afterId != null) {
+            jpql.append(" and r.id > :afterId");
+            parameters.put("afterId", afterId);
+        }
+        jpql.append(" order by r.id");
+
+        TypedQuery<Recipient> query = entityManager.createQuery(jpql.toString(), Recipient.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
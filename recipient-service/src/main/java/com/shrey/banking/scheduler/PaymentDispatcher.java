@@ -0,0 +1,48 @@
+package com.shrey.banking.scheduler;
+
+import com.shrey.banking.config.VirtualThreadTaskExecutor;
+import com.shrey.banking.service.PaymentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+@Component
+public class PaymentDispatcher {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    @Qualifier("paymentExecutor")
+    private TaskExecutor paymentExecutor;
+
+    @Scheduled(fixedDelayString = "${app.payments.poll-interval-ms:100}")
+    public void dispatchDuePayments() {
+        // Only claim what the executor can take right now, everything else stays PENDING for the next poll
+        int capacity = capacity();
+        if (capacity <= 0) {
+            return;
+        }
+
+        for (Long paymentId : paymentService.claimDuePayments(capacity)) {
+            try {
+                paymentExecutor.execute(() -> paymentService.processPayment(paymentId));
+            } catch (TaskRejectedException e) {
+                // The claim expires and the payment is picked up again
+                break;
+            }
+        }
+    }
+
+    private int capacity() {
+        if (paymentExecutor instanceof VirtualThreadTaskExecutor virtual) {
+            return virtual.getConcurrencyLimit() - virtual.getInFlightCount();
+        }
+        ThreadPoolTaskExecutor pool = (ThreadPoolTaskExecutor) paymentExecutor;
+        return pool.getMaxPoolSize() + pool.getQueueCapacity() - pool.getActiveCount() - pool.getQueueSize();
+    }
+}
@@ -0,0 +1,10 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.BatchPaymentResult;
+import com.shrey.banking.dto.PaymentRequestItem;
+
+import java.util.List;
+
+public interface BatchPaymentService {
+    BatchPaymentResult makePayments(List<PaymentRequestItem> items, String idempotencyKey);
+}
\ No newline at end of file
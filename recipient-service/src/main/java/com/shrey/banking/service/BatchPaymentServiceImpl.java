@@ -0,0 +1,313 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.BatchPaymentItemResult;
+import com.shrey.banking.dto.BatchPaymentResult;
+import com.shrey.banking.dto.PaymentNotification;
+import com.shrey.banking.dto.PaymentRequestItem;
+import com.shrey.banking.dto.TransactionDTO;
+import com.shrey.banking.entity.Payment;
+import com.shrey.banking.entity.PaymentStatus;
+import com.shrey.banking.entity.Recipient;
+import com.shrey.banking.exception.InvalidPaymentBatchException;
+import com.shrey.banking.feignclient.TransactionClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Pays many recipients in one call: one recipient query, one insert of all payments, one bulk
+ * transaction-service call per chunk and one email job. Payments are recorded before transaction-service
+ * is called and carry their usual reference, so a chunk whose bulk call fails is simply handed over to the
+ * payment workers and retried one by one without any risk of paying twice.
+ */
+@Service
+public class BatchPaymentServiceImpl implements BatchPaymentService {
+
+    @Autowired
+    private RecipientService recipientService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private TransactionClient transactionClient;
+
+    @Autowired
+    private MailService mailService;
+
+    @Value("${app.payments.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    // Must not exceed app.transactions.batch.max-size on transaction-service
+    @Value("${app.payments.batch.transaction-chunk-size:5000}")
+    private int transactionChunkSize;
+
+    @Value("${app.payments.claim-timeout-ms:60000}")
+    private long claimTimeoutMs;
+
+    // The worst case of one bulk call, so the claim outlasts it; see TransactionClientConfiguration
+    @Value("${app.transaction-client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.transaction-client.batch-read-timeout-ms:60000}")
+    private long batchReadTimeoutMs;
+
+    @Value("${app.transaction-client.retry.max-attempts:3}")
+    private int maxCallAttempts;
+
+    @Value("${app.transaction-client.retry.max-backoff-ms:1000}")
+    private long maxCallBackoffMs;
+
+    @Override
+    public BatchPaymentResult makePayments(List<PaymentRequestItem> items, String idempotencyKey) {
+        long start = System.currentTimeMillis();
+        if (items == null || items.isEmpty()) {
+            throw new InvalidPaymentBatchException("Payment batch is empty");
+        }
+        if (items.size() > maxBatchSize) {
+            throw new InvalidPaymentBatchException("Payment batch has " + items.size() + " items, the limit is " + maxBatchSize);
+        }
+
+        Set<Long> recipientIds = new HashSet<>();
+        for (PaymentRequestItem item : items) {
+            if (item != null && item.getRecipientId() != null) {
+                recipientIds.add(item.getRecipientId());
+            }
+        }
+        Map<Long, Recipient> recipients = new HashMap<>();
+        for (Recipient recipient : recipientService.getRecipientsByIds(recipientIds)) {
+            recipients.put(recipient.getId(), recipient);
+        }
+
+        // Item keys derive from the request key, so replaying the request replays every item
+        boolean replayable = idempotencyKey != null && !idempotencyKey.isBlank();
+        String batchKey = replayable ? idempotencyKey : UUID.randomUUID().toString();
+        Map<String, Payment> existingPayments = new HashMap<>();
+        if (replayable) {
+            List<String> itemKeys = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                itemKeys.add(itemKey(batchKey, i));
+            }
+            existingPayments = paymentService.getPaymentsByIdempotencyKeys(itemKeys);
+        }
+
+        BatchPaymentItemResult[] results = new BatchPaymentItemResult[items.size()];
+        List<Payment> newPayments = new ArrayList<>();
+        List<Integer> newPaymentIndexes = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            PaymentRequestItem item = items.get(i);
+            Long recipientId = item != null ? item.getRecipientId() : null;
+            Recipient recipient = recipientId != null ? recipients.get(recipientId) : null;
+            if (recipient == null) {
+                results[i] = rejected(i, recipientId, item != null ? item.getAmount() : null,
+                        recipientId == null ? "recipientId is required" : "Recipient with ID " + recipientId + " not found.");
+                continue;
+            }
+
+            double amount = (item.getAmount() != null) ? item.getAmount() : recipient.getAmount();
+            if (!Double.isFinite(amount)) {
+                results[i] = rejected(i, recipientId, amount, "amount must be a finite number");
+                continue;
+            }
+
+            Payment payment = Payment.builder()
+                    .idempotencyKey(itemKey(batchKey, i))
+                    .recipientId(recipientId)
+                    .description("Payment to " + recipient.getDescription())
+                    .amount(amount)
+                    .requestedAmount(item.getAmount())
+                    .build();
+            Payment existing = existingPayments.get(payment.getIdempotencyKey());
+            if (existing != null) {
+                results[i] = replay(i, existing, payment);
+                continue;
+            }
+            newPayments.add(payment);
+            newPaymentIndexes.add(i);
+        }
+
+        if (!newPayments.isEmpty()) {
+            // Over Kafka the workers publish the requests; over HTTP this call books them right away
+            boolean bookNow = !paymentService.isKafkaTransport();
+            Duration claim = bookNow ? claimFor(newPayments.size()) : null;
+            List<Payment> created;
+            try {
+                created = paymentService.createPayments(newPayments, claim);
+            } catch (DataIntegrityViolationException e) {
+                if (!replayable) {
+                    throw e;
+                }
+                // A concurrent request with the same key got there first; its payments answer this one
+                Map<String, Payment> winners = paymentService.getPaymentsByIdempotencyKeys(
+                        newPayments.stream().map(Payment::getIdempotencyKey).toList());
+                List<Payment> remaining = new ArrayList<>();
+                List<Integer> remainingIndexes = new ArrayList<>();
+                for (int j = 0; j < newPayments.size(); j++) {
+                    Payment payment = newPayments.get(j);
+                    Payment winner = winners.get(payment.getIdempotencyKey());
+                    if (winner != null) {
+                        results[newPaymentIndexes.get(j)] = replay(newPaymentIndexes.get(j), winner, payment);
+                    } else {
+                        // Rejected by the other request, still ours to create
+                        payment.setId(null);
+                        remaining.add(payment);
+                        remainingIndexes.add(newPaymentIndexes.get(j));
+                    }
+                }
+                created = remaining.isEmpty() ? List.of() : paymentService.createPayments(remaining, claim);
+                newPaymentIndexes = remainingIndexes;
+            }
+            Map<Long, Payment> paymentsById = new HashMap<>();
+            for (Payment payment : created) {
+                paymentsById.put(payment.getId(), payment);
+            }
+            if (bookNow) {
+                book(created, paymentsById, recipients);
+            }
+            for (int j = 0; j < created.size(); j++) {
+                results[newPaymentIndexes.get(j)] = result(newPaymentIndexes.get(j), paymentsById.get(created.get(j).getId()));
+            }
+        }
+
+        return summarize(results, System.currentTimeMillis() - start);
+    }
+
+    private void book(List<Payment> payments, Map<Long, Payment> paymentsById, Map<Long, Recipient> recipients) {
+        Map<Long, TransactionDTO> booked = new HashMap<>();
+        for (int from = 0; from < payments.size(); from += transactionChunkSize) {
+            List<Payment> chunk = payments.subList(from, Math.min(payments.size(), from + transactionChunkSize));
+            List<TransactionDTO> transactions = new ArrayList<>(chunk.size());
+            for (Payment payment : chunk) {
+                transactions.add(new TransactionDTO(null, payment.getDescription(), payment.getAmount(), null,
+                        "payment-" + payment.getId()));
+            }
+
+            try {
+                List<TransactionDTO> savedTransactions = transactionClient.createTransactions(transactions);
+                for (int i = 0; i < chunk.size(); i++) {
+                    booked.put(chunk.get(i).getId(), savedTransactions.get(i));
+                }
+            } catch (RuntimeException e) {
+                Set<Long> lost = new HashSet<>(chunk.stream().map(Payment::getId).toList());
+                for (Long id : paymentService.releasePayments(chunk, e.getMessage())) {
+                    Payment payment = paymentsById.get(id);
+                    payment.setStatus(PaymentStatus.PENDING);
+                    payment.setLastError(e.getMessage());
+                    lost.remove(id);
+                }
+                refresh(lost, paymentsById);
+            }
+        }
+        if (booked.isEmpty()) {
+            return;
+        }
+
+        // Only the payments still under this call's claim; one whose claim expired was completed and mailed by a worker
+        Set<Long> lost = new HashSet<>(booked.keySet());
+        List<PaymentNotification> notifications = new ArrayList<>(booked.size());
+        for (Payment payment : paymentService.completePayments(payments, booked)) {
+            paymentsById.put(payment.getId(), payment);
+            notifications.add(new PaymentNotification(recipients.get(payment.getRecipientId()), booked.get(payment.getId())));
+            lost.remove(payment.getId());
+        }
+        refresh(lost, paymentsById);
+        if (!notifications.isEmpty()) {
+            mailService.sendPaymentEmails(notifications);
+        }
+    }
+
+    /**
+     * Payments whose claim expired during the bulk call are reported as whoever took them over left them
+     */
+    private void refresh(Set<Long> paymentIds, Map<Long, Payment> paymentsById) {
+        for (Long id : paymentIds) {
+            paymentsById.put(id, paymentService.getPayment(id));
+        }
+    }
+
+    /**
+     * Long enough for every bulk call to time out on each attempt and back off in between, plus the usual
+     * claim for the work around them; a shorter claim lets a worker book and mail the same payment meanwhile.
+     */
+    private Duration claimFor(int payments) {
+        long chunks = (payments + transactionChunkSize - 1) / transactionChunkSize;
+        long worstCall = maxCallAttempts * (connectTimeoutMs + batchReadTimeoutMs) + (maxCallAttempts - 1) * maxCallBackoffMs;
+        return Duration.ofMillis(chunks * worstCall + claimTimeoutMs);
+    }
+
+    private static String itemKey(String batchKey, int index) {
+        return batchKey + ":" + index;
+    }
+
+    /**
+     * The stored payment if it was created for the same item, compared by the amount as requested rather than
+     * the resolved one, which follows the recipient's current amount when the item leaves it out
+     */
+    private static BatchPaymentItemResult replay(int index, Payment existing, Payment requested) {
+        if (existing.getRecipientId().equals(requested.getRecipientId())
+                && Objects.equals(existing.getRequestedAmount(), requested.getRequestedAmount())) {
+            return result(index, existing);
+        }
+        return rejected(index, requested.getRecipientId(), requested.getAmount(),
+                "Idempotency key " + existing.getIdempotencyKey() + " was already used for a different payment.");
+    }
+
+    private static BatchPaymentItemResult result(int index, Payment payment) {
+        BatchPaymentItemResult.Outcome outcome = switch (payment.getStatus()) {
+            case COMPLETED -> BatchPaymentItemResult.Outcome.COMPLETED;
+            case FAILED -> BatchPaymentItemResult.Outcome.FAILED;
+            default -> BatchPaymentItemResult.Outcome.PENDING;
+        };
+        return BatchPaymentItemResult.builder()
+                .index(index)
+                .recipientId(payment.getRecipientId())
+                .amount(payment.getAmount())
+                .outcome(outcome)
+                .paymentId(payment.getId())
+                .transactionId(payment.getTransactionId())
+                .error(payment.getLastError())
+                .build();
+    }
+
+    private static BatchPaymentItemResult rejected(int index, Long recipientId, Double amount, String error) {
+        return BatchPaymentItemResult.builder()
+                .index(index)
+                .recipientId(recipientId)
+                .amount(amount)
+                .outcome(BatchPaymentItemResult.Outcome.REJECTED)
+                .error(error)
+                .build();
+    }
+
+    private static BatchPaymentResult summarize(BatchPaymentItemResult[] results, long durationMs) {
+        int completed = 0, pending = 0, failed = 0, rejected = 0;
+        for (BatchPaymentItemResult result : results) {
+            switch (result.getOutcome()) {
+                case COMPLETED -> completed++;
+                case PENDING -> pending++;
+                case FAILED -> failed++;
+                case REJECTED -> rejected++;
+            }
+        }
+        return BatchPaymentResult.builder()
+                .requested(results.length)
+                .completed(completed)
+                .pending(pending)
+                .failed(failed)
+                .rejected(rejected)
+                .durationMs(durationMs)
+                .items(List.of(results))
+                .build();
+    }
+}
@@ -1,8 +1,12 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.dto.PaymentNotification;
 import com.shrey.banking.dto.TransactionDTO;
 import com.shrey.banking.entity.Recipient;
 
+import java.util.List;
+
 public interface MailService {
     void sendPaymentEmail(Recipient recipient, TransactionDTO transaction);
+    void sendPaymentEmails(List<PaymentNotification> notifications);
 }
\ No newline at end of file
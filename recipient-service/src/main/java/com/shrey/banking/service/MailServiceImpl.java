@@ -1,17 +1,24 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.dto.PaymentNotification;
 import com.shrey.banking.dto.TransactionDTO;
 import com.shrey.banking.entity.Recipient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.context.Context;
-import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class MailServiceImpl implements MailService {
@@ -20,36 +27,117 @@ public class MailServiceImpl implements MailService {
     private JavaMailSender mailSender;
 
     @Autowired
-    private SpringTemplateEngine templateEngine;
+    private TemplateRenderer templateRenderer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @Value("${spring.mail.username}")
     private String fromEmail;
 
-    @Async
+    // Messages handed to the mail server per connection in bulk sends
+    private static final int BULK_CHUNK_SIZE = 500;
+
+    @Async("emailExecutor")
     @Override
     public void sendPaymentEmail(Recipient recipient, TransactionDTO transaction) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            mailSender.send(createPaymentMessage(templateRenderer.batch(), recipient, transaction));
+            countMessages("single", 1, 0);
+        } catch (MessagingException e) {
+            countMessages("single", 0, 1);
+            throw new RuntimeException("Failed to send email: " + e.getMessage());
+        } catch (MailException e) {
+            countMessages("single", 0, 1);
+            throw e;
+        } finally {
+            sample.stop(sendTimer("single"));
+        }
+    }
+
+    /**
+     * One job for a whole payment run. Messages go out in chunks, each chunk over a single SMTP connection.
+     */
+    @Async("emailExecutor")
+    @Override
+    public void sendPaymentEmails(List<PaymentNotification> notifications) {
+        MailException lastFailure = null;
+        List<MimeMessage> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+        // One context and output buffer for the whole run
+        TemplateRenderer.Batch renderer = templateRenderer.batch();
+        for (PaymentNotification notification : notifications) {
+            try {
+                chunk.add(createPaymentMessage(renderer, notification.getRecipient(), notification.getTransaction()));
+            } catch (MessagingException e) {
+                lastFailure = new MailPreparationException("Failed to prepare email: " + e.getMessage(), e);
+                countMessages("bulk", 0, 1);
+                continue;
+            }
+            if (chunk.size() == BULK_CHUNK_SIZE) {
+                lastFailure = sendChunk(chunk, lastFailure);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            lastFailure = sendChunk(chunk, lastFailure);
+        }
+
+        // One bad address should not hold back everyone else's email, but the job still reports it
+        if (lastFailure != null) {
+            throw lastFailure;
+        }
+    }
+
+    private MailException sendChunk(List<MimeMessage> chunk, MailException lastFailure) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int failed = 0;
+        try {
+            mailSender.send(chunk.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            // Lists only the messages that did not go out, or nothing if the connection failed
+            failed = e.getFailedMessages().isEmpty() ? chunk.size() : e.getFailedMessages().size();
+            lastFailure = e;
+        } catch (MailException e) {
+            failed = chunk.size();
+            lastFailure = e;
+        }
+        sample.stop(sendTimer("bulk"));
+        countMessages("bulk", chunk.size() - failed, failed);
+        chunk.clear();
+        return lastFailure;
+    }
+
+    private Timer sendTimer(String mode) {
+        return Timer.builder("mail.send")
+                .description("Time to send one mail, or one chunk of a bulk run over a single SMTP connection")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void countMessages(String mode, int sent, int failed) {
+        meterRegistry.counter("mail.messages.sent", "mode", mode).increment(sent);
+        meterRegistry.counter("mail.messages.failed", "mode", mode).increment(failed);
+    }
+
+    private MimeMessage createPaymentMessage(TemplateRenderer.Batch renderer, Recipient recipient, TransactionDTO transaction)
+            throws MessagingException {
         String toEmail = recipient.getEmail();
 
         MimeMessage message = mailSender.createMimeMessage();
-        try {
-            MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
 
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Payment Received");
+        helper.setFrom(fromEmail);
+        helper.setTo(toEmail);
+        helper.setSubject("Payment Received");
 
-            Context context = new Context();
+        String htmlContent = renderer.render("payment-sent", context -> {
             context.setVariable("recipientDescription", recipient.getDescription());
             context.setVariable("description", transaction.getDescription());
             context.setVariable("amount", transaction.getAmount());
             context.setVariable("date", transaction.getDate());
-
-            String htmlContent = templateEngine.process("payment-sent", context);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Failed to send email: " + e.getMessage());
-        }
+        });
+        helper.setText(htmlContent, true);
+        return message;
     }
 }
\ No newline at end of file
@@ -1,7 +1,23 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.dto.TransactionCreatedEvent;
 import com.shrey.banking.dto.TransactionDTO;
+import com.shrey.banking.entity.Payment;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface PaymentService {
-    TransactionDTO makePayment(Long recipientId, Double amount);
+    Payment requestPayment(Long recipientId, Double amount, String idempotencyKey);
+    Payment getPayment(Long paymentId);
+    List<Long> claimDuePayments(int limit);
+    void processPayment(Long paymentId);
+    void completePayment(TransactionCreatedEvent event);
+    boolean isKafkaTransport();
+    Map<String, Payment> getPaymentsByIdempotencyKeys(Collection<String> idempotencyKeys);
+    List<Payment> createPayments(List<Payment> payments, Duration claim);
+    List<Payment> completePayments(Collection<Payment> claimed, Map<Long, TransactionDTO> transactionsByPaymentId);
+    List<Long> releasePayments(Collection<Payment> claimed, String error);
 }
\ No newline at end of file
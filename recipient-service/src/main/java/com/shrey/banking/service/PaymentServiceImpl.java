@@ -1,14 +1,59 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.dto.PaymentRequestedEvent;
+import com.shrey.banking.dto.TransactionCreatedEvent;
 import com.shrey.banking.dto.TransactionDTO;
+import com.shrey.banking.entity.Payment;
+import com.shrey.banking.entity.PaymentStatus;
 import com.shrey.banking.entity.Recipient;
+import com.shrey.banking.exception.IdempotencyKeyConflictException;
+import com.shrey.banking.exception.PaymentNotFoundException;
+import com.shrey.banking.exception.RecipientNotFoundException;
+import com.shrey.banking.exception.TransactionServiceUnavailableException;
 import com.shrey.banking.feignclient.TransactionClient;
+import com.shrey.banking.repository.PaymentRepository;
+import com.shrey.banking.util.InClauseChunks;
+import feign.FeignException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Payments are accepted into the payment table and driven to completion by {@link #processPayment} on the
+ * payment worker pool. The transaction is created with the payment as its reference, so a retry after a
+ * timeout that actually succeeded gets the original transaction back instead of paying twice.
+ * With the kafka transport the worker only publishes the request; the payment completes when the
+ * TransactionCreated reply arrives, and is published again if the claim expires first.
+ */
 @Service
 public class PaymentServiceImpl implements PaymentService {
 
+    // In-flight payments whose claim expired (e.g. the worker died) are picked up again
+    private static final Set<PaymentStatus> CLAIMABLE = EnumSet.of(PaymentStatus.PENDING, PaymentStatus.PROCESSING);
+
     @Autowired
     private RecipientService recipientService;
 
@@ -18,20 +63,294 @@ public class PaymentServiceImpl implements PaymentService {
     @Autowired
     private TransactionClient transactionClient;
 
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Value("${app.payments.transport:http}")
+    private String transport;
+
+    @Value("${app.kafka.topics.payment-requested}")
+    private String paymentRequestedTopic;
+
+    @Value("${app.kafka.producer.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${app.payments.claim-timeout-ms:60000}")
+    private long claimTimeoutMs;
+
+    @Value("${app.payments.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.payments.retry.initial-backoff-ms:500}")
+    private long initialBackoffMs;
+
+    @Value("${app.payments.retry.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
     @Override
-    public TransactionDTO makePayment(Long recipientId, Double amount) {
-        Recipient recipient = recipientService.getRecipientById(recipientId);
+    public Payment requestPayment(Long recipientId, Double amount, String idempotencyKey) {
+        // Without a key the request cannot be safely retried, but it still goes through the pipeline
+        String key = (idempotencyKey != null && !idempotencyKey.isBlank()) ? idempotencyKey : UUID.randomUUID().toString();
+
+        // Matched against the request as given, so a change to the recipient's amount does not break a retry
+        Optional<Payment> existing = paymentRepository.findByIdempotencyKey(key);
+        if (existing.isPresent()) {
+            return replay(existing.get(), recipientId, amount);
+        }
 
+        Recipient recipient = recipientService.getRecipientById(recipientId);
         double paymentAmount = (amount != null) ? amount : recipient.getAmount();
 
-        String description = "Payment to " + recipient.getDescription();
+        Instant now = Instant.now();
+        Payment payment = Payment.builder()
+                .idempotencyKey(key)
+                .recipientId(recipientId)
+                .description("Payment to " + recipient.getDescription())
+                .amount(paymentAmount)
+                .requestedAmount(amount)
+                .status(PaymentStatus.PENDING)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        try {
+            return paymentRepository.save(payment);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request with the same key got there first
+            Payment winner = paymentRepository.findByIdempotencyKey(key).orElseThrow(() -> e);
+            return replay(winner, recipientId, amount);
+        }
+    }
+
+    private Payment replay(Payment payment, Long recipientId, Double requestedAmount) {
+        if (!payment.getRecipientId().equals(recipientId) || !Objects.equals(payment.getRequestedAmount(), requestedAmount)) {
+            throw new IdempotencyKeyConflictException(payment.getIdempotencyKey());
+        }
+        return payment;
+    }
+
+    @Override
+    public Payment getPayment(Long paymentId) {
+        return paymentRepository.findById(paymentId).orElseThrow(() -> new PaymentNotFoundException(paymentId));
+    }
+
+    @Override
+    public boolean isKafkaTransport() {
+        return "kafka".equals(transport);
+    }
+
+    @Override
+    public Map<String, Payment> getPaymentsByIdempotencyKeys(Collection<String> idempotencyKeys) {
+        Map<String, Payment> payments = new HashMap<>();
+        for (Payment payment : InClauseChunks.findAll(idempotencyKeys, paymentRepository::findByIdempotencyKeyIn)) {
+            payments.put(payment.getIdempotencyKey(), payment);
+        }
+        return payments;
+    }
+
+    /**
+     * Inserts the payments in one transaction. Claimed payments start out PROCESSING so the workers leave
+     * them to the caller until the claim expires; unclaimed ones (a null claim) are due right away.
+     */
+    @Override
+    @Transactional
+    public List<Payment> createPayments(List<Payment> payments, Duration claim) {
+        Instant now = Instant.now();
+        for (Payment payment : payments) {
+            payment.setStatus(claim != null ? PaymentStatus.PROCESSING : PaymentStatus.PENDING);
+            payment.setNextAttemptAt(claim != null ? now.plus(claim) : now);
+            payment.setCreatedAt(now);
+            payment.setUpdatedAt(now);
+        }
+        return paymentRepository.saveAll(payments);
+    }
+
+    /**
+     * Marks claimed payments completed in one transaction and returns the ones that were. A payment whose claim
+     * expired meanwhile belongs to whoever re-claimed it and is left alone. Emails are left to the caller.
+     */
+    @Override
+    @Transactional
+    public List<Payment> completePayments(Collection<Payment> claimed, Map<Long, TransactionDTO> transactionsByPaymentId) {
+        Instant now = Instant.now();
+        List<Long> completed = new ArrayList<>();
+        for (Payment payment : claimed) {
+            TransactionDTO transaction = transactionsByPaymentId.get(payment.getId());
+            if (transaction != null
+                    && paymentRepository.completeClaimed(payment.getId(), payment.getVersion(), transaction.getId(), now) == 1) {
+                completed.add(payment.getId());
+            }
+        }
+        meterRegistry.counter("payments.completed").increment(completed.size());
+        return InClauseChunks.findAll(completed, paymentRepository::findAllById);
+    }
+
+    /**
+     * Hands claimed payments whose bulk attempt failed over to the workers, which retry them one by one.
+     * Returns the IDs released; payments whose claim expired meanwhile are left to whoever re-claimed them.
+     */
+    @Override
+    @Transactional
+    public List<Long> releasePayments(Collection<Payment> claimed, String error) {
+        Instant now = Instant.now();
+        List<Long> released = new ArrayList<>();
+        for (Payment payment : claimed) {
+            if (paymentRepository.releaseClaimed(payment.getId(), payment.getVersion(), error, now,
+                    now.plusMillis(initialBackoffMs)) == 1) {
+                released.add(payment.getId());
+            }
+        }
+        return released;
+    }
+
+    @Override
+    @Transactional
+    public List<Long> claimDuePayments(int limit) {
+        Instant now = Instant.now();
+        Instant claimUntil = now.plusMillis(claimTimeoutMs);
+
+        List<Long> claimed = new ArrayList<>();
+        for (Long id : paymentRepository.findDueIds(CLAIMABLE, now, PageRequest.of(0, limit))) {
+            if (paymentRepository.claim(id, CLAIMABLE, now, claimUntil) == 1) {
+                claimed.add(id);
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    public void processPayment(Long paymentId) {
+        Payment payment = paymentRepository.findById(paymentId).orElse(null);
+        if (payment == null || payment.getStatus() != PaymentStatus.PROCESSING) {
+            return;
+        }
+        payment.setAttempts(payment.getAttempts() + 1);
+
+        try {
+            if (isKafkaTransport()) {
+                // Saved before publishing so the reply can never race with this write
+                payment = paymentRepository.save(payment);
+                publishPaymentRequested(payment);
+                return;
+            }
+
+            TransactionDTO savedTransaction;
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                TransactionDTO transactionToCreate = new TransactionDTO(null, payment.getDescription(), payment.getAmount(), null,
+                        reference(payment));
+                savedTransaction = transactionClient.createTransaction(transactionToCreate);
+                sample.stop(createTransactionTimer("success"));
+            } catch (RuntimeException e) {
+                sample.stop(createTransactionTimer(e instanceof TransactionServiceUnavailableException ? "unavailable" : "error"));
+                retryOrFail(payment, e);
+                return;
+            }
+            complete(payment, savedTransaction);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // Claimed again or completed by a reply in the meantime, the newer state wins
+        }
+    }
+
+    private void publishPaymentRequested(Payment payment) {
+        PaymentRequestedEvent event = PaymentRequestedEvent.builder()
+                .paymentId(payment.getId())
+                .recipientId(payment.getRecipientId())
+                .reference(reference(payment))
+                .description(payment.getDescription())
+                .amount(payment.getAmount())
+                .build();
+        try {
+            // Keyed by recipient so one recipient's payments are booked in order
+            kafkaTemplate.send(paymentRequestedTopic, String.valueOf(payment.getRecipientId()), event)
+                    .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            retryOrFail(payment, new IllegalStateException("Interrupted while publishing payment", e));
+        } catch (ExecutionException | TimeoutException e) {
+            retryOrFail(payment, new IllegalStateException("Failed to publish payment: " + e.getMessage(), e));
+        }
+    }
 
-        TransactionDTO transactionToCreate = new TransactionDTO(null, description, paymentAmount, null);
+    @Override
+    public void completePayment(TransactionCreatedEvent event) {
+        Payment payment = paymentRepository.findById(event.getPaymentId()).orElse(null);
+        if (payment == null || payment.getStatus() == PaymentStatus.COMPLETED) {
+            // Redelivered reply, the email already went out
+            return;
+        }
+        // The transaction exists, so the payment is done even if it had been given up on
+        complete(payment, new TransactionDTO(event.getTransactionId(), event.getDescription(), event.getAmount(),
+                event.getDate(), event.getReference()));
+    }
 
-        TransactionDTO savedTransaction = transactionClient.createTransaction(transactionToCreate);
+    private void complete(Payment payment, TransactionDTO savedTransaction) {
+        payment.setStatus(PaymentStatus.COMPLETED);
+        payment.setTransactionId(savedTransaction.getId());
+        payment.setNextAttemptAt(null);
+        payment.setLastError(null);
+        payment.setUpdatedAt(Instant.now());
+        paymentRepository.save(payment);
+        meterRegistry.counter("payments.completed").increment();
 
-        mailService.sendPaymentEmail(recipient, savedTransaction);
+        try {
+            Recipient recipient = recipientService.getRecipientById(payment.getRecipientId());
+            mailService.sendPaymentEmail(recipient, savedTransaction);
+        } catch (RecipientNotFoundException ignored) {
+            // Recipient was removed after the payment was accepted, nobody to notify
+        }
+    }
+
+    private static String reference(Payment payment) {
+        return "payment-" + payment.getId();
+    }
+
+    private void retryOrFail(Payment payment, RuntimeException e) {
+        payment.setLastError(e.getMessage());
+        payment.setUpdatedAt(Instant.now());
+        if (e instanceof TransactionServiceUnavailableException) {
+            // Failed fast without reaching transaction-service, so an open breaker cannot use up the attempts
+            payment.setAttempts(payment.getAttempts() - 1);
+        }
+
+        if (!isRetryable(e) || payment.getAttempts() >= maxAttempts) {
+            payment.setStatus(PaymentStatus.FAILED);
+            payment.setNextAttemptAt(null);
+            meterRegistry.counter("payments.failed").increment();
+        } else {
+            long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.clamp(payment.getAttempts() - 1, 0, 20));
+            payment.setStatus(PaymentStatus.PENDING);
+            payment.setNextAttemptAt(Instant.now().plusMillis(backoff));
+        }
+        paymentRepository.save(payment);
+    }
+
+    /**
+     * The whole call as the payment sees it: Feign retries, bulkhead wait and circuit breaker included.
+     * Single attempts are recorded by Feign as http.client.requests.
+     */
+    private Timer createTransactionTimer(String outcome) {
+        return Timer.builder("payment.transaction.create")
+                .description("Time to create the transaction for a payment in transaction-service")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-        return savedTransaction;
+    /**
+     * Connection problems, timeouts and 5xx/429 are worth retrying, any other client error will fail the same way again
+     */
+    private static boolean isRetryable(RuntimeException e) {
+        if (e instanceof FeignException feignException) {
+            int status = feignException.status();
+            return status < 0 || status == 408 || status == 429 || status >= 500;
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
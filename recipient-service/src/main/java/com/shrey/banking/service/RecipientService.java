@@ -1,12 +1,17 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.dto.CursorPage;
+import com.shrey.banking.dto.RecipientFilter;
 import com.shrey.banking.entity.Recipient;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface RecipientService {
     Recipient saveRecipient(Recipient recipient);
-    List<Recipient> getAllRecipients();
+    CursorPage<Recipient> getRecipients(RecipientFilter filter, String cursor, Integer size);
     Recipient getRecipientById(Long id);
+    List<Recipient> getRecipientsByIds(Collection<Long> ids);
     Recipient updateRecipient(Long id, Recipient updated);
     Recipient deleteRecipient(Long id);
 } 
\ No newline at end of file
@@ -1,11 +1,23 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.config.CacheConfig;
+import com.shrey.banking.dto.CursorPage;
+import com.shrey.banking.dto.RecipientFilter;
 import com.shrey.banking.entity.Recipient;
+import com.shrey.banking.exception.InvalidCursorException;
 import com.shrey.banking.exception.RecipientNotFoundException;
 import com.shrey.banking.repository.RecipientRepository;
+import com.shrey.banking.util.InClauseChunks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
 
 @Service
@@ -14,22 +26,62 @@ public class RecipientServiceImpl implements RecipientService {
     @Autowired
     private RecipientRepository recipientRepository;
 
+    @Value("${app.pagination.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-size:500}")
+    private int maxPageSize;
+
     @Override
+    @CachePut(cacheNames = CacheConfig.RECIPIENTS_CACHE, key = "#result.id")
     public Recipient saveRecipient(Recipient recipient) {
         return recipientRepository.save(recipient);
     }
 
     @Override
-    public List<Recipient> getAllRecipients() {
-        return recipientRepository.findAll();
+    public CursorPage<Recipient> getRecipients(RecipientFilter filter, String cursor, Integer size) {
+        int pageSize = (size == null || size <= 0) ? defaultPageSize : Math.min(size, maxPageSize);
+
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            // Cursor is the id of the last row on the previous page
+            try {
+                afterId = Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidCursorException(cursor);
+            }
+        }
+
+        // One extra row tells whether there is a next page without a count query
+        List<Recipient> rows = recipientRepository.findPage(filter, afterId, pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(String.valueOf(rows.get(pageSize - 1).getId()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        return CursorPage.<Recipient>builder()
+                .items(rows)
+                .size(rows.size())
+                .nextCursor(nextCursor)
+                .build();
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfig.RECIPIENTS_CACHE, key = "#id")
     public Recipient getRecipientById(Long id) {
         return recipientRepository.findById(id).orElseThrow(() -> new RecipientNotFoundException(id));
     }
 
     @Override
+    public List<Recipient> getRecipientsByIds(Collection<Long> ids) {
+        // Missing IDs are simply absent from the result
+        return InClauseChunks.findAll(ids, recipientRepository::findAllById);
+    }
+
+    @Override
+    @CachePut(cacheNames = CacheConfig.RECIPIENTS_CACHE, key = "#id")
     public Recipient updateRecipient(Long id, Recipient updatedRecipient) {
         Recipient existingRecipient = getRecipientById(id);
         
@@ -41,6 +93,7 @@ public class RecipientServiceImpl implements RecipientService {
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfig.RECIPIENTS_CACHE, key = "#id")
     public Recipient deleteRecipient(Long id) {
         Recipient recipient = getRecipientById(id);
         recipientRepository.deleteById(id);
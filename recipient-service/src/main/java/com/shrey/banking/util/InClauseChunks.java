@@ -0,0 +1,26 @@
+package com.shrey.banking.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Splits lookups by a large key set into IN lists of bounded size. H2 re-checks every fetched row
+ * against the whole IN list, so a single query with thousands of keys gets quadratic.
+ */
+public final class InClauseChunks {
+    public static final int CHUNK_SIZE = 500;
+
+    private InClauseChunks() {
+    }
+
+    public static <K, V> List<V> findAll(Collection<K> keys, Function<List<K>, List<V>> lookup) {
+        List<K> keyList = new ArrayList<>(keys);
+        List<V> results = new ArrayList<>(keyList.size());
+        for (int from = 0; from < keyList.size(); from += CHUNK_SIZE) {
+            results.addAll(lookup.apply(keyList.subList(from, Math.min(keyList.size(), from + CHUNK_SIZE))));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,77 @@
+package com.shrey.banking.feignclient;
+
+import feign.Request;
+import feign.RetryableException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JitteredRetryerTests {
+
+    private static final Request REQUEST = Request.create(Request.HttpMethod.POST, "http://transaction-service/transactions",
+            Map.of(), null, StandardCharsets.UTF_8, null);
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        JitteredRetryer retryer = new JitteredRetryer(1, 5, 3);
+        RetryableException e = retryable(null);
+
+        // Attempts 2 and 3 go ahead, a fourth does not
+        retryer.continueOrPropagate(e);
+        retryer.continueOrPropagate(e);
+        assertSame(e, assertThrows(RetryableException.class, () -> retryer.continueOrPropagate(e)));
+    }
+
+    @Test
+    void everyCallStartsWithAFreshCount() {
+        JitteredRetryer retryer = new JitteredRetryer(1, 5, 2);
+        RetryableException e = retryable(null);
+        retryer.continueOrPropagate(e);
+        assertThrows(RetryableException.class, () -> retryer.continueOrPropagate(e));
+
+        JitteredRetryer next = (JitteredRetryer) retryer.clone();
+        next.continueOrPropagate(e);
+        assertThrows(RetryableException.class, () -> next.continueOrPropagate(e));
+    }
+
+    @Test
+    void waitsAsLongAsRetryAfterAsks() {
+        JitteredRetryer retryer = new JitteredRetryer(1, 1000, 3);
+        long start = System.nanoTime();
+        retryer.continueOrPropagate(retryable(System.currentTimeMillis() + 300));
+        long waitedMs = (System.nanoTime() - start) / 1_000_000;
+        // Jitter alone would wait at most 1ms
+        assertTrue(waitedMs >= 250, "waited " + waitedMs + "ms");
+    }
+
+    @Test
+    void retryAfterIsCappedAtTheMaximumBackoff() {
+        JitteredRetryer retryer = new JitteredRetryer(1, 50, 3);
+        long start = System.nanoTime();
+        retryer.continueOrPropagate(retryable(System.currentTimeMillis() + 60_000));
+        long waitedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(waitedMs < 5_000, "waited " + waitedMs + "ms");
+    }
+
+    @Test
+    void interruptedWaitPropagatesAndKeepsTheInterrupt() {
+        JitteredRetryer retryer = new JitteredRetryer(1, 1000, 3);
+        RetryableException e = retryable(System.currentTimeMillis() + 1000);
+        Thread.currentThread().interrupt();
+        try {
+            assertSame(e, assertThrows(RetryableException.class, () -> retryer.continueOrPropagate(e)));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private static RetryableException retryable(Long retryAfter) {
+        return new RetryableException(503, "busy", Request.HttpMethod.POST, retryAfter, REQUEST);
+    }
+}
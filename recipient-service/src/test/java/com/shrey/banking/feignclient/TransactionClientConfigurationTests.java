@@ -0,0 +1,67 @@
+package com.shrey.banking.feignclient;
+
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import feign.RetryableException;
+import feign.codec.ErrorDecoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TransactionClientConfigurationTests {
+
+    private static final Request REQUEST = Request.create(Request.HttpMethod.POST, "http://transaction-service/transactions",
+            Map.of(), null, StandardCharsets.UTF_8, null);
+
+    private final ErrorDecoder errorDecoder = new TransactionClientConfiguration().transactionClientErrorDecoder();
+
+    @Test
+    void tryAgainShortlyStatusesAreRetryable() {
+        for (int status : List.of(429, 502, 503, 504)) {
+            RetryableException e = assertInstanceOf(RetryableException.class, decode(status, Map.of()), "status " + status);
+            assertEquals(status, e.status());
+            assertEquals(Request.HttpMethod.POST, e.method());
+            assertNull(e.retryAfter());
+            // The decoded failure stays reachable for logs
+            assertInstanceOf(FeignException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void retryAfterFromTheServerIsKept() {
+        RetryableException e = assertInstanceOf(RetryableException.class,
+                decode(503, Map.of("Retry-After", List.of("2"))));
+        assertNotNull(e.retryAfter());
+        assertEquals(503, e.status());
+    }
+
+    @Test
+    void otherStatusesAreNotRetried() {
+        for (int status : List.of(400, 404, 409, 500)) {
+            Exception e = decode(status, Map.of());
+            assertInstanceOf(FeignException.class, e, "status " + status);
+            assertFalse(e instanceof RetryableException, "status " + status);
+            assertEquals(status, ((FeignException) e).status());
+        }
+    }
+
+    private Exception decode(int status, Map<String, Collection<String>> headers) {
+        return errorDecoder.decode("TransactionClient#createTransaction(TransactionDTO)", Response.builder()
+                .status(status)
+                .reason("status " + status)
+                .request(REQUEST)
+                .headers(headers)
+                .body("{}", StandardCharsets.UTF_8)
+                .build());
+    }
+}
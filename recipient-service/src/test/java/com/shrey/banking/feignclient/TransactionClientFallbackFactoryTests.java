@@ -0,0 +1,60 @@
+package com.shrey.banking.feignclient;
+
+import com.shrey.banking.dto.TransactionDTO;
+import com.shrey.banking.exception.TransactionServiceUnavailableException;
+import feign.FeignException;
+import feign.Request;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionClientFallbackFactoryTests {
+
+    private final TransactionClientFallbackFactory fallbackFactory = new TransactionClientFallbackFactory();
+
+    @Test
+    void callsThatWereNeverMadeFailFastAsUnavailable() {
+        List<Throwable> notAttempted = List.of(
+                CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("transaction-service")),
+                BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults("transaction-service")));
+        for (Throwable cause : notAttempted) {
+            TransactionClient client = fallbackFactory.create(cause);
+            assertSame(cause, assertThrows(TransactionServiceUnavailableException.class,
+                    () -> client.createTransaction(new TransactionDTO())).getCause());
+            assertSame(cause, assertThrows(TransactionServiceUnavailableException.class,
+                    () -> client.createTransactions(List.of())).getCause());
+        }
+    }
+
+    @Test
+    void failedCallsPassThroughUnchanged() {
+        Request request = Request.create(Request.HttpMethod.POST, "http://transaction-service/transactions",
+                Map.of(), null, StandardCharsets.UTF_8, null);
+        List<RuntimeException> failures = List.of(
+                new FeignException.BadRequest("bad request", request, null, Map.of()),
+                new IllegalArgumentException("no amount"));
+        for (RuntimeException failure : failures) {
+            TransactionClient client = fallbackFactory.create(failure);
+            assertSame(failure, assertThrows(RuntimeException.class, () -> client.createTransaction(new TransactionDTO())));
+            assertSame(failure, assertThrows(RuntimeException.class, () -> client.createTransactions(List.of())));
+        }
+    }
+
+    @Test
+    void checkedFailuresAreWrapped() {
+        IOException failure = new IOException("connection reset");
+        TransactionClient client = fallbackFactory.create(failure);
+        assertSame(failure, assertThrows(IllegalStateException.class,
+                () -> client.createTransaction(new TransactionDTO())).getCause());
+    }
+}
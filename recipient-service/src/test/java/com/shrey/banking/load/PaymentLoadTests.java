@@ -0,0 +1,220 @@
+package com.shrey.banking.load;
+
+import com.shrey.banking.RecipientServiceApplication;
+import com.shrey.banking.entity.Payment;
+import com.shrey.banking.entity.PaymentStatus;
+import com.shrey.banking.entity.Recipient;
+import com.shrey.banking.repository.PaymentRepository;
+import com.shrey.banking.repository.RecipientRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Accepts payments with more concurrent clients than Tomcat has platform threads and waits for the workers to
+ * book them against a stub transaction-service with fixed latency, once per thread mode. Prints accept latency
+ * and end-to-end completion side by side. Excluded from the default build, run with {@code mvn test -Pload-test}.
+ */
+@Tag("load")
+class PaymentLoadTests {
+    private static final int CLIENTS = 400;
+    private static final int PAYMENTS = 4000;
+    private static final int WARMUP_PAYMENTS = 1000;
+    private static final int RECIPIENTS = 100;
+    private static final int WORKERS = 32;
+    private static final long STUB_LATENCY_MS = 20;
+    private static final Duration COMPLETION_TIMEOUT = Duration.ofMinutes(3);
+
+    private static TransactionServiceStub transactionServiceStub;
+
+    @BeforeAll
+    static void startTransactionServiceStub() throws IOException {
+        transactionServiceStub = TransactionServiceStub.start(STUB_LATENCY_MS);
+    }
+
+    @AfterAll
+    static void stopTransactionServiceStub() {
+        transactionServiceStub.close();
+    }
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        LoadResult[] platform = run(false);
+        LoadResult[] virtual = run(true);
+
+        System.out.println();
+        System.out.println(LoadResult.HEADER);
+        for (int i = 0; i < platform.length; i++) {
+            System.out.println(platform[i]);
+            System.out.println(virtual[i]);
+        }
+
+        for (LoadResult result : virtual) {
+            assertEquals(0, result.errors(), () -> result.name() + " had failures");
+        }
+    }
+
+    private LoadResult[] run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipientServiceApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("mailSender", new DiscardingMailSender()))
+                // Command line arguments, so they win over application.properties
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + mode,
+                        "--spring.mail.username=load@example.com",
+                        "--transaction-service.url=" + transactionServiceStub.url(),
+                        "--app.payments.workers=" + WORKERS,
+                        "--logging.level.root=WARN")) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            PaymentRepository paymentRepository = context.getBean(PaymentRepository.class);
+
+            List<Recipient> recipients = new ArrayList<>();
+            for (int i = 0; i < RECIPIENTS; i++) {
+                recipients.add(new Recipient(null, "Load recipient " + i, "load" + i + "@example.com", 10));
+            }
+            List<Long> recipientIds = context.getBean(RecipientRepository.class).saveAll(recipients).stream()
+                    .map(Recipient::getId)
+                    .toList();
+            IntFunction<HttpRequest> pay = i -> HttpRequest.newBuilder(
+                            URI.create(baseUrl + "/payments/" + recipientIds.get(i % RECIPIENTS)))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":" + (1 + i % 50) + "}"))
+                    .build();
+
+            drive(mode + " warmup", pay, WARMUP_PAYMENTS);
+            awaitSettled(paymentRepository, WARMUP_PAYMENTS);
+            paymentRepository.deleteAllInBatch();
+
+            LoadResult accept = drive("accept   POST /payments  " + mode, pay, PAYMENTS);
+            LoadResult completion = awaitSettled(paymentRepository, PAYMENTS)
+                    .named("complete payment        " + mode);
+            return new LoadResult[]{accept, completion};
+        }
+    }
+
+    /**
+     * Waits until every accepted payment is completed or failed, then reports accept-to-done latency per payment
+     * and completions per second over the whole run.
+     */
+    private static LoadResult awaitSettled(PaymentRepository paymentRepository, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + COMPLETION_TIMEOUT.toNanos();
+        List<Payment> payments;
+        while (true) {
+            payments = paymentRepository.findAll();
+            long settled = payments.stream()
+                    .filter(payment -> payment.getStatus() == PaymentStatus.COMPLETED || payment.getStatus() == PaymentStatus.FAILED)
+                    .count();
+            if ((payments.size() >= expected && settled == payments.size()) || System.nanoTime() > deadline) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+
+        long[] latencies = new long[payments.size()];
+        long firstCreated = Long.MAX_VALUE;
+        long lastUpdated = Long.MIN_VALUE;
+        int failures = expected - payments.size();
+        for (int i = 0; i < payments.size(); i++) {
+            Payment payment = payments.get(i);
+            if (payment.getStatus() != PaymentStatus.COMPLETED) {
+                failures++;
+            }
+            latencies[i] = Duration.between(payment.getCreatedAt(), payment.getUpdatedAt()).toNanos();
+            firstCreated = Math.min(firstCreated, payment.getCreatedAt().toEpochMilli());
+            lastUpdated = Math.max(lastUpdated, payment.getUpdatedAt().toEpochMilli());
+        }
+        return LoadResult.of("settle", latencies, failures, (lastUpdated - firstCreated) * 1_000_000);
+    }
+
+    /**
+     * Closed loop: every client sends its next request as soon as the previous answer arrives.
+     */
+    private static LoadResult drive(String name, IntFunction<HttpRequest> requests, int total) throws InterruptedException {
+        long[] latencies = new long[total];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        // Closing the client pool waits for every client to finish, before the HTTP client closes
+        try (HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < total) {
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(requests.apply(i), HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException | InterruptedException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - sent;
+                    }
+                });
+            }
+        }
+        return LoadResult.of(name, latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    record LoadResult(String name, int requests, int errors, double throughput, double p50Ms, double p99Ms, double maxMs) {
+        static final String HEADER = String.format("%-32s %8s %7s %10s %9s %9s %9s",
+                "scenario", "requests", "errors", "per sec", "p50 ms", "p99 ms", "max ms");
+
+        static LoadResult of(String name, long[] latencies, int errors, long elapsedNanos) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            if (sorted.length == 0) {
+                return new LoadResult(name, 0, errors, 0, 0, 0, 0);
+            }
+            return new LoadResult(name, sorted.length, errors, sorted.length / (elapsedNanos / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            return sorted[(int) Math.ceil(quantile * sorted.length) - 1] / 1e6;
+        }
+
+        LoadResult named(String newName) {
+            return new LoadResult(newName, requests, errors, throughput, p50Ms, p99Ms, maxMs);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-32s %8d %7d %10.0f %9.1f %9.1f %9.1f", name, requests, errors, throughput, p50Ms, p99Ms, maxMs);
+        }
+    }
+
+    /**
+     * Builds messages as usual but never opens an SMTP connection
+     */
+    static class DiscardingMailSender extends JavaMailSenderImpl {
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+        }
+    }
+}
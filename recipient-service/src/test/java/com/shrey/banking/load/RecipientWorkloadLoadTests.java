@@ -0,0 +1,157 @@
+package com.shrey.banking.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.shrey.banking.RecipientServiceApplication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mixed workload against an in-process recipient-service with GreenMail as its SMTP server: CRUD on
+ * {@code /recipients}, payments and payment status at a fixed rate. Payments are booked against a
+ * {@link TransactionServiceStub}, or a running transaction-service given as {@code -Dload.transaction-service.url}.
+ * Writes a {@link LoadReport}. Excluded from the default build, run with {@code mvn test -Pload-test
+ * -Dtest=RecipientWorkloadLoadTests}; {@code -Dload.rate} (ops/s) and {@code -Dload.duration-seconds} size the run.
+ */
+@Tag("load")
+class RecipientWorkloadLoadTests {
+    private static final int SEEDED = 200;
+    private static final long STUB_LATENCY_MS = 20;
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP.dynamicPort());
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Test
+    void mixedWorkload() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "40"));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.duration-seconds", 30));
+        String transactionServiceUrl = System.getProperty("load.transaction-service.url");
+
+        try (TransactionServiceStub stub = transactionServiceUrl == null ? TransactionServiceStub.start(STUB_LATENCY_MS) : null;
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(RecipientServiceApplication.class)
+                     // Command line arguments, so they win over application.properties
+                     .run(
+                             "--server.port=0",
+                             "--spring.datasource.url=jdbc:h2:mem:workload",
+                             "--spring.mail.username=load@example.com",
+                             "--spring.mail.host=localhost",
+                             "--spring.mail.port=" + greenMail.getSmtp().getPort(),
+                             "--spring.mail.properties.mail.smtp.auth=false",
+                             "--spring.mail.properties.mail.smtp.starttls.enable=false",
+                             "--spring.mail.properties.mail.smtp.starttls.required=false",
+                             "--transaction-service.url=" + (stub != null ? stub.url() : transactionServiceUrl),
+                             "--logging.level.root=WARN");
+             HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            // Recipients that stay for the whole run, recipients waiting to be deleted, and accepted payments
+            List<Long> kept = new ArrayList<>();
+            Queue<Long> deletable = new ConcurrentLinkedQueue<>();
+            List<Long> payments = Collections.synchronizedList(new ArrayList<>());
+            for (int i = 0; i < SEEDED; i++) {
+                kept.add(create(http, baseUrl + "/recipients", recipient()));
+                deletable.add(create(http, baseUrl + "/recipients", recipient()));
+            }
+            payments.add(create(http, baseUrl + "/payments/" + pick(kept), null));
+
+            LoadReport report = new LoadDriver()
+                    .add("GET /recipients", 25, LoadDriver.http(http, () ->
+                            get(baseUrl + "/recipients?size=50")))
+                    .add("GET /recipients/{id}", 20, LoadDriver.http(http, () ->
+                            get(baseUrl + "/recipients/" + pick(kept))))
+                    .add("POST /recipients", 8, () -> {
+                        deletable.add(create(http, baseUrl + "/recipients", recipient()));
+                        return true;
+                    })
+                    .add("PUT /recipients/{id}", 8, LoadDriver.http(http, () ->
+                            HttpRequest.newBuilder(URI.create(baseUrl + "/recipients/" + pick(kept)))
+                                    .header("Content-Type", "application/json")
+                                    .PUT(HttpRequest.BodyPublishers.ofString(recipient()))
+                                    .build()))
+                    .add("DELETE /recipients/{id}", 4, () -> {
+                        Long id = deletable.poll();
+                        return id != null && http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/recipients/" + id))
+                                .DELETE().build(), HttpResponse.BodyHandlers.discarding()).statusCode() < 300;
+                    })
+                    .add("POST /payments/{id}", 20, () -> {
+                        payments.add(create(http, baseUrl + "/payments/" + pick(kept), null));
+                        return true;
+                    })
+                    .add("GET /payments/status/{id}", 15, LoadDriver.http(http, () ->
+                            get(baseUrl + "/payments/status/" + pick(payments))))
+                    .run("recipient-workload", rate, duration);
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            report.counter("mails.received", greenMail.getReceivedMessages().length)
+                    .counter("payments.completed", count(meterRegistry, "payments.completed"))
+                    .counter("payments.failed", count(meterRegistry, "payments.failed"));
+            Path written = report.write();
+            System.out.println("Report written to " + written.toAbsolutePath());
+
+            for (LoadReport.EndpointStats stats : report.endpoints()) {
+                assertTrue(stats.requests() > 0, () -> stats.name() + " was never called");
+            }
+        }
+    }
+
+    /**
+     * Posts the body, or nothing, and returns the ID of what was created
+     */
+    private static Long create(HttpClient http, String url, String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IOException("POST " + url + " failed with " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body()).get("id").asLong();
+    }
+
+    private String recipient() {
+        int n = sequence.incrementAndGet();
+        return "{\"description\":\"Workload recipient " + n + "\",\"email\":\"workload" + n + "@example.com\",\"amount\":"
+                + (1 + n % 50) + "}";
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static long pick(List<Long> ids) {
+        synchronized (ids) {
+            return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+    }
+
+    private static long count(MeterRegistry meterRegistry, String name) {
+        return (long) meterRegistry.find(name).counters().stream().mapToDouble(Counter::count).sum();
+    }
+}
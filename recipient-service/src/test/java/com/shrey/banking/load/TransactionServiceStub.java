@@ -0,0 +1,59 @@
+package com.shrey.banking.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for transaction-service: answers {@code POST /transactions} with the posted transaction plus
+ * an ID and today's date, after a fixed latency.
+ */
+final class TransactionServiceStub implements AutoCloseable {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpServer server;
+
+    private TransactionServiceStub(HttpServer server) {
+        this.server = server;
+    }
+
+    static TransactionServiceStub start(long latencyMs) throws IOException {
+        AtomicLong ids = new AtomicLong();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/transactions", exchange -> {
+            ObjectNode transaction = (ObjectNode) objectMapper.readTree(exchange.getRequestBody());
+            transaction.put("id", ids.incrementAndGet());
+            transaction.put("date", LocalDate.now().toString());
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = objectMapper.writeValueAsBytes(transaction);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return new TransactionServiceStub(server);
+    }
+
+    String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,191 @@
+package com.shrey.banking.messaging;
+
+import com.shrey.banking.dto.PaymentRequestedEvent;
+import com.shrey.banking.dto.TransactionCreatedEvent;
+import com.shrey.banking.entity.Payment;
+import com.shrey.banking.entity.PaymentStatus;
+import com.shrey.banking.entity.Recipient;
+import com.shrey.banking.repository.PaymentRepository;
+import com.shrey.banking.service.PaymentService;
+import com.shrey.banking.service.RecipientService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.payments.transport=kafka",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525"
+})
+@EmbeddedKafka(partitions = 3, topics = {"payments.requested", "transactions.created", "transactions.created.DLT"})
+class PaymentKafkaFlowTests {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private RecipientService recipientService;
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void publishesRequestKeyedByRecipientAndCompletesOnReply() throws InterruptedException {
+        Recipient recipient = recipientService.saveRecipient(Recipient.builder()
+                .description("Landlord")
+                .email("landlord@example.com")
+                .amount(1200)
+                .build());
+
+        PaymentRequestedEvent request;
+        try (Consumer<String, PaymentRequestedEvent> requests = requestConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(requests, "payments.requested");
+
+            Payment payment = paymentService.requestPayment(recipient.getId(), null, "rent-2026-10");
+            assertEquals(PaymentStatus.PENDING, payment.getStatus());
+
+            ConsumerRecord<String, PaymentRequestedEvent> record =
+                    KafkaTestUtils.getSingleRecord(requests, "payments.requested", Duration.ofSeconds(30));
+            request = record.value();
+            assertEquals(String.valueOf(recipient.getId()), record.key());
+            assertEquals(payment.getId(), request.getPaymentId());
+            assertEquals("payment-" + payment.getId(), request.getReference());
+            assertEquals(1200, request.getAmount());
+        }
+
+        TransactionCreatedEvent reply = TransactionCreatedEvent.builder()
+                .paymentId(request.getPaymentId())
+                .recipientId(request.getRecipientId())
+                .reference(request.getReference())
+                .transactionId(42L)
+                .description(request.getDescription())
+                .amount(request.getAmount())
+                .date(LocalDate.now())
+                .build();
+        kafkaTemplate.send("transactions.created", String.valueOf(reply.getRecipientId()), reply);
+        // A redelivered reply leaves the completed payment alone
+        kafkaTemplate.send("transactions.created", String.valueOf(reply.getRecipientId()), reply);
+
+        Payment completed = awaitStatus(request.getPaymentId(), PaymentStatus.COMPLETED);
+        assertEquals(42L, completed.getTransactionId());
+        assertEquals(1, completed.getAttempts());
+    }
+
+    @Test
+    void unreadableReplyGoesToTheDeadLetterTopicAndTheNextOneIsBooked() throws InterruptedException {
+        Recipient recipient = recipientService.saveRecipient(Recipient.builder()
+                .description("Plumber")
+                .email("plumber@example.com")
+                .amount(80)
+                .build());
+        // Saved directly, so no request goes out for it and the worker leaves it alone
+        Payment payment = paymentRepository.save(Payment.builder()
+                .idempotencyKey("repair-2026-10")
+                .recipientId(recipient.getId())
+                .description("Plumber")
+                .amount(80)
+                .status(PaymentStatus.PENDING)
+                .nextAttemptAt(Instant.now().plus(Duration.ofDays(1)))
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build());
+        String key = String.valueOf(recipient.getId());
+        byte[] unreadable = "{\"paymentId\": \"not a number\"".getBytes(StandardCharsets.UTF_8);
+
+        try (Consumer<String, byte[]> deadLetters = deadLetterConsumer();
+             Producer<String, byte[]> raw = rawProducer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(deadLetters, "transactions.created.DLT");
+            // Same key, so it sits in front of the good reply on the same partition
+            raw.send(new ProducerRecord<>("transactions.created", key, unreadable));
+            raw.flush();
+            kafkaTemplate.send("transactions.created", key, TransactionCreatedEvent.builder()
+                    .paymentId(payment.getId())
+                    .recipientId(recipient.getId())
+                    .reference("payment-" + payment.getId())
+                    .transactionId(43L)
+                    .description("Plumber")
+                    .amount(80)
+                    .date(LocalDate.now())
+                    .build());
+
+            // Delivered at least once: a rebalance before the commit can dead-letter it again
+            ConsumerRecords<String, byte[]> deadLetter = KafkaTestUtils.getRecords(deadLetters, Duration.ofSeconds(30), 1);
+            assertFalse(deadLetter.isEmpty());
+            for (ConsumerRecord<String, byte[]> record : deadLetter) {
+                assertEquals(key, record.key());
+                assertArrayEquals(unreadable, record.value());
+            }
+        }
+
+        assertEquals(43L, awaitStatus(payment.getId(), PaymentStatus.COMPLETED).getTransactionId());
+        assertTrue(meterRegistry.get("kafka.consumer.dead-lettered").counter().count() >= 1);
+    }
+
+    private Payment awaitStatus(Long paymentId, PaymentStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        Payment payment = paymentService.getPayment(paymentId);
+        while (payment.getStatus() != status && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            payment = paymentService.getPayment(paymentId);
+        }
+        return payment;
+    }
+
+    private Consumer<String, byte[]> deadLetterConsumer() {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("dead-letter-test", "false", embeddedKafka);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new ByteArrayDeserializer()).createConsumer();
+    }
+
+    private Producer<String, byte[]> rawProducer() {
+        return new DefaultKafkaProducerFactory<>(KafkaTestUtils.producerProps(embeddedKafka),
+                new StringSerializer(), new ByteArraySerializer()).createProducer();
+    }
+
+    private Consumer<String, PaymentRequestedEvent> requestConsumer() {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("request-test", "false", embeddedKafka);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        JsonDeserializer<PaymentRequestedEvent> valueDeserializer = new JsonDeserializer<>(PaymentRequestedEvent.class, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), valueDeserializer).createConsumer();
+    }
+}
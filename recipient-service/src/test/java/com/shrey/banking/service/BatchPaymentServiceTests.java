@@ -0,0 +1,255 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.BatchPaymentItemResult;
+import com.shrey.banking.dto.BatchPaymentResult;
+import com.shrey.banking.dto.PaymentRequestItem;
+import com.shrey.banking.dto.TransactionDTO;
+import com.shrey.banking.entity.Payment;
+import com.shrey.banking.entity.PaymentStatus;
+import com.shrey.banking.entity.Recipient;
+import com.shrey.banking.feignclient.TransactionClient;
+import com.shrey.banking.repository.PaymentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        "spring.datasource.url=jdbc:h2:mem:batch-payment-tests"
+})
+class BatchPaymentServiceTests {
+
+    @MockitoBean
+    private TransactionClient transactionClient;
+
+    @MockitoSpyBean
+    private PaymentService paymentService;
+
+    @Autowired
+    private BatchPaymentService batchPaymentService;
+
+    @MockitoBean
+    private MailService mailService;
+
+    @Autowired
+    private RecipientService recipientService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong transactionIds = new AtomicLong(1000);
+
+    @BeforeEach
+    void bookEveryTransaction() {
+        when(transactionClient.createTransactions(anyList())).thenAnswer(invocation -> {
+            List<TransactionDTO> booked = new ArrayList<>();
+            for (TransactionDTO transaction : invocation.<List<TransactionDTO>>getArgument(0)) {
+                booked.add(new TransactionDTO(transactionIds.incrementAndGet(), transaction.getDescription(),
+                        transaction.getAmount(), LocalDate.now(), transaction.getReference()));
+            }
+            return booked;
+        });
+    }
+
+    @Test
+    void replayWithoutAmountSurvivesAChangeOfTheRecipientsAmount() {
+        Recipient landlord = recipient("Landlord", 1200);
+        List<PaymentRequestItem> items = List.of(new PaymentRequestItem(landlord.getId(), null));
+
+        BatchPaymentItemResult first = single(batchPaymentService.makePayments(items, "rent-batch"));
+        assertEquals(BatchPaymentItemResult.Outcome.COMPLETED, first.getOutcome());
+        assertEquals(1200, first.getAmount());
+
+        landlord.setAmount(1250);
+        recipientService.updateRecipient(landlord.getId(), landlord);
+
+        // The same request again gets the same payment, at the amount it was made with
+        BatchPaymentItemResult replayed = single(batchPaymentService.makePayments(items, "rent-batch"));
+        assertEquals(first.getPaymentId(), replayed.getPaymentId());
+        assertEquals(BatchPaymentItemResult.Outcome.COMPLETED, replayed.getOutcome());
+        assertEquals(1200, replayed.getAmount());
+
+        // Naming an amount the first request did not is a different request
+        BatchPaymentItemResult conflicting = single(batchPaymentService.makePayments(
+                List.of(new PaymentRequestItem(landlord.getId(), 1200.0)), "rent-batch"));
+        assertEquals(BatchPaymentItemResult.Outcome.REJECTED, conflicting.getOutcome());
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyShareOnePayment() throws Exception {
+        Recipient plumber = recipient("Plumber", 80);
+        List<PaymentRequestItem> items = List.of(new PaymentRequestItem(plumber.getId(), 95.0));
+
+        // Both requests look up the key before either creates its payment; the loser's second lookup goes through
+        CyclicBarrier bothLookedUp = new CyclicBarrier(2);
+        AtomicInteger lookups = new AtomicInteger();
+        doAnswer(invocation -> {
+            Object existing = invocation.callRealMethod();
+            if (invocation.<Collection<String>>getArgument(0).contains("plumber-batch:0") && lookups.incrementAndGet() <= 2) {
+                bothLookedUp.await(10, TimeUnit.SECONDS);
+            }
+            return existing;
+        }).when(paymentService).getPaymentsByIdempotencyKeys(any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<BatchPaymentResult> first = executor.submit(() -> batchPaymentService.makePayments(items, "plumber-batch"));
+            Future<BatchPaymentResult> second = executor.submit(() -> batchPaymentService.makePayments(items, "plumber-batch"));
+            BatchPaymentItemResult firstItem = single(first.get(30, TimeUnit.SECONDS));
+            BatchPaymentItemResult secondItem = single(second.get(30, TimeUnit.SECONDS));
+
+            assertEquals(3, lookups.get());
+            assertNotNull(firstItem.getPaymentId());
+            assertEquals(firstItem.getPaymentId(), secondItem.getPaymentId());
+            assertNotEquals(BatchPaymentItemResult.Outcome.REJECTED, firstItem.getOutcome());
+            assertNotEquals(BatchPaymentItemResult.Outcome.REJECTED, secondItem.getOutcome());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void claimExpiringDuringTheBulkCallIsNotCompletedTwice() {
+        Recipient cleaner = recipient("Window cleaner", 35);
+        double completedBefore = meterRegistry.counter("payments.completed").count();
+        when(transactionClient.createTransactions(anyList())).thenAnswer(invocation -> {
+            List<TransactionDTO> transactions = invocation.getArgument(0);
+            Payment payment = paymentRepository.findById(paymentId(transactions.get(0))).orElseThrow();
+            // The claim covers every attempt of the bulk call timing out, backoff in between included
+            assertTrue(Duration.between(payment.getCreatedAt(), payment.getNextAttemptAt())
+                    .compareTo(Duration.ofMillis(3 * (2000 + 60000) + 2 * 1000)) >= 0);
+
+            takeOverAfterTheClaimExpired(payment.getId());
+            return bookAll(transactions);
+        });
+
+        BatchPaymentItemResult item = single(batchPaymentService.makePayments(
+                List.of(new PaymentRequestItem(cleaner.getId(), null)), "windows-batch"));
+
+        // Reported as the worker left it, and completed, counted and mailed once
+        assertEquals(BatchPaymentItemResult.Outcome.COMPLETED, item.getOutcome());
+        Payment payment = paymentRepository.findById(item.getPaymentId()).orElseThrow();
+        assertEquals(PaymentStatus.COMPLETED, payment.getStatus());
+        assertEquals(1, payment.getAttempts());
+        assertEquals(payment.getTransactionId(), item.getTransactionId());
+        assertEquals(completedBefore + 1, meterRegistry.counter("payments.completed").count());
+        verify(mailService, times(1)).sendPaymentEmail(any(), any());
+        verify(mailService, never()).sendPaymentEmails(anyList());
+    }
+
+    @Test
+    void lateBulkFailureDoesNotReopenAPaymentAWorkerCompleted() {
+        Recipient cleaner = recipient("Chimney sweep", 120);
+        when(transactionClient.createTransactions(anyList())).thenAnswer(invocation -> {
+            takeOverAfterTheClaimExpired(paymentId(invocation.<List<TransactionDTO>>getArgument(0).get(0)));
+            throw new IllegalStateException("Read timed out");
+        });
+
+        BatchPaymentItemResult item = single(batchPaymentService.makePayments(
+                List.of(new PaymentRequestItem(cleaner.getId(), null)), "chimney-batch"));
+
+        assertEquals(BatchPaymentItemResult.Outcome.COMPLETED, item.getOutcome());
+        Payment payment = paymentRepository.findById(item.getPaymentId()).orElseThrow();
+        assertEquals(PaymentStatus.COMPLETED, payment.getStatus());
+        assertNull(payment.getNextAttemptAt());
+        verify(mailService, times(1)).sendPaymentEmail(any(), any());
+    }
+
+    @Test
+    void failedBulkCallHandsItsPaymentsToTheWorkers() {
+        Recipient cleaner = recipient("Gutter cleaner", 60);
+        when(transactionClient.createTransactions(anyList())).thenThrow(new IllegalStateException("Read timed out"));
+
+        BatchPaymentItemResult item = single(batchPaymentService.makePayments(
+                List.of(new PaymentRequestItem(cleaner.getId(), null)), "gutter-batch"));
+
+        assertEquals(BatchPaymentItemResult.Outcome.PENDING, item.getOutcome());
+        assertEquals("Read timed out", item.getError());
+        Payment payment = paymentRepository.findById(item.getPaymentId()).orElseThrow();
+        assertEquals(PaymentStatus.PENDING, payment.getStatus());
+        assertEquals(1, payment.getAttempts());
+    }
+
+    /**
+     * What the dispatcher and a worker do once the batch's claim has expired: re-claim the payment and book it
+     */
+    private void takeOverAfterTheClaimExpired(Long paymentId) {
+        Instant expired = Instant.now().plus(Duration.ofDays(1));
+        Integer claimed = transactionTemplate.execute(status -> paymentRepository.claim(paymentId,
+                EnumSet.of(PaymentStatus.PENDING, PaymentStatus.PROCESSING), expired, expired.plusSeconds(60)));
+        assertEquals(1, claimed);
+        when(transactionClient.createTransaction(any())).thenAnswer(invocation -> book(invocation.getArgument(0)));
+        paymentService.processPayment(paymentId);
+    }
+
+    private List<TransactionDTO> bookAll(List<TransactionDTO> transactions) {
+        return transactions.stream().map(this::book).toList();
+    }
+
+    /**
+     * Dedupes on the reference like transaction-service does
+     */
+    private TransactionDTO book(TransactionDTO transaction) {
+        long id = 5000 + paymentId(transaction);
+        return new TransactionDTO(id, transaction.getDescription(), transaction.getAmount(), LocalDate.now(),
+                transaction.getReference());
+    }
+
+    private static Long paymentId(TransactionDTO transaction) {
+        return Long.valueOf(transaction.getReference().substring("payment-".length()));
+    }
+
+    private Recipient recipient(String description, double amount) {
+        return recipientService.saveRecipient(Recipient.builder()
+                .description(description)
+                .email(description.toLowerCase() + "@example.com")
+                .amount(amount)
+                .build());
+    }
+
+    private static BatchPaymentItemResult single(BatchPaymentResult result) {
+        assertEquals(1, result.getItems().size());
+        return result.getItems().get(0);
+    }
+}
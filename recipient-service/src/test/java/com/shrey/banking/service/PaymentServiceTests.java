@@ -0,0 +1,138 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.config.CacheConfig;
+import com.shrey.banking.entity.Payment;
+import com.shrey.banking.entity.PaymentStatus;
+import com.shrey.banking.entity.Recipient;
+import com.shrey.banking.exception.IdempotencyKeyConflictException;
+import com.shrey.banking.feignclient.TransactionClient;
+import com.shrey.banking.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        // Accepted payments stay PENDING, the tests only look at how they were accepted
+        "app.payments.poll-interval-ms=3600000",
+        "spring.datasource.url=jdbc:h2:mem:payment-service-tests"
+})
+class PaymentServiceTests {
+
+    @MockitoBean
+    private TransactionClient transactionClient;
+
+    @MockitoSpyBean
+    private RecipientService recipientService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void sameKeyReplaysThePayment() {
+        Recipient landlord = recipient("Landlord", 1200);
+
+        Payment first = paymentService.requestPayment(landlord.getId(), null, "rent-may");
+        assertEquals(PaymentStatus.PENDING, first.getStatus());
+        assertEquals(1200, first.getAmount());
+        assertNull(first.getRequestedAmount());
+
+        landlord.setAmount(1250);
+        recipientService.updateRecipient(landlord.getId(), landlord);
+
+        // A retry gets the payment it made, at the amount it was made with
+        Payment replayed = paymentService.requestPayment(landlord.getId(), null, "rent-may");
+        assertEquals(first.getId(), replayed.getId());
+        assertEquals(1200, replayed.getAmount());
+
+        Payment explicit = paymentService.requestPayment(landlord.getId(), 99.5, "deposit");
+        assertEquals(explicit.getId(), paymentService.requestPayment(landlord.getId(), 99.5, "deposit").getId());
+    }
+
+    @Test
+    void conflictingRequestWithTheSameKeyIsRejected() {
+        Recipient plumber = recipient("Plumber", 80);
+        Recipient electrician = recipient("Electrician", 80);
+        paymentService.requestPayment(plumber.getId(), 80.0, "repair");
+
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> paymentService.requestPayment(plumber.getId(), 95.0, "repair"));
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> paymentService.requestPayment(electrician.getId(), 80.0, "repair"));
+        // Leaving the amount out is a different request, even though it would come to the same amount
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> paymentService.requestPayment(plumber.getId(), null, "repair"));
+    }
+
+    @Test
+    void requestsWithoutAKeyAreNeverReplays() {
+        Recipient gardener = recipient("Gardener", 40);
+        Payment first = paymentService.requestPayment(gardener.getId(), null, null);
+        Payment second = paymentService.requestPayment(gardener.getId(), null, " ");
+        assertNotEquals(first.getId(), second.getId());
+        assertNotEquals(first.getIdempotencyKey(), second.getIdempotencyKey());
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyShareOnePayment() throws Exception {
+        Recipient cleaner = recipient("Cleaner", 60);
+        // Both requests must load the recipient, not find it cached
+        cacheManager.getCache(CacheConfig.RECIPIENTS_CACHE).evict(cleaner.getId());
+
+        // Both requests find no payment before either saves one, so the loser hits the unique key and looks again
+        CyclicBarrier bothLookedUp = new CyclicBarrier(2);
+        AtomicInteger arrivals = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (cleaner.getId().equals(invocation.getArgument(0)) && arrivals.incrementAndGet() <= 2) {
+                bothLookedUp.await(10, TimeUnit.SECONDS);
+            }
+            return invocation.callRealMethod();
+        }).when(recipientService).getRecipientById(anyLong());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Payment> first = executor.submit(() -> paymentService.requestPayment(cleaner.getId(), null, "cleaning"));
+            Future<Payment> second = executor.submit(() -> paymentService.requestPayment(cleaner.getId(), null, "cleaning"));
+
+            assertEquals(first.get(30, TimeUnit.SECONDS).getId(), second.get(30, TimeUnit.SECONDS).getId());
+            assertEquals(2, arrivals.get());
+            assertTrue(paymentRepository.findByIdempotencyKey("cleaning").isPresent());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Recipient recipient(String description, double amount) {
+        return recipientService.saveRecipient(Recipient.builder()
+                .description(description)
+                .email(description.toLowerCase() + "@example.com")
+                .amount(amount)
+                .build());
+    }
+}
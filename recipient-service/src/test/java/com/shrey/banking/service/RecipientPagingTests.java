@@ -0,0 +1,113 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.CursorPage;
+import com.shrey.banking.dto.RecipientFilter;
+import com.shrey.banking.entity.Recipient;
+import com.shrey.banking.exception.InvalidCursorException;
+import com.shrey.banking.repository.RecipientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        "app.pagination.max-size=4",
+        "spring.datasource.url=jdbc:h2:mem:recipient-paging-tests"
+})
+class RecipientPagingTests {
+    private static final String PREFIX = "Paging test ";
+
+    @Autowired
+    private RecipientService recipientService;
+
+    @Autowired
+    private RecipientRepository recipientRepository;
+
+    private final RecipientFilter filter = RecipientFilter.builder().descriptionPrefix(PREFIX).build();
+
+    private List<Long> ids;
+
+    @BeforeEach
+    void saveRecipients() {
+        recipientRepository.deleteAll(recipientRepository.findAll().stream()
+                .filter(recipient -> recipient.getDescription().startsWith(PREFIX))
+                .toList());
+        ids = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            ids.add(recipientRepository.save(Recipient.builder()
+                    .description(PREFIX + i)
+                    .email("paging" + i + "@example.com")
+                    .amount(i * 10)
+                    .build()).getId());
+        }
+    }
+
+    @Test
+    void pagesThroughEveryRecipientOnce() {
+        for (int size = 1; size <= ids.size() + 1; size++) {
+            assertEquals(ids, pageAll(filter, size), "page size " + size);
+        }
+    }
+
+    @Test
+    void capsThePageSize() {
+        CursorPage<Recipient> page = recipientService.getRecipients(filter, null, 100);
+        assertEquals(4, page.getSize());
+        assertEquals(String.valueOf(ids.get(3)), decode(page.getNextCursor()));
+    }
+
+    @Test
+    void keepsTheFilterAcrossPages() {
+        RecipientFilter between = RecipientFilter.builder()
+                .descriptionPrefix(PREFIX)
+                .minAmount(20.0)
+                .maxAmount(60.0)
+                .build();
+        assertEquals(ids.subList(1, 6), pageAll(between, 2));
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        CursorPage<Recipient> page = recipientService.getRecipients(filter, encode(String.valueOf(ids.get(4))), 2);
+        assertEquals(ids.subList(5, 7), page.getItems().stream().map(Recipient::getId).toList());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        for (String cursor : List.of("not base64!", encode("x"), encode("2024-05-01:5"))) {
+            assertThrows(InvalidCursorException.class, () -> recipientService.getRecipients(filter, cursor, 10), cursor);
+        }
+    }
+
+    private List<Long> pageAll(RecipientFilter filter, int size) {
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<Recipient> page = recipientService.getRecipients(filter, cursor, size);
+            page.getItems().forEach(recipient -> paged.add(recipient.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return paged;
+    }
+
+    private static String encode(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package com.shrey.banking.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Gauges for state that is kept outside of meters. Timers and counters are recorded where the work happens;
+ * everything is scraped from /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Boot meters ThreadPoolTaskExecutor beans as executor.*; the virtual-thread executors get the same gauges
+     * under the same name tag, so dashboards work in both modes
+     */
+    @Bean
+    public MeterBinder virtualThreadExecutorMetrics(Map<String, Executor> executors) {
+        return registry -> executors.forEach((name, executor) -> {
+            if (executor instanceof VirtualThreadTaskExecutor virtual) {
+                Gauge.builder("executor.active", virtual, VirtualThreadTaskExecutor::getActiveCount)
+                        .description("Tasks currently running")
+                        .tag("name", name)
+                        .baseUnit("threads")
+                        .register(registry);
+                Gauge.builder("executor.queued", virtual, v -> v.getInFlightCount() - v.getActiveCount())
+                        .description("Tasks started and waiting for a permit")
+                        .tag("name", name)
+                        .baseUnit("tasks")
+                        .register(registry);
+                Gauge.builder("executor.pool.max", virtual, VirtualThreadTaskExecutor::getConcurrencyLimit)
+                        .description("Tasks allowed to run at once")
+                        .tag("name", name)
+                        .baseUnit("threads")
+                        .register(registry);
+            }
+        });
+    }
+}
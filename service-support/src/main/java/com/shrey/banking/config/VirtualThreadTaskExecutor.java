@@ -0,0 +1,79 @@
+package com.shrey.banking.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts every task on its own virtual thread and bounds how many run at once with a semaphore instead of a
+ * pool size. Tasks over the limit park on the semaphore rather than in a bounded queue, so a burst is absorbed
+ * instead of rejected. The limit still matters: it protects whatever the tasks share (DB connections, SMTP,
+ * the workbook) and caps how many carrier threads synchronized code such as JavaMail can pin.
+ */
+public class VirtualThreadTaskExecutor implements TaskExecutor, DisposableBean {
+    private final String threadNamePrefix;
+    private final int concurrencyLimit;
+    private final Semaphore permits;
+    private final ThreadFactory threadFactory;
+
+    // Started and not yet finished, whether running or waiting for a permit
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    public VirtualThreadTaskExecutor(String threadNamePrefix, int concurrencyLimit) {
+        this.threadNamePrefix = threadNamePrefix;
+        this.concurrencyLimit = concurrencyLimit;
+        // Fair, so waiting tasks start in submission order like they would from a queue
+        this.permits = new Semaphore(concurrencyLimit, true);
+        this.threadFactory = Thread.ofVirtual().name(threadNamePrefix, 1).factory();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new TaskRejectedException(threadNamePrefix + " executor is shut down");
+        }
+
+        inFlight.incrementAndGet();
+        try {
+            threadFactory.newThread(() -> run(task)).start();
+        } catch (RuntimeException | OutOfMemoryError e) {
+            inFlight.decrementAndGet();
+            throw new TaskRejectedException("Failed to start " + threadNamePrefix + " task", e);
+        }
+    }
+
+    private void run(Runnable task) {
+        permits.acquireUninterruptibly();
+        try {
+            task.run();
+        } finally {
+            permits.release();
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public int getActiveCount() {
+        return concurrencyLimit - permits.availablePermits();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * Stops accepting tasks. Tasks already started, including those still waiting for a permit, run to completion.
+     */
+    @Override
+    public void destroy() {
+        shutdown = true;
+    }
+}
@@ -0,0 +1,39 @@
+package com.shrey.banking.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.shrey.banking.dto.CacheStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+    @Autowired
+    private CacheManager cacheManager;
+
+    @GetMapping("/stats")
+    public List<CacheStatistics> getStats()
+    {
+        List<CacheStatistics> statistics = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeineCache) {
+                CacheStats stats = caffeineCache.stats();
+                statistics.add(CacheStatistics.builder()
+                        .name(name)
+                        .size(caffeineCache.estimatedSize())
+                        .hits(stats.hitCount())
+                        .misses(stats.missCount())
+                        .hitRate(stats.hitRate())
+                        .evictions(stats.evictionCount())
+                        .build());
+            }
+        }
+        return statistics;
+    }
+}
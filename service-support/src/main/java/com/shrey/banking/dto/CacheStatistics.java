@@ -0,0 +1,19 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CacheStatistics {
+    private String name;
+    private long size;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+}
@@ -0,0 +1,109 @@
+package com.shrey.banking.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.TemplateSpec;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Renders mail templates. Thymeleaf keeps parsed templates cached; on top of that the template spec (and its
+ * cache key hash) is built once per template, and output goes into a buffer sized from earlier renders instead
+ * of one that regrows for every mail. A {@link Batch} also shares its context and buffer across many renders.
+ */
+@Component
+public class TemplateRenderer {
+    private static final int INITIAL_BUFFER_SIZE = 2048;
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    private final Map<String, TemplateSpec> specs = new ConcurrentHashMap<>();
+    // Largest output seen per template
+    private final Map<String, Integer> sizeHints = new ConcurrentHashMap<>();
+
+    public String render(String template, Consumer<Context> variables) {
+        return batch().render(template, variables);
+    }
+
+    /**
+     * Renderer for many mails on one thread. Not thread-safe.
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    public final class Batch {
+        private final Context context = new Context();
+        private final BufferWriter writer = new BufferWriter();
+
+        private Batch() {
+        }
+
+        public String render(String template, Consumer<Context> variables) {
+            TemplateSpec spec = specs.computeIfAbsent(template, name -> new TemplateSpec(name, (TemplateMode) null));
+            context.clearVariables();
+            variables.accept(context);
+
+            writer.reset(sizeHints.getOrDefault(template, INITIAL_BUFFER_SIZE));
+            templateEngine.process(spec, context, writer);
+            String output = writer.toString();
+
+            if (output.length() > sizeHints.getOrDefault(template, 0)) {
+                sizeHints.put(template, output.length());
+            }
+            return output;
+        }
+    }
+
+    /**
+     * Unsynchronized writer over a StringBuilder that can be emptied and reused
+     */
+    private static final class BufferWriter extends Writer {
+        private final StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+
+        void reset(int expectedSize) {
+            buffer.setLength(0);
+            buffer.ensureCapacity(expectedSize);
+        }
+
+        @Override
+        public void write(int c) {
+            buffer.append((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            buffer.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string) {
+            buffer.append(string);
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            buffer.append(string, offset, offset + length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.shrey.banking.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -9,8 +10,15 @@ import java.util.concurrent.Executor;
 @Configuration
 public class AsyncConfig {
 
+    // The same switch moves Tomcat, @Scheduled, async MVC and the Kafka listeners onto virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     @Bean(name = "fileOperationExecutor")
-    public Executor fileOperationExecutor() {
+    public Executor fileOperationExecutor(@Value("${app.threads.virtual.file-operation-concurrency:4}") int concurrency) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor("FileOp-", concurrency);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(2);
         executor.setMaxPoolSize(4);
@@ -21,7 +29,10 @@ public class AsyncConfig {
     }
 
     @Bean(name = "emailExecutor")
-    public Executor emailExecutor() {
+    public Executor emailExecutor(@Value("${app.threads.virtual.email-concurrency:2}") int concurrency) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor("Email-", concurrency);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(1);
         executor.setMaxPoolSize(2);
@@ -32,7 +43,10 @@ public class AsyncConfig {
     }
 
     @Bean(name = "schedulerExecutor")
-    public Executor schedulerExecutor() {
+    public Executor schedulerExecutor(@Value("${app.threads.virtual.scheduler-concurrency:2}") int concurrency) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor("Scheduler-", concurrency);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(1);
         executor.setMaxPoolSize(2);
@@ -41,4 +55,4 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.shrey.banking.config;
+
+import com.shrey.banking.dto.ExcelJournalStatus;
+import com.shrey.banking.service.ExcelWriteBehindService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ExcelHealthConfig {
+
+    /**
+     * Down while changes the API acknowledged exist only in memory, because the journal could not be written
+     */
+    @Bean
+    public HealthIndicator excelJournalHealthIndicator(ExcelWriteBehindService excelWriteBehindService) {
+        return () -> {
+            ExcelJournalStatus status = excelWriteBehindService.getStatus();
+            if (!status.isEnabled()) {
+                return Health.unknown().withDetail("enabled", false).build();
+            }
+            Health.Builder health = status.isJournalDurable() ? Health.up() : Health.down();
+            health.withDetail("pendingEntries", status.getPendingEntries())
+                    .withDetail("totalAppendFailures", status.getTotalAppendFailures());
+            if (status.getLastError() != null) {
+                health.withDetail("lastError", status.getLastError());
+            }
+            return health.build();
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.shrey.banking.config;
+
+import com.shrey.banking.service.ExcelWriteBehindService;
+import com.shrey.banking.service.WorkbookRowIndex;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gauges for the workbook state kept outside of meters, next to the ones {@link MetricsConfig} registers for
+ * both services
+ */
+@Configuration
+public class ExcelMetricsConfig {
+
+    @Bean
+    public MeterBinder writeBehindJournalMetrics(ExcelWriteBehindService excelWriteBehindService) {
+        return registry -> {
+            Gauge.builder("excel.write-behind.pending", excelWriteBehindService, service -> service.getStatus().getPendingEntries())
+                    .description("Journaled changes not yet flushed to the workbook")
+                    .register(registry);
+            Gauge.builder("excel.write-behind.oldest.age", excelWriteBehindService, service -> service.getStatus().getOldestPendingAgeMs())
+                    .description("Age of the oldest unflushed change")
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            FunctionCounter.builder("excel.write-behind.flushed", excelWriteBehindService, service -> service.getStatus().getTotalFlushedEntries())
+                    .description("Journaled changes flushed to the workbook")
+                    .register(registry);
+            FunctionCounter.builder("excel.write-behind.journal.append-failures", excelWriteBehindService, service -> service.getStatus().getTotalAppendFailures())
+                    .description("Writes of changes to the journal file that failed, leaving them only in memory")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Rows and tombstones of the indexed workbook; NaN while no index is kept, e.g. right after an external edit
+     */
+    @Bean
+    public MeterBinder workbookRowMetrics(WorkbookRowIndex workbookRowIndex) {
+        return registry -> {
+            Gauge.builder("excel.workbook.rows", workbookRowIndex, index -> usage(index, false))
+                    .description("Transactions in the first sheet of the workbook")
+                    .register(registry);
+            Gauge.builder("excel.workbook.tombstones", workbookRowIndex, index -> usage(index, true))
+                    .description("Rows emptied by deletes and not yet refilled or compacted away")
+                    .register(registry);
+        };
+    }
+
+    private static double usage(WorkbookRowIndex index, boolean tombstones) {
+        WorkbookRowIndex.Usage usage = index.usage();
+        if (usage == null) {
+            return Double.NaN;
+        }
+        return tombstones ? usage.tombstones() : usage.rows();
+    }
+}
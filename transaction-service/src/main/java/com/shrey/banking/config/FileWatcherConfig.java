@@ -1,15 +1,16 @@
 package com.shrey.banking.config;
 
-import com.shrey.banking.service.ExcelImportService;
-import com.shrey.banking.service.ExcelFileLock;
+import com.shrey.banking.service.ExcelChangePipeline;
+import com.shrey.banking.service.WorkbookPartitions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.nio.file.*;
 
@@ -19,12 +20,19 @@ public class FileWatcherConfig {
     @Autowired
     private ExcelFileWatcher excelFileWatcher;
 
+    // Off for benchmarks and tools that drive the workbook themselves
+    @Value("${app.excel.watcher.enabled:true}")
+    private boolean watcherEnabled;
+
     @PostConstruct
     public void startWatcher() {
-        excelFileWatcher.startWatching();
+        if (watcherEnabled) {
+            excelFileWatcher.startWatching();
+        }
     }
 
-    @PreDestroy
+    // Before executors shut down, which would otherwise wait for the blocked watch loop
+    @EventListener(ContextClosedEvent.class)
     public void stopWatcher() {
         excelFileWatcher.stopWatching();
     }
@@ -33,10 +41,10 @@ public class FileWatcherConfig {
     public static class ExcelFileWatcher {
 
         @Autowired
-        private ExcelImportService excelImportService;
+        private ExcelChangePipeline excelChangePipeline;
 
-        @Value("${app.excel.import.file.path}")
-        private String excelFilePath;
+        @Autowired
+        private WorkbookPartitions workbookPartitions;
 
         private WatchService watchService;
         private volatile boolean running = false;
@@ -45,15 +53,18 @@ public class FileWatcherConfig {
         public void startWatching() {
             try {
                 watchService = FileSystems.getDefault().newWatchService();
-                Path path = Paths.get(excelFilePath).getParent();
-                path.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
+                Path path = workbookPartitions.workbook().getParent();
+                // Editors that save via rename show up as a create rather than a modify
+                path.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
 
                 running = true;
                 while (running) {
                     WatchKey key = watchService.take();
                     for (WatchEvent<?> event : key.pollEvents()) {
-                        if (event.context().toString().equals("transactions.xlsx") && isUserModification()) {
-                            processFileChange();
+                        // The workbook, or with the monthly layout any of its partitions
+                        String fileName = event.context().toString();
+                        if (workbookPartitions.isWorkbookFile(fileName)) {
+                            excelChangePipeline.onFileEvent(path.resolve(fileName));
                         }
                     }
                     key.reset();
@@ -73,25 +84,5 @@ public class FileWatcherConfig {
                 }
             }
         }
-
-        private boolean isUserModification() {
-            // Try to acquire lock immediately - if available, it's user modification
-            if (ExcelFileLock.getLock().tryLock()) {
-                ExcelFileLock.getLock().unlock();
-                return true;
-            }
-            return false; // Lock is not available because the system is modifying
-        }
-
-        @Async("fileOperationExecutor")
-        public void processFileChange() {
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return;
-            }
-            excelImportService.importTransactionsFromExcel();
-        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.shrey.banking.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * Payment topics, only used when payments travel over Kafka. Both topics are keyed by recipient ID,
+ * so all events for one recipient land on one partition and stay in order. Requests that cannot be booked
+ * end up on a dead-letter topic after a few retries.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.payments.transport", havingValue = "kafka")
+public class KafkaConfig {
+
+    @Value("${app.kafka.topics.partitions:6}")
+    private int partitions;
+
+    @Bean
+    public NewTopic paymentRequestedTopic(@Value("${app.kafka.topics.payment-requested}") String name) {
+        return TopicBuilder.name(name).partitions(partitions).build();
+    }
+
+    @Bean
+    public NewTopic transactionCreatedTopic(@Value("${app.kafka.topics.transaction-created}") String name) {
+        return TopicBuilder.name(name).partitions(partitions).build();
+    }
+
+    @Bean
+    public NewTopic paymentRequestedDeadLetterTopic(@Value("${app.kafka.topics.payment-requested-dead-letter}") String name) {
+        return TopicBuilder.name(name).partitions(partitions).build();
+    }
+
+    /**
+     * Picked up by the listener container factory. The listener names the failed record of a batch, which is
+     * retried on its own and then published to the dead-letter topic on the partition it came from.
+     */
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(KafkaTemplate<String, Object> kafkaTemplate,
+                                                 @Value("${app.kafka.topics.payment-requested-dead-letter}") String deadLetterTopic,
+                                                 @Value("${app.kafka.consumer.retry.attempts:2}") long retryAttempts,
+                                                 @Value("${app.kafka.consumer.retry.backoff-ms:1000}") long retryBackoffMs) {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, e) -> new TopicPartition(deadLetterTopic, record.partition()));
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(retryBackoffMs, retryAttempts));
+    }
+}
@@ -0,0 +1,105 @@
+package com.shrey.banking.controller;
+
+import com.shrey.banking.dto.ExcelCompactionStatus;
+import com.shrey.banking.dto.ExcelJournalStatus;
+import com.shrey.banking.dto.ExcelLockStatus;
+import com.shrey.banking.dto.ExcelWatcherStatus;
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.service.ExcelChangePipeline;
+import com.shrey.banking.service.ExcelCompactionService;
+import com.shrey.banking.service.ExcelFileCoordinator;
+import com.shrey.banking.service.ExcelImportService;
+import com.shrey.banking.service.ExcelWriteBehindService;
+import com.shrey.banking.service.WorkbookSnapshotStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/excel")
+public class ExcelSyncController {
+    @Autowired
+    private ExcelWriteBehindService excelWriteBehindService;
+
+    @Autowired
+    private ExcelImportService excelImportService;
+
+    @Autowired
+    private ExcelChangePipeline excelChangePipeline;
+
+    @Autowired
+    private ExcelFileCoordinator excelFileCoordinator;
+
+    @Autowired
+    private WorkbookSnapshotStore workbookSnapshotStore;
+
+    @Autowired
+    private ExcelCompactionService excelCompactionService;
+
+    @GetMapping("/journal")
+    public ExcelJournalStatus getJournalStatus()
+    {
+        return excelWriteBehindService.getStatus();
+    }
+
+    @PostMapping("/journal/flush")
+    public ExcelJournalStatus flushJournal()
+    {
+        excelWriteBehindService.flush();
+        return excelWriteBehindService.getStatus();
+    }
+
+    @GetMapping("/import")
+    public List<ReconciliationSummary> getRecentImports()
+    {
+        return excelImportService.getRecentImports();
+    }
+
+    @GetMapping("/watcher")
+    public ExcelWatcherStatus getWatcherStatus()
+    {
+        return excelChangePipeline.getStatus();
+    }
+
+    @GetMapping("/lock")
+    public ExcelLockStatus getLockStatus()
+    {
+        return excelFileCoordinator.getStatus();
+    }
+
+    @GetMapping("/compaction")
+    public ExcelCompactionStatus getCompactionStatus()
+    {
+        return excelCompactionService.getStatus();
+    }
+
+    /**
+     * Rewrites the workbook without tombstones now, unless it has changes that are not imported yet
+     */
+    @PostMapping("/compaction")
+    public ExcelCompactionStatus compact()
+    {
+        excelCompactionService.compact("manual");
+        return excelCompactionService.getStatus();
+    }
+
+    /**
+     * Workbook version a mail was sent with, by the id in its X-Transactions-Snapshot header
+     */
+    @GetMapping("/snapshots/{id}")
+    public ResponseEntity<byte[]> getSnapshot(@PathVariable String id)
+    {
+        WorkbookSnapshotStore.Snapshot snapshot = workbookSnapshotStore.find(id);
+        if (snapshot == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + snapshot.fileName() + "\"")
+                .contentType(MediaType.parseMediaType(WorkbookSnapshotStore.CONTENT_TYPE))
+                .body(snapshot.content());
+    }
+}
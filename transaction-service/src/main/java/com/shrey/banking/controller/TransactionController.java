@@ -1,10 +1,17 @@
 package com.shrey.banking.controller;
 
+import com.shrey.banking.dto.CursorPage;
+import com.shrey.banking.dto.TransactionFilter;
 import com.shrey.banking.entity.Transaction;
 import com.shrey.banking.service.TransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -19,10 +26,39 @@ public class TransactionController {
         return transactionService.saveTransaction(transaction);
     }
 
+    @PostMapping("/batch")
+    public List<Transaction> createBatch(@RequestBody List<Transaction> transactions)
+    {
+        return transactionService.saveTransactions(transactions);
+    }
+
     @GetMapping
-    public List<Transaction> getAll()
+    public CursorPage<Transaction> getAll(@RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer size,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+                                          @RequestParam(required = false) Double minAmount,
+                                          @RequestParam(required = false) Double maxAmount,
+                                          @RequestParam(required = false) String description)
+    {
+        TransactionFilter filter = TransactionFilter.builder()
+                .fromDate(fromDate)
+                .toDate(toDate)
+                .minAmount(minAmount)
+                .maxAmount(maxAmount)
+                .descriptionPrefix(description)
+                .build();
+        return transactionService.getTransactions(filter, cursor, size);
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> stream()
     {
-        return transactionService.getAllTransactions();
+        // Runs on the async request thread, the read-only DB transaction is opened there
+        StreamingResponseBody body = out -> transactionService.streamTransactions(out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,25 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExcelCompactionStatus {
+    private boolean enabled;
+    private int rows;
+    private int tombstones;
+    private double tombstoneRatio;
+    private double thresholdRatio;
+    private long lastCompactionAt;
+    private String lastTrigger;
+    private int lastTombstonesRemoved;
+    private long lastDurationMs;
+    private long totalCompactions;
+    private String lastSkipReason;
+    private String lastError;
+}
@@ -0,0 +1,16 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExcelFileFingerprint {
+    private long size;
+    private long lastModified;
+    private String sha256;
+}
@@ -0,0 +1,34 @@
+package com.shrey.banking.dto;
+
+import com.shrey.banking.entity.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExcelJournalEntry {
+    public enum Operation { UPSERT, DELETE }
+
+    private long sequence;
+    private Operation operation;
+    private Long transactionId;
+    private String description;
+    private double amount;
+    private LocalDate date;
+    private long recordedAt;
+
+    public Transaction toTransaction() {
+        return Transaction.builder()
+                .id(transactionId)
+                .description(description)
+                .amount(amount)
+                .date(date)
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExcelJournalStatus {
+    private boolean enabled;
+    private int pendingEntries;
+    private long oldestPendingAgeMs;
+    private long lastRecordedSequence;
+    private long lastFlushedSequence;
+    private long lastFlushAt;
+    private int lastFlushSize;
+    private long lastFlushDurationMs;
+    private long totalFlushedEntries;
+    // False while pending entries are missing from the journal file after a failed append
+    private boolean journalDurable;
+    private long totalAppendFailures;
+    private String lastError;
+}
@@ -0,0 +1,34 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExcelLockStatus {
+    private boolean locked;
+    private String holder;
+    private long heldForMs;
+    private int queueLength;
+    private List<Operation> operations;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Operation {
+        private String name;
+        private long acquisitions;
+        private long contended;
+        private double meanWaitMs;
+        private double maxWaitMs;
+        private double meanHeldMs;
+        private double maxHeldMs;
+    }
+}
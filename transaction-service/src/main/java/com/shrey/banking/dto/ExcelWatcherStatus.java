@@ -0,0 +1,21 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExcelWatcherStatus {
+    private long eventsReceived;
+    private long eventsCoalesced;
+    private long selfWritesSuppressed;
+    private long importsStarted;
+    private long importsDeferred;
+    private boolean importRunning;
+    private long lastImportAt;
+    private String lastError;
+}
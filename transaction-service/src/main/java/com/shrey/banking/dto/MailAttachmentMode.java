@@ -0,0 +1,10 @@
+package com.shrey.banking.dto;
+
+/**
+ * What a transaction mail carries: the latest workbook snapshot, a CSV of only the rows it is about, or nothing
+ */
+public enum MailAttachmentMode {
+    WORKBOOK,
+    DELTA,
+    NONE
+}
@@ -0,0 +1,20 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MailDigestLine {
+    private String action;
+    private String description;
+    private double amount;
+    private LocalDate date;
+    private String details;
+}
@@ -0,0 +1,27 @@
+package com.shrey.banking.dto;
+
+import com.shrey.banking.entity.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * What an outbox entry needs to render its mail, stored as the entry payload
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MailEvent {
+    // Created or deleted transaction, or the new state of an updated one
+    private Transaction transaction;
+    // State before an update
+    private Transaction previous;
+    // Batch summaries: the first rows, plus count and total of the whole batch
+    private List<Transaction> transactions;
+    private int count;
+    private double totalAmount;
+}
@@ -0,0 +1,22 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationSummary {
+    private long startedAt;
+    private long durationMs;
+    private boolean fileUnchanged;
+    private long rowsExamined;
+    private long rowsUnchanged;
+    private long rowsApplied;
+    private long inserted;
+    private long updated;
+    private long deleted;
+}
@@ -0,0 +1,25 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Reply to a {@link PaymentRequestedEvent} once its transaction is committed, keyed by recipient ID
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionCreatedEvent {
+    private Long paymentId;
+    private Long recipientId;
+    private String reference;
+    private Long transactionId;
+    private String description;
+    private double amount;
+    private LocalDate date;
+}
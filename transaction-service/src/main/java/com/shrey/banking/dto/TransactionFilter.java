@@ -0,0 +1,20 @@
+package com.shrey.banking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionFilter {
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private Double minAmount;
+    private Double maxAmount;
+    private String descriptionPrefix;
+}
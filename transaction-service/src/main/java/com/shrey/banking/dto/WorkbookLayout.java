@@ -0,0 +1,10 @@
+package com.shrey.banking.dto;
+
+/**
+ * How the ledger is laid out on disk: one workbook with every transaction, or one workbook per month of
+ * transaction date next to it
+ */
+public enum WorkbookLayout {
+    SINGLE,
+    MONTHLY
+}
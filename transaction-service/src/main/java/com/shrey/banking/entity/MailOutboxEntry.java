@@ -0,0 +1,48 @@
+package com.shrey.banking.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A notification waiting to be mailed. Written in the same DB transaction as the change it describes,
+ * delivered later by the mail dispatcher.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(indexes = @Index(name = "idx_mail_outbox_status_next_attempt", columnList = "status, nextAttemptAt"))
+public class MailOutboxEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mail_outbox_seq")
+    @SequenceGenerator(name = "mail_outbox_seq", sequenceName = "mail_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private MailType type;
+
+    // MailEvent as JSON
+    @Lob
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    private MailOutboxStatus status;
+
+    private int attempts;
+    private Instant nextAttemptAt;
+    private String lastError;
+    private Instant createdAt;
+    private Instant sentAt;
+}
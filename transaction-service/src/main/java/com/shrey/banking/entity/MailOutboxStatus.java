@@ -0,0 +1,7 @@
+package com.shrey.banking.entity;
+
+public enum MailOutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
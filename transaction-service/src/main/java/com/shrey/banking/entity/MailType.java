@@ -0,0 +1,8 @@
+package com.shrey.banking.entity;
+
+public enum MailType {
+    TRANSACTION_CREATED,
+    TRANSACTION_UPDATED,
+    TRANSACTION_DELETED,
+    TRANSACTIONS_CREATED_SUMMARY
+}
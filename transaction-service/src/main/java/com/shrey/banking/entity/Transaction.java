@@ -4,6 +4,9 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import lombok.*;
 import java.time.LocalDate;
 
@@ -12,12 +15,25 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = {
+        @Index(name = "idx_transaction_date_id", columnList = "date, id"),
+        @Index(name = "idx_transaction_description", columnList = "description"),
+        @Index(name = "idx_transaction_reference", columnList = "reference", unique = true)
+})
 public class Transaction {
+    // IDs come from a pooled sequence so inserts can be JDBC-batched; raw JDBC writers draw blocks from it too
+    public static final String ID_SEQUENCE = "transaction_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private String description;
     private double amount;
     private LocalDate date;
+
+    // Caller-supplied dedupe key, e.g. the payment that produced this transaction; creating twice returns the first
+    private String reference;
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.shrey.banking.exception;
+
+import java.util.List;
+
+public class InvalidTransactionException extends RuntimeException {
+    private final List<String> errors;
+
+    public InvalidTransactionException(List<String> errors) {
+        super("Invalid transactions: " + String.join("; ", errors));
+        this.errors = errors;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
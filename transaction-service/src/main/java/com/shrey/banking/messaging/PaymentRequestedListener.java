@@ -0,0 +1,116 @@
+package com.shrey.banking.messaging;
+
+import com.shrey.banking.dto.PaymentRequestedEvent;
+import com.shrey.banking.dto.TransactionCreatedEvent;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.service.TransactionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Books each polled batch of payment requests as one transaction batch and answers every request on the
+ * reply topic. Delivery is at-least-once: a redelivered request carries the same reference, resolves to the
+ * transaction booked the first time and is simply answered again. If the batch cannot be booked as a whole, the
+ * requests are booked one by one so a bad one does not hold up the rest; the first that still fails is reported
+ * by its index, and the error handler retries it and then moves it to the dead-letter topic.
+ */
+@Component
+@ConditionalOnProperty(name = "app.payments.transport", havingValue = "kafka")
+public class PaymentRequestedListener {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Value("${app.kafka.topics.transaction-created}")
+    private String transactionCreatedTopic;
+
+    @KafkaListener(topics = "${app.kafka.topics.payment-requested}", batch = "true",
+            concurrency = "${app.kafka.consumer.concurrency:3}")
+    public void onPaymentsRequested(List<PaymentRequestedEvent> events) {
+        // Records that failed to deserialize arrive as null and are skipped
+        List<PaymentRequestedEvent> requests = new ArrayList<>(events.size());
+        List<Transaction> transactions = new ArrayList<>(events.size());
+        for (PaymentRequestedEvent event : events) {
+            if (event == null) {
+                continue;
+            }
+            requests.add(event);
+            transactions.add(toTransaction(event));
+        }
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        List<Transaction> savedTransactions;
+        try {
+            savedTransactions = transactionService.saveTransactions(transactions);
+        } catch (RuntimeException e) {
+            bookOneByOne(events);
+            return;
+        }
+        reply(requests, savedTransactions);
+    }
+
+    /**
+     * Books and answers the requests in order until one fails, which is then reported with its position in the
+     * batch: offsets before it are committed, it is retried, and the requests after it are redelivered.
+     */
+    private void bookOneByOne(List<PaymentRequestedEvent> events) {
+        List<PaymentRequestedEvent> requests = new ArrayList<>();
+        List<Transaction> savedTransactions = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            PaymentRequestedEvent event = events.get(i);
+            if (event == null) {
+                continue;
+            }
+            try {
+                savedTransactions.addAll(transactionService.saveTransactions(List.of(toTransaction(event))));
+                requests.add(event);
+            } catch (RuntimeException e) {
+                reply(requests, savedTransactions);
+                throw new BatchListenerFailedException("Payment request " + event.getPaymentId() + " could not be booked", e, i);
+            }
+        }
+        reply(requests, savedTransactions);
+    }
+
+    private void reply(List<PaymentRequestedEvent> requests, List<Transaction> savedTransactions) {
+        List<CompletableFuture<?>> replies = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentRequestedEvent request = requests.get(i);
+            Transaction transaction = savedTransactions.get(i);
+            replies.add(kafkaTemplate.send(transactionCreatedTopic, String.valueOf(request.getRecipientId()),
+                    TransactionCreatedEvent.builder()
+                            .paymentId(request.getPaymentId())
+                            .recipientId(request.getRecipientId())
+                            .reference(transaction.getReference())
+                            .transactionId(transaction.getId())
+                            .description(transaction.getDescription())
+                            .amount(transaction.getAmount())
+                            .date(transaction.getDate())
+                            .build()));
+        }
+        // Offsets are only committed once every reply is on the broker, otherwise the batch is redelivered
+        CompletableFuture.allOf(replies.toArray(new CompletableFuture[0])).join();
+    }
+
+    private static Transaction toTransaction(PaymentRequestedEvent event) {
+        return Transaction.builder()
+                .description(event.getDescription())
+                .amount(event.getAmount())
+                .reference(event.getReference())
+                .build();
+    }
+}
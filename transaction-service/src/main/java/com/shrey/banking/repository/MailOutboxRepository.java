@@ -0,0 +1,30 @@
+package com.shrey.banking.repository;
+
+import com.shrey.banking.entity.MailOutboxEntry;
+import com.shrey.banking.entity.MailOutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface MailOutboxRepository extends JpaRepository<MailOutboxEntry, Long> {
+
+    /**
+     * Pending entries whose backoff has passed, oldest first
+     */
+    @Query("select e from MailOutboxEntry e where e.status = com.shrey.banking.entity.MailOutboxStatus.PENDING " +
+            "and e.nextAttemptAt <= :now order by e.id")
+    List<MailOutboxEntry> findDue(@Param("now") Instant now, Pageable pageable);
+
+    long countByStatus(MailOutboxStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("delete from MailOutboxEntry e where e.status = com.shrey.banking.entity.MailOutboxStatus.SENT and e.sentAt < :before")
+    int deleteSentBefore(@Param("before") Instant before);
+}
@@ -1,6 +1,70 @@
 package com.shrey.banking.repository;
 
 import com.shrey.banking.entity.Transaction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
-public interface TransactionRepository extends JpaRepository<Transaction, Long> { }
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionRepositoryCustom {
+
+    Optional<Transaction> findByReference(String reference);
+
+    List<Transaction> findByReferenceIn(Collection<String> references);
+
+    /**
+     * Streams every transaction in ID order. Must be consumed inside a transaction and closed by the caller.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select t from Transaction t order by t.id")
+    Stream<Transaction> streamAllOrderById();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("select t.id from Transaction t")
+    Stream<Long> streamAllIds();
+
+    /**
+     * Streams the transactions dated in [from, to) in ID order. Must be consumed inside a transaction and closed by
+     * the caller.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select t from Transaction t where t.date >= :from and t.date < :to order by t.id")
+    Stream<Transaction> streamByDateOrderById(LocalDate from, LocalDate to);
+
+    /**
+     * Streams the transactions without a date in ID order, the same way
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select t from Transaction t where t.date is null order by t.id")
+    Stream<Transaction> streamUndatedOrderById();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("select t.id from Transaction t where t.date >= :from and t.date < :to")
+    Stream<Long> streamIdsByDate(LocalDate from, LocalDate to);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("select t.id from Transaction t where t.date is null")
+    Stream<Long> streamUndatedIds();
+
+    /**
+     * Every month with transactions as year * 100 + month, null for transactions without a date
+     */
+    @Query("select distinct year(t.date) * 100 + month(t.date) from Transaction t")
+    List<Integer> findDistinctMonths();
+}
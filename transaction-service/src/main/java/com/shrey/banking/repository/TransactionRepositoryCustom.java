@@ -0,0 +1,16 @@
+package com.shrey.banking.repository;
+
+import com.shrey.banking.dto.TransactionFilter;
+import com.shrey.banking.entity.Transaction;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface TransactionRepositoryCustom {
+    /**
+     * Newest-first page of transactions matching the filter, undated ones last, starting after the (date, id)
+     * keyset position or at the top when afterId is null. A null afterDate with an afterId is a position among
+     * the undated transactions.
+     */
+    List<Transaction> findPage(TransactionFilter filter, LocalDate afterDate, Long afterId, int limit);
+}
@@ -0,0 +1,65 @@
+package com.shrey.banking.repository;
+
+import com.shrey.banking.dto.TransactionFilter;
+import com.shrey.banking.entity.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Transaction> findPage(TransactionFilter filter, LocalDate afterDate, Long afterId, int limit) {
+        // Only the predicates that are actually set, so the (date, id) index can drive the scan
+        StringBuilder jpql = new StringBuilder("select t from Transaction t where 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+
+        if (filter.getFromDate() != null) {
+            jpql.append(" and t.date >= :fromDate");
+            parameters.put("fromDate", filter.getFromDate());
+        }
+        if (filter.getToDate() != null) {
+            jpql.append(" and t.date <= :toDate");
+            parameters.put("toDate", filter.getToDate());
+        }
+        if (filter.getMinAmount() != null) {
+            jpql.append(" and t.amount >= :minAmount");
+            parameters.put("minAmount", filter.getMinAmount());
+        }
+        if (filter.getMaxAmount() != null) {
+            jpql.append(" and t.amount <= :maxAmount");
+            parameters.put("maxAmount", filter.getMaxAmount());
+        }
+        if (filter.getDescriptionPrefix() != null && !filter.getDescriptionPrefix().isEmpty()) {
+            jpql.append(" and t.description like :descriptionPrefix escape '\\'");
+            parameters.put("descriptionPrefix", escapeLike(filter.getDescriptionPrefix()) + "%");
+        }
+        if (afterId != null && afterDate != null) {
+            // The plain range bound lets the index seek straight to the cursor position; undated rows come last
+            jpql.append(" and (t.date <= :afterDate and (t.date < :afterDate or t.id < :afterId) or t.date is null)");
+            parameters.put("afterDate", afterDate);
+            parameters.put("afterId", afterId);
+        } else if (afterId != null) {
+            // Already among the undated rows at the end
+            jpql.append(" and t.date is null and t.id < :afterId");
+            parameters.put("afterId", afterId);
+        }
+        jpql.append(" order by t.date desc nulls last, t.id desc");
+
+        TypedQuery<Transaction> query = entityManager.createQuery(jpql.toString(), Transaction.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,7 +1,9 @@
 package com.shrey.banking.scheduler;
 
+import com.shrey.banking.dto.ReconciliationSummary;
 import com.shrey.banking.service.ExcelExportService;
 import com.shrey.banking.service.ExcelImportService;
+import com.shrey.banking.service.WorkbookPartitions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -15,6 +17,9 @@ public class ExcelImportScheduler {
     @Autowired
     private ExcelExportService excelExportService;
 
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
     @PostConstruct
     public void runOnStartup() {
         scheduleExcelImport();
@@ -22,7 +27,11 @@ public class ExcelImportScheduler {
 
     @Scheduled(cron = "0 0 * * * *") // Every hour
     public void scheduleExcelImport() {
-        excelImportService.importTransactionsFromExcel();
-        excelExportService.exportTransactionsToExcel();
+        ReconciliationSummary summary = excelImportService.importTransactionsFromExcel();
+        // Only new rows need a rewrite, to put their generated IDs into the sheet; with the monthly layout only
+        // the partitions that need one are rewritten
+        if (summary.getInserted() > 0 || workbookPartitions.hasDirty()) {
+            excelExportService.exportTransactionsToExcel();
+        }
     }
 }
@@ -0,0 +1,152 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ExcelWatcherStatus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns raw file-system events for the workbook into imports. A burst of events for the same file is
+ * debounced into one import, writes the service made itself are recognised by checksum and dropped, and
+ * at most one import runs at a time with at most one follow-up queued behind it. With the monthly layout the
+ * import only reads the partitions that changed, and partitions it left needing a rewrite are exported after it.
+ */
+@Component
+public class ExcelChangePipeline {
+
+    @Autowired
+    private ExcelImportService excelImportService;
+
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
+    @Autowired
+    @Qualifier("fileOperationExecutor")
+    private Executor fileOperationExecutor;
+
+    @Value("${app.excel.watcher.debounce-ms:1000}")
+    private long debounceMs;
+
+    private final ScheduledExecutorService debouncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ExcelDebounce");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Path, ScheduledFuture<?>> pendingByFile = new ConcurrentHashMap<>();
+    private final AtomicBoolean importRunning = new AtomicBoolean(false);
+    private final AtomicBoolean rerunRequested = new AtomicBoolean(false);
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong eventsCoalesced = new AtomicLong();
+    private final AtomicLong selfWritesSuppressed = new AtomicLong();
+    private final AtomicLong importsStarted = new AtomicLong();
+    private final AtomicLong importsDeferred = new AtomicLong();
+    private volatile long lastImportAt;
+    private volatile String lastError;
+
+    @PreDestroy
+    public void shutdown() {
+        debouncer.shutdownNow();
+    }
+
+    /**
+     * Called for every create/modify event on the workbook. Restarts the file's debounce window.
+     */
+    public void onFileEvent(Path path) {
+        eventsReceived.incrementAndGet();
+        pendingByFile.compute(path, (file, pending) -> {
+            if (pending != null && pending.cancel(false)) {
+                eventsCoalesced.incrementAndGet();
+            }
+            return debouncer.schedule(() -> onFileSettled(file), debounceMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    public ExcelWatcherStatus getStatus() {
+        return ExcelWatcherStatus.builder()
+                .eventsReceived(eventsReceived.get())
+                .eventsCoalesced(eventsCoalesced.get())
+                .selfWritesSuppressed(selfWritesSuppressed.get())
+                .importsStarted(importsStarted.get())
+                .importsDeferred(importsDeferred.get())
+                .importRunning(importRunning.get())
+                .lastImportAt(lastImportAt)
+                .lastError(lastError)
+                .build();
+    }
+
+    private void onFileSettled(Path path) {
+        pendingByFile.remove(path);
+        try {
+            // The file is exactly what the service last wrote or imported
+            if (excelSyncState.isUnchangedSinceSync(path)) {
+                selfWritesSuppressed.incrementAndGet();
+                return;
+            }
+        } catch (IOException e) {
+            // File is mid-replace or gone, let the import decide
+        }
+        requestImport();
+    }
+
+    private void requestImport() {
+        if (!importRunning.compareAndSet(false, true)) {
+            // One import is running; make sure exactly one more follows it
+            rerunRequested.set(true);
+            importsDeferred.incrementAndGet();
+            return;
+        }
+
+        try {
+            fileOperationExecutor.execute(this::runImports);
+        } catch (RejectedExecutionException e) {
+            importRunning.set(false);
+            lastError = "Import rejected: " + e.getMessage();
+        }
+    }
+
+    private void runImports() {
+        do {
+            rerunRequested.set(false);
+            importsStarted.incrementAndGet();
+            try {
+                excelImportService.importTransactionsFromExcel();
+                if (workbookPartitions.hasDirty()) {
+                    excelExportService.exportTransactionsToExcel();
+                }
+                lastError = null;
+            } catch (RuntimeException e) {
+                lastError = e.getMessage();
+            }
+            lastImportAt = System.currentTimeMillis();
+        } while (rerunRequested.get());
+
+        importRunning.set(false);
+        // A request may have arrived between the last check and releasing the flag
+        if (rerunRequested.get()) {
+            requestImport();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ExcelCompactionStatus;
+
+public interface ExcelCompactionService {
+    boolean compact(String trigger);
+    ExcelCompactionStatus getStatus();
+}
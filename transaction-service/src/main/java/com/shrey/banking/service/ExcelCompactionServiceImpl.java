@@ -0,0 +1,186 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ExcelCompactionStatus;
+import com.shrey.banking.exception.ExcelExportException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Deletes leave tombstones, empty rows that later appends refill. When they pile up, e.g. after a bulk delete,
+ * the sheet is rewritten densely: once the tombstone share crosses a threshold, and on an off-peak schedule.
+ * The dense copy is a fresh export from the DB, so it only runs while the sheet holds no unimported edits.
+ * With the monthly layout each partition is judged and rewritten on its own.
+ */
+@Service
+public class ExcelCompactionServiceImpl implements ExcelCompactionService {
+
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private ExcelWriteBehindService excelWriteBehindService;
+
+    @Autowired
+    private ExcelFileCoordinator excelFileCoordinator;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    @Autowired
+    private WorkbookRowIndex workbookRowIndex;
+
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.excel.compaction.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.excel.compaction.tombstone-ratio:0.25}")
+    private double tombstoneRatio;
+
+    // Small sheets are cheap to scan and not worth a rewrite
+    @Value("${app.excel.compaction.min-tombstones:1000}")
+    private int minTombstones;
+
+    private volatile long lastCompactionAt;
+    private volatile String lastTrigger;
+    private volatile int lastTombstonesRemoved;
+    private volatile long lastDurationMs;
+    private volatile long totalCompactions;
+    private volatile String lastSkipReason;
+    private volatile String lastError;
+
+    @Scheduled(fixedDelayString = "${app.excel.compaction.check-interval-ms:60000}")
+    public void compactOverThreshold() {
+        if (enabled && workbookRowIndex.usageByFile().values().stream().anyMatch(this::isOverThreshold)) {
+            compactQuietly("threshold", this::isOverThreshold);
+        }
+    }
+
+    @Scheduled(cron = "${app.excel.compaction.cron:0 30 3 * * *}")
+    public void compactOffPeak() {
+        WorkbookRowIndex.Usage usage = workbookRowIndex.usage();
+        if (!enabled || usage == null || usage.tombstones() == 0) {
+            return;
+        }
+        compactQuietly("schedule", this::hasTombstones);
+    }
+
+    private void compactQuietly(String trigger, Predicate<WorkbookRowIndex.Usage> due) {
+        try {
+            compact(trigger, due);
+        } catch (RuntimeException ignored) {
+            // Recorded in lastError, retried on the next check
+        }
+    }
+
+    @Override
+    public boolean compact(String trigger) {
+        return compact(trigger, this::hasTombstones);
+    }
+
+    private boolean compact(String trigger, Predicate<WorkbookRowIndex.Usage> due) {
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.lockForWrite("compact")) {
+            long start = System.currentTimeMillis();
+            // Journaled changes land first, so the sheet and the DB agree before the rewrite
+            excelWriteBehindService.flush();
+
+            int tombstones = 0;
+            boolean skipped = false;
+            if (workbookPartitions.isPartitioned()) {
+                // Queue the partitions that are due; the export rewrites only those
+                for (Map.Entry<Path, WorkbookRowIndex.Usage> entry : workbookRowIndex.usageByFile().entrySet()) {
+                    if (!due.test(entry.getValue())) {
+                        continue;
+                    }
+                    if (!excelSyncState.isUnchangedSinceSync(entry.getKey())) {
+                        skipped = true;
+                        continue;
+                    }
+                    tombstones += entry.getValue().tombstones();
+                    workbookPartitions.markDirty(entry.getKey());
+                }
+                if (tombstones == 0) {
+                    lastSkipReason = skipped ? "Partitions have changes that are not imported yet" : "No tombstones to remove";
+                    return false;
+                }
+            } else {
+                if (!excelSyncState.isUnchangedSinceSync(workbookPartitions.workbook())) {
+                    // The export would drop edits the watcher has not imported yet
+                    lastSkipReason = "Workbook has changes that are not imported yet";
+                    return false;
+                }
+                WorkbookRowIndex.Usage before = workbookRowIndex.usage();
+                tombstones = before != null ? before.tombstones() : 0;
+            }
+
+            excelExportService.exportTransactionsToExcel();
+
+            lastCompactionAt = System.currentTimeMillis();
+            lastTrigger = trigger;
+            lastTombstonesRemoved = tombstones;
+            lastDurationMs = lastCompactionAt - start;
+            totalCompactions++;
+            lastSkipReason = skipped ? "Some partitions have changes that are not imported yet" : null;
+            lastError = null;
+            Timer.builder("excel.compaction")
+                    .description("Time to rewrite the workbook without tombstones")
+                    .tag("trigger", trigger)
+                    .register(meterRegistry)
+                    .record(lastDurationMs, TimeUnit.MILLISECONDS);
+            meterRegistry.counter("excel.compaction.tombstones", "trigger", trigger).increment(lastTombstonesRemoved);
+            return true;
+        } catch (IOException e) {
+            lastError = e.getMessage();
+            throw new ExcelExportException(e.getMessage());
+        } catch (RuntimeException e) {
+            lastError = e.getMessage();
+            throw e;
+        }
+    }
+
+    @Override
+    public ExcelCompactionStatus getStatus() {
+        WorkbookRowIndex.Usage usage = workbookRowIndex.usage();
+        return ExcelCompactionStatus.builder()
+                .enabled(enabled)
+                .rows(usage != null ? usage.rows() : 0)
+                .tombstones(usage != null ? usage.tombstones() : 0)
+                .tombstoneRatio(usage != null ? ratio(usage) : 0)
+                .thresholdRatio(tombstoneRatio)
+                .lastCompactionAt(lastCompactionAt)
+                .lastTrigger(lastTrigger)
+                .lastTombstonesRemoved(lastTombstonesRemoved)
+                .lastDurationMs(lastDurationMs)
+                .totalCompactions(totalCompactions)
+                .lastSkipReason(lastSkipReason)
+                .lastError(lastError)
+                .build();
+    }
+
+    private boolean isOverThreshold(WorkbookRowIndex.Usage usage) {
+        return usage.tombstones() >= minTombstones && ratio(usage) >= tombstoneRatio;
+    }
+
+    private boolean hasTombstones(WorkbookRowIndex.Usage usage) {
+        return usage.tombstones() > 0;
+    }
+
+    private static double ratio(WorkbookRowIndex.Usage usage) {
+        int total = usage.rows() + usage.tombstones();
+        return total == 0 ? 0 : (double) usage.tombstones() / total;
+    }
+}
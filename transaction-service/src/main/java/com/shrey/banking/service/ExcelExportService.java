@@ -2,9 +2,12 @@ package com.shrey.banking.service;
 
 import com.shrey.banking.entity.Transaction;
 
+import java.util.Collection;
+
 public interface ExcelExportService {
     void exportTransactionsToExcel();
     void saveTransactionToExcel(Transaction transaction);
     void updateTransactionInExcel(Long id, Transaction updatedTransaction);
     void deleteTransactionInExcel(Long id);
+    void applyChangesToExcel(Collection<Transaction> upserts, Collection<Long> deletedIds);
 } 
\ No newline at end of file
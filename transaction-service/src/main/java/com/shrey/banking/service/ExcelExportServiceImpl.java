@@ -3,20 +3,39 @@ package com.shrey.banking.service;
 import com.shrey.banking.entity.Transaction;
 import com.shrey.banking.repository.TransactionRepository;
 import com.shrey.banking.exception.ExcelExportException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
 
 @Service
 public class ExcelExportServiceImpl implements ExcelExportService {
@@ -27,81 +46,171 @@ public class ExcelExportServiceImpl implements ExcelExportService {
     @Autowired
     private ResourceLoader resourceLoader;
     
-    @Value("${app.excel.import.file.path}")
-    private String excelFilePath;
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    @Autowired
+    private ExcelFileCoordinator excelFileCoordinator;
+
+    @Autowired
+    private WorkbookRowIndex workbookRowIndex;
+
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${app.excel.export.row-window:100}")
+    private int rowWindowSize;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final String SHEET_NAME = "transactions";
+    // Stay well below Excel's limit
+    private static final int MAX_ROW = 1048574;
+
+    // Last row of a sheet in a full export, the rest continues on another sheet
+    private int maxRowIndex = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
     
     @Override
+    @Transactional(readOnly = true)
     public void exportTransactionsToExcel() {
-        ExcelFileLock.getLock().lock();
-        try {
-            List<Transaction> transactions = transactionRepository.findAll();
-
-            Workbook workbook = openWorkbook();
-            Sheet sheet = getOrCreateSheet(workbook);
-
-            ensureHeaderRow(sheet);
-            clearDataRows(sheet);
-
-            for (int i = 0; i < transactions.size(); i++) {
-                Row dataRow = sheet.createRow(i + 1);
-                writeTransactionRow(dataRow, transactions.get(i));
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.lockForWrite("export")) {
+            if (workbookPartitions.isPartitioned()) {
+                exportDirtyPartitions();
+                return;
+            }
+            try (Stream<Transaction> transactions = transactionRepository.streamAllOrderById()) {
+                exportWorkbook(workbookPartitions.workbook(), transactions);
             }
-
-            writeAndClose(workbook);
         } catch (Exception e) {
             throw new ExcelExportException(e.getMessage());
-        } finally {
-            ExcelFileLock.getLock().unlock();
         }
     }
-    
-    @Override
-    public void saveTransactionToExcel(Transaction transaction) {
-        try {
-            Workbook workbook = openWorkbook();
-            Sheet sheet = getOrCreateSheet(workbook);
 
-            ensureHeaderRow(sheet);
+    /**
+     * Rewrites the partitions queued by imports and compaction, writes months the DB has but the disk does not,
+     * and removes partitions whose transactions are all gone. A partition with edits that are not imported yet
+     * is left for the import and stays queued.
+     */
+    private void exportDirtyPartitions() throws IOException {
+        Set<Path> dirty = workbookPartitions.takeDirty();
+        Set<Path> withTransactions = new HashSet<>();
+        for (Integer month : transactionRepository.findDistinctMonths()) {
+            // Null for the undated partition
+            withTransactions.add(workbookPartitions.pathFor(month != null ? YearMonth.of(month / 100, month % 100) : null));
+        }
+        List<Path> existing = workbookPartitions.existing();
 
-            int rowIndex = findNextAvailableRow(sheet);
-            Row dataRow = getOrCreateRow(sheet, rowIndex);
-            writeTransactionRow(dataRow, transaction);
+        Set<Path> targets = new TreeSet<>(dirty);
+        for (Path path : withTransactions) {
+            if (!Files.exists(path)) {
+                targets.add(path);
+            }
+        }
+        for (Path path : existing) {
+            if (!withTransactions.contains(path)) {
+                targets.add(path);
+            }
+        }
 
-            writeAndClose(workbook);
-        } catch (Exception e) {
-            throw new ExcelExportException(e.getMessage());
+        for (Path path : targets) {
+            if (Files.exists(path) && !excelSyncState.isUnchangedSinceSync(path)) {
+                workbookPartitions.markDirty(path);
+                countPartitions("deferred");
+                continue;
+            }
+            if (!withTransactions.contains(path)) {
+                workbookRowIndex.take(path);
+                excelFileCoordinator.remove(path);
+                countPartitions("removed");
+                continue;
+            }
+            YearMonth month = workbookPartitions.monthOf(path);
+            try (Stream<Transaction> transactions = month != null
+                    ? transactionRepository.streamByDateOrderById(month.atDay(1), month.plusMonths(1).atDay(1))
+                    : transactionRepository.streamUndatedOrderById()) {
+                exportWorkbook(path, transactions);
+            }
+            countPartitions("rewritten");
         }
     }
 
-    @Override
-    public void updateTransactionInExcel(Long id, Transaction updatedTransaction) {
+    /**
+     * Streams the transactions into a fresh workbook at path, with the row index of its first sheet
+     */
+    private void exportWorkbook(Path path, Stream<Transaction> transactions) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindowSize);
+        Path tempFile = null;
         try {
-            Workbook workbook = openWorkbook();
-            Sheet sheet = getOrCreateSheet(workbook);
-
-            ensureHeaderRow(sheet);
-
-            boolean found = false;
-            int lastRowWithData = findLastRowWithData(sheet);
-            for (int i = 1; i <= lastRowWithData; i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-                Cell idCell = row.getCell(0);
-                if (idCell != null && idCell.getCellType() == CellType.NUMERIC && (long) idCell.getNumericCellValue() == id) {
-                    writeTransactionRow(row, updatedTransaction);
-                    found = true;
-                    break;
+            workbook.setCompressTempFiles(true);
+
+            Sheet sheet = createStreamingSheet(workbook);
+            int rowIndex = 1;
+            long rowsWritten = 0;
+            // Single-row writes only ever touch the first sheet
+            WorkbookRowIndex.Rows rows = new WorkbookRowIndex.Rows();
+
+            Iterator<Transaction> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                if (rowIndex > maxRowIndex) {
+                    // Continue on another sheet once the current one is full
+                    sheet = createStreamingSheet(workbook);
+                    rowIndex = 1;
+                }
+                if (workbook.getNumberOfSheets() == 1) {
+                    rows.occupied(transaction.getId(), rowIndex);
                 }
+                writeTransactionRow(sheet.createRow(rowIndex++), transaction);
+                rowsWritten++;
+                // Keep the persistence context from growing with the table
+                entityManager.detach(transaction);
             }
 
-            if (!found) {
-                int rowIndex = findNextAvailableRow(sheet);
-                writeTransactionRow(getOrCreateRow(sheet, rowIndex), updatedTransaction);
+            Timer.Sample write = Timer.start(meterRegistry);
+            tempFile = excelFileCoordinator.createTempFile();
+            try (OutputStream os = Files.newOutputStream(tempFile)) {
+                workbook.write(os);
+            }
+            excelFileCoordinator.publish(tempFile, path);
+            tempFile = null;
+            workbookRowIndex.publish(rows, path);
+            write.stop(writeTimer("export"));
+            countRows("export", rowsWritten);
+            // Freshly written from the DB
+            excelSyncState.markInSync(path);
+        } finally {
+            workbook.dispose();
+            try {
+                workbook.close();
+            } catch (IOException ignored) {
+            }
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                }
             }
+        }
+    }
+
+    @Override
+    public void saveTransactionToExcel(Transaction transaction) {
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.lockForWrite("save-row")) {
+            writeRows(List.of(transaction), List.of(), "save-row");
+        } catch (Exception e) {
+            throw new ExcelExportException(e.getMessage());
+        }
+    }
 
-            writeAndClose(workbook);
+    @Override
+    public void updateTransactionInExcel(Long id, Transaction updatedTransaction) {
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.lockForWrite("update-row")) {
+            writeRows(List.of(updatedTransaction), List.of(), "update-row");
         } catch (Exception e) {
             throw new ExcelExportException(e.getMessage());
         }
@@ -109,85 +218,153 @@ public class ExcelExportServiceImpl implements ExcelExportService {
 
     @Override
     public void deleteTransactionInExcel(Long id) {
-        try {
-            Workbook workbook = openWorkbook();
-            Sheet sheet = getOrCreateSheet(workbook);
-
-            boolean deleted = false;
-            int lastRowWithData = findLastRowWithData(sheet);
-            for (int i = 1; i <= lastRowWithData; i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-                Cell idCell = row.getCell(0);
-                if (idCell != null && idCell.getCellType() == CellType.NUMERIC && (long) idCell.getNumericCellValue() == id) {
-                    sheet.removeRow(row);
-                    int lastRow = findLastRowWithData(sheet);
-                    if (i < lastRow) {
-                        sheet.shiftRows(i + 1, lastRow, -1);
-                    }
-                    deleted = true;
-                    break;
-                }
-            }
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.lockForWrite("delete-row")) {
+            writeRows(List.of(), List.of(id), "delete-row");
+        } catch (Exception e) {
+            throw new ExcelExportException(e.getMessage());
+        }
+    }
 
-            if (deleted) {
-                writeAndClose(workbook);
-            } else {
-                workbook.close();
-            }
+    @Override
+    public void applyChangesToExcel(Collection<Transaction> upserts, Collection<Long> deletedIds) {
+        if (upserts.isEmpty() && deletedIds.isEmpty()) {
+            return;
+        }
+
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.lockForWrite("apply-changes")) {
+            writeRows(upserts, deletedIds, "apply-changes");
         } catch (Exception e) {
             throw new ExcelExportException(e.getMessage());
         }
     }
 
     /**
-     * Find the next available row for writing data, treating empty rows and phantom rows the same.
-     * Scans from row 1 (after header) and finds the first truly empty row.
+     * Sorts the changes by the workbook file they touch and writes each file once. With the monthly layout a
+     * transaction whose date moved it to another month is also removed from the partition that held it.
      */
-    private int findNextAvailableRow(Sheet sheet) {
-        // Start from row 1 (after header row 0)
-        int rowIndex = 1;
-        
-        // Look for the first empty row by checking if it has meaningful data
-        while (rowIndex < 1048575) { // Stay well below Excel's limit
-            Row row = sheet.getRow(rowIndex);
-            if (isRowEmpty(row)) {
-                return rowIndex;
+    private void writeRows(Collection<Transaction> upserts, Collection<Long> deletedIds, String operation)
+            throws IOException {
+        if (!workbookPartitions.isPartitioned()) {
+            writeRows(workbookPartitions.workbook(), upserts, deletedIds, operation);
+            return;
+        }
+
+        indexPartitions();
+        Map<Path, List<Transaction>> upsertsByPath = new TreeMap<>();
+        Map<Path, List<Long>> deletesByPath = new TreeMap<>();
+        for (Long id : deletedIds) {
+            Path held = workbookRowIndex.locate(id);
+            if (held != null) {
+                deletesByPath.computeIfAbsent(held, path -> new ArrayList<>()).add(id);
             }
-            rowIndex++;
         }
-        
-        // If we somehow reach here, something is very wrong
-        throw new ExcelExportException("Unable to find available row in Excel sheet");
+        for (Transaction transaction : upserts) {
+            Path target = workbookPartitions.pathFor(transaction.getDate());
+            upsertsByPath.computeIfAbsent(target, path -> new ArrayList<>()).add(transaction);
+            Path held = workbookRowIndex.locate(transaction.getId());
+            if (held != null && !held.equals(target)) {
+                deletesByPath.computeIfAbsent(held, path -> new ArrayList<>()).add(transaction.getId());
+            }
+        }
+
+        Set<Path> paths = new TreeSet<>(upsertsByPath.keySet());
+        paths.addAll(deletesByPath.keySet());
+        for (Path path : paths) {
+            writeRows(path, upsertsByPath.getOrDefault(path, List.of()), deletesByPath.getOrDefault(path, List.of()),
+                    operation);
+        }
+    }
+
+    private void writeRows(Path path, Collection<Transaction> upserts, Collection<Long> deletedIds, String operation)
+            throws IOException {
+        // A workbook that does not exist yet has no edits to lose
+        boolean wasInSync = !Files.exists(path) || excelSyncState.isUnchangedSinceSync(path);
+        WorkbookRowIndex.Rows rows = workbookRowIndex.take(path);
+        Workbook workbook = openWorkbook(path);
+        Sheet sheet = getOrCreateSheet(workbook);
+
+        ensureHeaderRow(sheet);
+        if (rows == null) {
+            rows = indexRows(sheet);
+        }
+
+        // Deletes first, so the rows they free can take this batch's new transactions.
+        // Emptied rather than shifted out, so every other row keeps its place in the index.
+        int deleted = 0;
+        for (Long id : deletedIds) {
+            int rowIndex = rows.remove(id);
+            if (rowIndex >= 0) {
+                clearRow(sheet, rowIndex);
+                deleted++;
+            }
+        }
+
+        for (Transaction transaction : upserts) {
+            int rowIndex = rows.find(transaction.getId());
+            if (rowIndex < 0) {
+                rowIndex = allocateRow(rows, transaction.getId());
+            }
+            writeTransactionRow(getOrCreateRow(sheet, rowIndex), transaction);
+        }
+
+        if (upserts.isEmpty() && deleted == 0) {
+            workbook.close();
+            workbookRowIndex.publish(rows, path);
+            return;
+        }
+        writeAndClose(workbook, path, wasInSync, operation, rows);
+        countRows(operation, upserts.size() + deleted);
     }
 
     /**
-     * Find the last row that actually contains data, avoiding phantom rows
+     * Indexes the partitions that have no kept index, e.g. after an external edit or a failed write, so every
+     * transaction can be located. Normally there are none.
      */
-    private int findLastRowWithData(Sheet sheet) {
-        // Start from a reasonable limit and work backwards
-        int maxRowToCheck = Math.min(sheet.getLastRowNum(), 10000); // Cap at 10k rows for safety
-        
-        for (int i = maxRowToCheck; i >= 1; i--) {
-            Row row = sheet.getRow(i);
-            if (row != null && hasData(row)) {
-                return i;
+    private void indexPartitions() throws IOException {
+        for (Path path : workbookPartitions.existing()) {
+            if (!workbookRowIndex.isKept(path)) {
+                try (Workbook workbook = openWorkbook(path)) {
+                    workbookRowIndex.publish(indexRows(getOrCreateSheet(workbook)), path);
+                }
             }
         }
-        return 0; // No data rows found
     }
 
     /**
-     * Check if a row has any meaningful data
+     * One pass over the first sheet, for when the kept index does not describe the file, e.g. after an external
+     * edit. Empty rows between data rows become free rows.
      */
-    private boolean hasData(Row row) {
-        // Check if any of the relevant cells have data
-        String description = getCellValueAsString(row.getCell(1));
-        double amount = getCellValueAsDouble(row.getCell(2));
-        
-        return !description.trim().isEmpty() || amount != 0;
+    private WorkbookRowIndex.Rows indexRows(Sheet sheet) {
+        WorkbookRowIndex.Rows rows = new WorkbookRowIndex.Rows(sheet.getPhysicalNumberOfRows());
+        for (Row row : sheet) {
+            if (row.getRowNum() == 0 || isRowEmpty(row)) {
+                continue;
+            }
+            Cell idCell = row.getCell(0);
+            if (idCell != null && idCell.getCellType() == CellType.NUMERIC) {
+                rows.occupied((long) idCell.getNumericCellValue(), row.getRowNum());
+            } else {
+                rows.occupied(row.getRowNum());
+            }
+        }
+        return rows;
     }
-    
+
+    private int allocateRow(WorkbookRowIndex.Rows rows, long id) {
+        int rowIndex = rows.allocate(id, MAX_ROW);
+        if (rowIndex < 0) {
+            throw new ExcelExportException("Unable to find available row in Excel sheet");
+        }
+        return rowIndex;
+    }
+
+    private void clearRow(Sheet sheet, int rowIndex) {
+        Row row = sheet.getRow(rowIndex);
+        if (row != null) {
+            sheet.removeRow(row);
+        }
+    }
+
     /**
      * Check if a row is empty (treats null rows and rows with empty data the same)
      */
@@ -259,19 +436,17 @@ public class ExcelExportServiceImpl implements ExcelExportService {
         }
     }
 
-    private void clearDataRows(Sheet sheet) {
-        int lastRowWithData = findLastRowWithData(sheet);
-        for (int i = lastRowWithData; i >= 1; i--) {
-            Row row = sheet.getRow(i);
-            if (row != null) {
-                sheet.removeRow(row);
-            }
-        }
+    private Sheet createStreamingSheet(SXSSFWorkbook workbook) {
+        int sheetCount = workbook.getNumberOfSheets();
+        Sheet sheet = workbook.createSheet(sheetCount == 0 ? SHEET_NAME : SHEET_NAME + " (" + (sheetCount + 1) + ")");
+        writeHeaderRow(sheet.createRow(0));
+        sheet.setColumnHidden(0, true);
+        return sheet;
     }
 
-    private Workbook openWorkbook() throws IOException {
+    private Workbook openWorkbook(Path path) throws IOException {
         try {
-            Resource resource = resourceLoader.getResource("file:" + excelFilePath);
+            Resource resource = resourceLoader.getResource("file:" + path);
             if (resource.exists()) {
                 try (InputStream is = resource.getInputStream()) {
                     return new XSSFWorkbook(is);
@@ -283,17 +458,53 @@ public class ExcelExportServiceImpl implements ExcelExportService {
     }
 
     private Sheet getOrCreateSheet(Workbook workbook) {
-        return (workbook.getNumberOfSheets() > 0) ? workbook.getSheetAt(0) : workbook.createSheet("transactions");
+        return (workbook.getNumberOfSheets() > 0) ? workbook.getSheetAt(0) : workbook.createSheet(SHEET_NAME);
     }
 
-    private void writeAndClose(Workbook workbook) throws IOException {
-        try (FileOutputStream os = new FileOutputStream(excelFilePath)) {
-            workbook.write(os);
+    /**
+     * Write the workbook to a temp file and publish it at path along with its row index. If the file matched the DB before this write it
+     * still does afterwards; otherwise it carries external edits that have not been imported yet, so it stays out of sync.
+     */
+    private void writeAndClose(Workbook workbook, Path path, boolean wasInSync, String operation, WorkbookRowIndex.Rows rows)
+            throws IOException {
+        Timer.Sample write = Timer.start(meterRegistry);
+        Path tempFile = excelFileCoordinator.createTempFile();
+        try {
+            try (OutputStream os = Files.newOutputStream(tempFile)) {
+                workbook.write(os);
+            } finally {
+                workbook.close();
+            }
+            excelFileCoordinator.publish(tempFile, path);
+            workbookRowIndex.publish(rows, path);
         } finally {
-            workbook.close();
+            Files.deleteIfExists(tempFile);
+        }
+        write.stop(writeTimer(operation));
+        if (wasInSync) {
+            excelSyncState.markInSync(path);
         }
     }
 
+    /**
+     * Serializing and publishing the workbook, the part of every write that grows with the file
+     */
+    private Timer writeTimer(String operation) {
+        return Timer.builder("excel.export.write")
+                .description("Time to serialize and publish the workbook")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void countRows(String operation, long rows) {
+        meterRegistry.counter("excel.export.rows", "operation", operation).increment(rows);
+    }
+
+    private void countPartitions(String outcome) {
+        meterRegistry.counter("excel.export.partitions", "outcome", outcome).increment();
+    }
+
     private void writeTransactionRow(Row row, Transaction transaction) {
         row.createCell(0, CellType.NUMERIC).setCellValue(transaction.getId());
         row.createCell(1, CellType.STRING).setCellValue(transaction.getDescription());
@@ -313,11 +524,15 @@ public class ExcelExportServiceImpl implements ExcelExportService {
         }
         Cell idHeader = headerRow.getCell(0);
         if (idHeader == null || !"ID".equals(idHeader.getStringCellValue())) {
-            headerRow.createCell(0, CellType.STRING).setCellValue("ID");
-            headerRow.createCell(1, CellType.STRING).setCellValue("Description");
-            headerRow.createCell(2, CellType.STRING).setCellValue("Amount");
-            headerRow.createCell(3, CellType.STRING).setCellValue("Date");
+            writeHeaderRow(headerRow);
         }
         sheet.setColumnHidden(0, true);
     }
+
+    private void writeHeaderRow(Row headerRow) {
+        headerRow.createCell(0, CellType.STRING).setCellValue("ID");
+        headerRow.createCell(1, CellType.STRING).setCellValue("Description");
+        headerRow.createCell(2, CellType.STRING).setCellValue("Amount");
+        headerRow.createCell(3, CellType.STRING).setCellValue("Date");
+    }
 } 
\ No newline at end of file
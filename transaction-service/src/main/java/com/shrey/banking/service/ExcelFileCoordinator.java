@@ -0,0 +1,238 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ExcelLockStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Coordinates access to the workbook file. Only code that materializes the workbook (write-behind flushes,
+ * exports, imports, direct row writes) takes the write lock. Every write is published with an atomic rename,
+ * so readers such as the {@link WorkbookSnapshotStore} copy it without locking. Wait and hold times are
+ * recorded per operation.
+ * <p>
+ * API writes to the DB share a separate gate that an import takes alone, from before its journal flush until
+ * its transaction completes. An import reconciles the DB against the sheet, so a write that committed between
+ * its flush and its ID snapshot would be deleted, and one that committed during the reconcile overwritten.
+ * The gate is always taken before the write lock.
+ */
+@Component
+public class ExcelFileCoordinator {
+    private static final String WAIT_TIMER = "excel.file.lock.wait";
+    private static final String HELD_TIMER = "excel.file.lock.held";
+    private static final String CONTENDED_COUNTER = "excel.file.lock.contended";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private WorkbookSnapshotStore workbookSnapshotStore;
+
+    @Value("${app.excel.import.file.path}")
+    private String excelFilePath;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Shared by API DB writes, exclusive for imports
+    private final ReentrantReadWriteLock importGate = new ReentrantReadWriteLock();
+    private final Map<String, OperationMeters> meters = new ConcurrentHashMap<>();
+
+    // Owner of the outermost hold, written and cleared by the lock holder only
+    private volatile String holder;
+    private volatile long heldSince;
+
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("excel.file.lock.queue", lock, ReentrantLock::getQueueLength)
+                .description("Threads waiting for the workbook write lock")
+                .register(meterRegistry);
+        Gauge.builder("excel.import.gate.queue", importGate, ReentrantReadWriteLock::getQueueLength)
+                .description("API writes and imports waiting for each other")
+                .register(meterRegistry);
+        Gauge.builder("excel.file.lock.held.current", this, coordinator -> coordinator.currentHoldMs())
+                .description("How long the current holder has had the workbook write lock")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take the workbook write lock for the given operation. Nested holds by the same thread are counted
+     * as part of the outer one.
+     */
+    public Hold lockForWrite(String operation) {
+        if (lock.isHeldByCurrentThread()) {
+            lock.lock();
+            return lock::unlock;
+        }
+
+        OperationMeters operationMeters = meters.computeIfAbsent(operation, this::createMeters);
+        long waitStart = System.nanoTime();
+        if (!lock.tryLock()) {
+            operationMeters.contended.increment();
+            lock.lock();
+        }
+        long acquiredAt = System.nanoTime();
+        operationMeters.waited.record(acquiredAt - waitStart, TimeUnit.NANOSECONDS);
+        holder = operation;
+        heldSince = acquiredAt;
+
+        return () -> {
+            holder = null;
+            operationMeters.held.record(System.nanoTime() - acquiredAt, TimeUnit.NANOSECONDS);
+            lock.unlock();
+        };
+    }
+
+    /**
+     * Hold off imports while the calling API write changes the DB. Inside a transaction the hold lasts until it
+     * completes, so after-commit work such as journaling happens before an import can start; closing the
+     * returned hold then does nothing.
+     */
+    public Hold holdForMutation(String operation) {
+        return acquireUntilCompletion(importGate.readLock(), operation);
+    }
+
+    /**
+     * Take the import gate alone, then the write lock. The write lock is released when the returned hold is
+     * closed, the gate when the surrounding transaction completes.
+     */
+    public Hold lockForImport() {
+        Hold gate = acquireUntilCompletion(importGate.writeLock(), "import");
+        Hold write;
+        try {
+            write = lockForWrite("import");
+        } catch (RuntimeException e) {
+            gate.close();
+            throw e;
+        }
+        return () -> {
+            write.close();
+            gate.close();
+        };
+    }
+
+    private Hold acquireUntilCompletion(Lock gateLock, String operation) {
+        Timer.Sample wait = Timer.start(meterRegistry);
+        gateLock.lock();
+        wait.stop(Timer.builder("excel.import.gate.wait")
+                .description("Time API writes and imports spent waiting for each other")
+                .tag("operation", operation)
+                .register(meterRegistry));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return gateLock::unlock;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                gateLock.unlock();
+            }
+        });
+        return () -> { };
+    }
+
+    /**
+     * Move a fully written temp file over the workbook file at target, so readers never see a partial file.
+     * Must be called with the write lock held.
+     */
+    public void publish(Path tempFile, Path target) throws IOException {
+        try {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        workbookSnapshotStore.published();
+    }
+
+    /**
+     * Delete a workbook file that has nothing left to hold, e.g. a month partition whose transactions are all
+     * gone. Must be called with the write lock held.
+     */
+    public void remove(Path target) throws IOException {
+        Files.deleteIfExists(target);
+        workbookSnapshotStore.published();
+    }
+
+    /**
+     * Temp file next to the workbook, so {@link #publish(Path, Path)} stays a rename on the same file system
+     */
+    public Path createTempFile() throws IOException {
+        Path target = Paths.get(excelFilePath).toAbsolutePath();
+        return Files.createTempFile(target.getParent(), ".transactions", ".xlsx.tmp");
+    }
+
+    public ExcelLockStatus getStatus() {
+        List<ExcelLockStatus.Operation> operations = new ArrayList<>();
+        meters.forEach((name, operationMeters) -> operations.add(ExcelLockStatus.Operation.builder()
+                .name(name)
+                .acquisitions(operationMeters.waited.count())
+                .contended((long) operationMeters.contended.count())
+                .meanWaitMs(operationMeters.waited.mean(TimeUnit.MILLISECONDS))
+                .maxWaitMs(operationMeters.waited.max(TimeUnit.MILLISECONDS))
+                .meanHeldMs(operationMeters.held.mean(TimeUnit.MILLISECONDS))
+                .maxHeldMs(operationMeters.held.max(TimeUnit.MILLISECONDS))
+                .build()));
+
+        return ExcelLockStatus.builder()
+                .locked(lock.isLocked())
+                .holder(holder)
+                .heldForMs(currentHoldMs())
+                .queueLength(lock.getQueueLength())
+                .operations(operations)
+                .build();
+    }
+
+    private long currentHoldMs() {
+        return holder == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - heldSince);
+    }
+
+    private OperationMeters createMeters(String operation) {
+        return new OperationMeters(
+                Timer.builder(WAIT_TIMER)
+                        .description("Time spent waiting for the workbook write lock")
+                        .tag("operation", operation)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                Timer.builder(HELD_TIMER)
+                        .description("Time the workbook write lock was held")
+                        .tag("operation", operation)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                Counter.builder(CONTENDED_COUNTER)
+                        .description("Acquisitions that found the workbook write lock taken")
+                        .tag("operation", operation)
+                        .register(meterRegistry));
+    }
+
+    /**
+     * Releases the lock when closed
+     */
+    @FunctionalInterface
+    public interface Hold extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record OperationMeters(Timer waited, Timer held, Counter contended) {
+    }
+}
@@ -1,5 +1,10 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.dto.ReconciliationSummary;
+
+import java.util.List;
+
 public interface ExcelImportService {
-    void importTransactionsFromExcel();
+    ReconciliationSummary importTransactionsFromExcel();
+    List<ReconciliationSummary> getRecentImports();
 }
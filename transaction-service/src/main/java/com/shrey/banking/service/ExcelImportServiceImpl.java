@@ -1,172 +1,406 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.dto.ExcelFileFingerprint;
+import com.shrey.banking.dto.ReconciliationSummary;
 import com.shrey.banking.entity.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.time.ZoneId;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 @Service
 public class ExcelImportServiceImpl implements ExcelImportService {
     @Autowired
-    private TransactionService transactionService;
+    private TransactionReconciliationService transactionReconciliationService;
 
     @Autowired
-    private ResourceLoader resourceLoader;
+    private ExcelWriteBehindService excelWriteBehindService;
 
-    @Value("${app.excel.import.file.path}")
-    private String excelFilePath;
+    @Autowired
+    private ExcelSyncState excelSyncState;
 
-    @Override
-    public void importTransactionsFromExcel() {
-        List<Transaction> transactions = new ArrayList<>();
-        ExcelFileLock.getLock().lock();
-        try {
-            Resource resource = resourceLoader.getResource("file:" + excelFilePath);
-            try (InputStream inputStream = resource.getInputStream();
-                 Workbook workbook = new XSSFWorkbook(inputStream)) {
+    @Autowired
+    private ExcelFileCoordinator excelFileCoordinator;
 
-                Sheet sheet = workbook.getSheetAt(0);
+    @Autowired
+    private WorkbookRowIndex workbookRowIndex;
 
-                // Ensure ID column (insert at 0 if missing)
-                Row header = sheet.getRow(0);
-                if (header == null || !"ID".equals(getCellValueAsString(header.getCell(0)))) {
-                    insertIdColumn(sheet);
-                }
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
 
-                sheet.setColumnHidden(0, true);
+    @Autowired
+    private ExcelExportService excelExportService;
 
-                int lastRowWithData = findLastRowWithData(sheet);
-                for (int i = 1; i <= lastRowWithData; i++) {
-                    Row row = sheet.getRow(i);
-                    if (row == null) continue;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-                    Long id = getCellValueAsLong(row.getCell(0));
+    @Value("${app.excel.import.chunk-size:1000}")
+    private int chunkSize;
 
-                    String description = getCellValueAsString(row.getCell(1));
-                    double amount = getCellValueAsDouble(row.getCell(2));
-                    LocalDate date = getCellValueAsLocalDate(row.getCell(3));
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-                    // Skip rows with empty description and zero amount (blank rows)
-                    if (description.trim().isEmpty() && amount == 0) {
-                        continue;
-                    }
+    @Override
+    public List<ReconciliationSummary> getRecentImports() {
+        return excelSyncState.getRecentRuns();
+    }
 
-                    Transaction transaction = Transaction.builder()
-                            .id(id) // Set if present
-                            .description(description)
-                            .amount(amount)
-                            .date(date)
-                            .build();
-                    transactions.add(transaction);
+    @Override
+    @Transactional
+    public ReconciliationSummary importTransactionsFromExcel() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        // Holds off flushes and exports so the file stays the snapshot being reconciled, and API writes until commit
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.lockForImport()) {
+            // The workbook is the source of truth for the import, so pending API changes must land first
+            excelWriteBehindService.flush();
+
+            List<Path> files = workbookPartitions.existing();
+            // Monthly layout without partitions yet: split the single workbook, if there is one
+            boolean splitting = workbookPartitions.isPartitioned() && files.isEmpty();
+            if (splitting && Files.exists(workbookPartitions.workbook())) {
+                files = List.of(workbookPartitions.workbook());
+            }
+            List<Path> changed = new ArrayList<>();
+            for (Path path : files) {
+                if (!excelSyncState.isUnchangedSinceSync(path)) {
+                    changed.add(path);
                 }
+            }
+            if (changed.isEmpty()) {
+                ReconciliationSummary summary = ReconciliationSummary.builder()
+                        .startedAt(System.currentTimeMillis())
+                        .fileUnchanged(true)
+                        .build();
+                excelSyncState.recordRun(summary);
+                sample.stop(importTimer("unchanged"));
+                return summary;
+            }
 
-                transactionService.upsertTransactions(transactions);
+            ReconciliationRun run;
+            if (workbookPartitions.isPartitioned() && !splitting) {
+                // Only the changed partitions' months; a row moved to a partition that is not read now is still there
+                run = transactionReconciliationService.startRun(
+                        changed.stream().map(workbookPartitions::monthOf).toList(),
+                        id -> {
+                            Path held = workbookRowIndex.locate(id);
+                            return held != null && !changed.contains(held);
+                        });
+            } else {
+                run = transactionReconciliationService.startRun();
+            }
+            List<Transaction> chunk = new ArrayList<>(chunkSize);
+            Consumer<Transaction> rowConsumer = transaction -> {
+                chunk.add(transaction);
+                if (chunk.size() >= chunkSize) {
+                    run.accept(chunk);
+                    chunk.clear();
+                }
+            };
 
+            Map<Path, ExcelFileFingerprint> fingerprints = new LinkedHashMap<>();
+            List<Transaction> moved = new ArrayList<>();
+            for (Path path : changed) {
+                ExcelFileFingerprint fingerprint = excelSyncState.fingerprint(path);
+                fingerprints.put(path, fingerprint);
+                long insertedBefore = run.inserted();
+
+                readWorkbook(path, fingerprint, routing(path, splitting, moved, rowConsumer), !splitting);
+                if (!chunk.isEmpty()) {
+                    run.accept(chunk);
+                    chunk.clear();
+                }
+                // New rows get their generated IDs written back by the next export
+                if (!splitting && run.inserted() > insertedBefore) {
+                    workbookPartitions.markDirty(path);
+                }
             }
+
+            // DB rows that are no longer in the sheet get deleted here
+            ReconciliationSummary summary = run.finish();
+            moveRows(run, moved);
+            excelSyncState.recordRun(summary);
+            sample.stop(importTimer("reconciled"));
+            countRows(summary);
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fingerprints.forEach(excelSyncState::markInSync);
+                }
+            });
+            return summary;
         } catch (Exception e) {
+            sample.stop(importTimer("failed"));
             throw new RuntimeException("Failed to import Excel: " + e.getMessage(), e);
-        } finally {
-            ExcelFileLock.getLock().unlock();
         }
     }
 
     /**
-     * Find the last row that actually contains data, avoiding phantom rows
+     * Streams every sheet of the workbook at path into rowConsumer, and keeps the row index of the first one
      */
-    private int findLastRowWithData(Sheet sheet) {
-        // Start from a reasonable limit and work backwards
-        int maxRowToCheck = Math.min(sheet.getLastRowNum(), 10000); // Cap at 10k rows for safety
-        
-        for (int i = maxRowToCheck; i >= 1; i--) {
-            Row row = sheet.getRow(i);
-            if (row != null && hasData(row)) {
-                return i;
+    private void readWorkbook(Path path, ExcelFileFingerprint fingerprint, Consumer<Transaction> rowConsumer,
+                              boolean indexed) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            boolean firstSheet = indexed;
+            while (sheets.hasNext()) {
+                try (InputStream sheetStream = sheets.next()) {
+                    // Row writes only touch the first sheet, so only its rows are indexed
+                    TransactionRowHandler handler = new TransactionRowHandler(rowConsumer,
+                            firstSheet ? new WorkbookRowIndex.Rows() : null);
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings,
+                            handler, new RawValueFormatter(), false));
+                    parser.parse(new InputSource(sheetStream));
+                    if (firstSheet && handler.rows() != null) {
+                        workbookRowIndex.publish(handler.rows(), path, fingerprint.getSize(), fingerprint.getLastModified());
+                    }
+                }
+                firstSheet = false;
             }
         }
-        return 0; // No data rows found
     }
 
     /**
-     * Check if a row has any meaningful data
+     * With the monthly layout, notes what the rows of the file at path mean for other partitions: rows dated in
+     * another month belong there, and the whole single workbook is spread over all of them when splitting it
      */
-    private boolean hasData(Row row) {
-        // Check if any of the relevant cells have data
-        String description = getCellValueAsString(row.getCell(1));
-        double amount = getCellValueAsDouble(row.getCell(2));
-        
-        return !description.trim().isEmpty() || amount != 0;
+    private Consumer<Transaction> routing(Path path, boolean splitting, List<Transaction> moved,
+                                          Consumer<Transaction> rowConsumer) {
+        if (!workbookPartitions.isPartitioned()) {
+            return rowConsumer;
+        }
+        YearMonth month = workbookPartitions.monthOf(path);
+        return transaction -> {
+            YearMonth rowMonth = workbookPartitions.monthOf(transaction.getDate());
+            if (splitting) {
+                workbookPartitions.markDirty(workbookPartitions.pathFor(rowMonth));
+            } else if (!Objects.equals(rowMonth, month)) {
+                if (transaction.getId() != null) {
+                    moved.add(transaction);
+                } else {
+                    workbookPartitions.markDirty(workbookPartitions.pathFor(rowMonth));
+                }
+            }
+            rowConsumer.accept(transaction);
+        };
     }
 
-    private void insertIdColumn(Sheet sheet) {
-        // Compute max column index across all rows
-        int maxColumn = 0;
-        int lastRowNum = findLastRowWithData(sheet);
-        for (int r = 0; r <= lastRowNum; r++) {
-            Row row = sheet.getRow(r);
-            if (row != null) {
-                int lastCellNum = row.getLastCellNum();
-                if (lastCellNum > maxColumn) {
-                    maxColumn = lastCellNum;
-                }
+    /**
+     * Rows whose date was changed to another month in the sheet go to that month's partition the way an API
+     * update would, which also takes them out of the partition they were read from. Rows the DB did not know
+     * were inserted under a new ID and are written by the next export instead.
+     */
+    private void moveRows(ReconciliationRun run, List<Transaction> moved) {
+        List<Transaction> matched = new ArrayList<>();
+        for (Transaction transaction : moved) {
+            if (run.isMatched(transaction.getId())) {
+                matched.add(transaction);
+            } else {
+                workbookPartitions.markDirty(workbookPartitions.pathFor(transaction.getDate()));
+            }
+        }
+        if (matched.isEmpty()) {
+            return;
+        }
+        if (excelWriteBehindService.isEnabled()) {
+            excelWriteBehindService.recordUpserts(matched);
+        } else {
+            excelExportService.applyChangesToExcel(matched, List.of());
+        }
+    }
+
+    private Timer importTimer(String result) {
+        return Timer.builder("excel.import")
+                .description("Time to reconcile the workbook into the DB, including the write-behind flush before it")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void countRows(ReconciliationSummary summary) {
+        meterRegistry.counter("excel.import.rows", "outcome", "inserted").increment(summary.getInserted());
+        meterRegistry.counter("excel.import.rows", "outcome", "updated").increment(summary.getUpdated());
+        meterRegistry.counter("excel.import.rows", "outcome", "deleted").increment(summary.getDeleted());
+        meterRegistry.counter("excel.import.rows", "outcome", "unchanged").increment(summary.getRowsUnchanged());
+    }
+
+    /**
+     * Receives cells as the SAX parser reaches them and emits one transaction per data row.
+     * Row 0 of every sheet is the header, which also tells whether the hidden ID column is present.
+     * Optionally records where each row sits, for the {@link WorkbookRowIndex}.
+     */
+    private static class TransactionRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Consumer<Transaction> rowConsumer;
+        private final WorkbookRowIndex.Rows rows;
+
+        private int columnOffset;
+        private int rowNum;
+        private String idValue;
+        private String descriptionValue;
+        private String amountValue;
+        private String dateValue;
+
+        TransactionRowHandler(Consumer<Transaction> rowConsumer, WorkbookRowIndex.Rows rows) {
+            this.rowConsumer = rowConsumer;
+            this.rows = rows;
+        }
+
+        /**
+         * Rows of this sheet by ID, or null if it was not indexed or has no ID column to index by
+         */
+        WorkbookRowIndex.Rows rows() {
+            return columnOffset == 0 ? rows : null;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            this.rowNum = rowNum;
+            idValue = null;
+            descriptionValue = null;
+            amountValue = null;
+            dateValue = null;
+            if (rowNum == 0) {
+                // Without an ID header the sheet starts at the description column
+                columnOffset = -1;
             }
         }
 
-        // Shift all existing columns right by 1 if any exist
-        if (maxColumn > 0) {
-            sheet.shiftColumns(0, maxColumn - 1, 1);
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            if (rowNum == 0) {
+                if (column == 0 && "ID".equals(formattedValue)) {
+                    columnOffset = 0;
+                }
+                return;
+            }
+
+            switch (column - columnOffset) {
+                case 0 -> idValue = formattedValue;
+                case 1 -> descriptionValue = formattedValue;
+                case 2 -> amountValue = formattedValue;
+                case 3 -> dateValue = formattedValue;
+                default -> { }
+            }
         }
 
-        // Insert ID cells in new column 0 (create rows if needed)
-        for (int r = 0; r <= lastRowNum; r++) {
-            Row row = sheet.getRow(r);
-            if (row == null) {
-                row = sheet.createRow(r);
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum == 0) {
+                return;
             }
-            if (r == 0) {
-                row.createCell(0, CellType.STRING).setCellValue("ID"); // Header string
-            } else {
-                row.createCell(0, CellType.NUMERIC); // Data numeric, value later
+
+            String description = descriptionValue != null ? descriptionValue : "";
+            double amount = parseAmount(amountValue, rowNum);
+
+            // Skip rows with empty description and zero amount (blank rows)
+            if (description.trim().isEmpty() && amount == 0) {
+                return;
+            }
+
+            Long id = columnOffset == 0 ? parseId(idValue) : null; // Set if present
+            if (rows != null) {
+                if (id != null) {
+                    rows.occupied(id, rowNum);
+                } else {
+                    rows.occupied(rowNum);
+                }
             }
+            rowConsumer.accept(Transaction.builder()
+                    .id(id)
+                    .description(description)
+                    .amount(amount)
+                    .date(parseDate(dateValue))
+                    .build());
         }
     }
 
-    private String getCellValueAsString(Cell cell) {
-        return cell != null ? cell.getStringCellValue() : "";
+    /**
+     * Keeps numbers unformatted so IDs and amounts survive exactly, and renders date-formatted cells as yyyy-MM-dd
+     */
+    private static class RawValueFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value).toLocalDate().format(DATE_FORMATTER);
+            }
+            return String.valueOf(value);
+        }
     }
 
-    private double getCellValueAsDouble(Cell cell) {
-        return cell != null ? cell.getNumericCellValue() : 0;
+    private static Long parseId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            long id = (long) Double.parseDouble(value.trim());
+            return (id > 0) ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
-
-    private Long getCellValueAsLong(Cell cell) {
-        double value = getCellValueAsDouble(cell);
-        long id = (long) value;
-        return (id > 0) ? id : null;
+    private static double parseAmount(String value, int rowNum) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid amount '" + value + "' in row " + (rowNum + 1));
+        }
     }
 
-    private LocalDate getCellValueAsLocalDate(Cell cell) {
-        if (cell != null) {
-            if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
-                return cell.getDateCellValue().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-            } else if (cell.getCellType() == CellType.STRING) {
-                String dateStr = cell.getStringCellValue();
-                return LocalDate.parse(dateStr, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+    private static LocalDate parseDate(String value) {
+        if (value == null || value.isBlank()) {
+            return LocalDate.now();
+        }
+        try {
+            return LocalDate.parse(value.trim(), DATE_FORMATTER);
+        } catch (DateTimeParseException e) {
+            try {
+                // Plain numeric cell without a date format
+                Double.parseDouble(value.trim());
+                return LocalDate.now();
+            } catch (NumberFormatException ignored) {
+                throw e;
             }
         }
-
-        return LocalDate.now();
     }
 }
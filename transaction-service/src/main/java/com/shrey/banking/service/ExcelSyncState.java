@@ -0,0 +1,165 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ExcelFileFingerprint;
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.util.LongLongHashMap;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the service knows to be in sync between the DB and the workbook: the fingerprint of each workbook file as
+ * of its last import or service write, and a content hash per transaction ID as stored in the DB.
+ */
+@Component
+public class ExcelSyncState {
+    private static final int RUN_HISTORY_SIZE = 50;
+
+    // By absolute path, one entry per workbook file
+    private final Map<Path, ExcelFileFingerprint> syncedFingerprints = new HashMap<>();
+
+    // Guarded by rowHashes
+    private final LongLongHashMap rowHashes = new LongLongHashMap();
+    private boolean rowHashesSeeded;
+
+    private final Deque<ReconciliationSummary> recentRuns = new ArrayDeque<>();
+
+    /**
+     * True if the file still matches the last synced fingerprint. Size and mtime are checked first,
+     * the digest is only computed when they differ.
+     */
+    public synchronized boolean isUnchangedSinceSync(Path path) throws IOException {
+        ExcelFileFingerprint syncedFingerprint = syncedFingerprints.get(key(path));
+        if (syncedFingerprint == null || !Files.exists(path)) {
+            return false;
+        }
+
+        long size = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        if (size != syncedFingerprint.getSize()) {
+            return false;
+        }
+        if (lastModified == syncedFingerprint.getLastModified()) {
+            return true;
+        }
+
+        // Touched but possibly not changed
+        String sha256 = digest(path);
+        if (sha256.equals(syncedFingerprint.getSha256())) {
+            syncedFingerprint.setLastModified(lastModified);
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void markInSync(Path path) throws IOException {
+        syncedFingerprints.put(key(path), fingerprint(path));
+    }
+
+    public synchronized void markInSync(Path path, ExcelFileFingerprint fingerprint) {
+        syncedFingerprints.put(key(path), fingerprint);
+    }
+
+    public synchronized void markOutOfSync() {
+        syncedFingerprints.clear();
+    }
+
+    public synchronized ExcelFileFingerprint getSyncedFingerprint(Path path) {
+        return syncedFingerprints.get(key(path));
+    }
+
+    public ExcelFileFingerprint fingerprint(Path path) throws IOException {
+        return ExcelFileFingerprint.builder()
+                .size(Files.size(path))
+                .lastModified(Files.getLastModifiedTime(path).toMillis())
+                .sha256(digest(path))
+                .build();
+    }
+
+    public boolean isRowUnchanged(long id, long hash) {
+        synchronized (rowHashes) {
+            return rowHashes.containsKey(id) && rowHashes.get(id, 0) == hash;
+        }
+    }
+
+    public void putRowHash(long id, long hash) {
+        synchronized (rowHashes) {
+            rowHashes.put(id, hash);
+        }
+    }
+
+    public void removeRowHash(long id) {
+        synchronized (rowHashes) {
+            rowHashes.remove(id);
+        }
+    }
+
+    public boolean isRowHashesSeeded() {
+        synchronized (rowHashes) {
+            return rowHashesSeeded;
+        }
+    }
+
+    public void markRowHashesSeeded() {
+        synchronized (rowHashes) {
+            rowHashesSeeded = true;
+        }
+    }
+
+    /**
+     * Forget all row hashes, e.g. after a rolled back import left them ahead of the DB
+     */
+    public void resetRowHashes() {
+        synchronized (rowHashes) {
+            rowHashes.clear();
+            rowHashesSeeded = false;
+        }
+    }
+
+    public void recordRun(ReconciliationSummary summary) {
+        synchronized (recentRuns) {
+            recentRuns.addFirst(summary);
+            if (recentRuns.size() > RUN_HISTORY_SIZE) {
+                recentRuns.removeLast();
+            }
+        }
+    }
+
+    public List<ReconciliationSummary> getRecentRuns() {
+        synchronized (recentRuns) {
+            return new ArrayList<>(recentRuns);
+        }
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private String digest(Path path) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream is = Files.newInputStream(path)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ExcelJournalStatus;
+import com.shrey.banking.entity.Transaction;
+
+import java.util.Collection;
+
+public interface ExcelWriteBehindService {
+    boolean isEnabled();
+    void recordUpsert(Transaction transaction);
+    void recordUpserts(Collection<Transaction> transactions);
+    void recordDelete(Long id);
+    int flush();
+    ExcelJournalStatus getStatus();
+}
@@ -0,0 +1,451 @@
+package com.shrey.banking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrey.banking.dto.ExcelJournalEntry;
+import com.shrey.banking.dto.ExcelJournalStatus;
+import com.shrey.banking.entity.Transaction;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind journal for the Excel ledger. Mutations are appended to an on-disk journal and kept
+ * in memory (coalesced per transaction ID) until a flush merges them into the workbook in one pass.
+ * Every append and every rewrite is forced to disk before it counts as journaled. When an append fails the
+ * journal is behind memory, which shows in the status and health, and the next write rewrites it whole.
+ */
+@Service
+public class ExcelWriteBehindServiceImpl implements ExcelWriteBehindService {
+
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ExcelFileCoordinator excelFileCoordinator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("fileOperationExecutor")
+    private Executor fileOperationExecutor;
+
+    @Value("${app.excel.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.excel.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.excel.write-behind.journal.file.path}")
+    private String journalFilePath;
+
+    // Latest pending entry per transaction ID, guarded by "this"
+    private final Map<Long, ExcelJournalEntry> pending = new LinkedHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private FileChannel journalChannel;
+    private long sequence;
+    // Pending entries exist that never reached the journal file; guarded by "this"
+    private boolean journalBehind;
+
+    private volatile long lastFlushedSequence;
+    private volatile long lastFlushAt;
+    private volatile int lastFlushSize;
+    private volatile long lastFlushDurationMs;
+    private volatile long totalFlushedEntries;
+    private volatile long totalAppendFailures;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void replayJournal() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Path path = Paths.get(journalFilePath);
+        boolean torn = false;
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    ExcelJournalEntry entry;
+                    try {
+                        entry = objectMapper.readValue(line, ExcelJournalEntry.class);
+                    } catch (JsonProcessingException e) {
+                        torn = true; // Torn tail write from a crash, nothing after it was acknowledged
+                        continue;
+                    }
+                    pending.remove(entry.getTransactionId());
+                    pending.put(entry.getTransactionId(), entry);
+                    sequence = Math.max(sequence, entry.getSequence());
+                }
+            }
+        }
+        lastFlushedSequence = pending.values().stream()
+                .mapToLong(entry -> entry.getSequence() - 1)
+                .min()
+                .orElse(sequence);
+        if (torn) {
+            // Appending after an unterminated line would glue the next entry onto it, so until the rewrite
+            // succeeds every write retries it
+            journalBehind = !compactJournal();
+        } else {
+            openJournalWriter();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            flush();
+        } catch (RuntimeException ignored) {
+            // Pending entries stay in the journal and are replayed on the next start
+        }
+        synchronized (this) {
+            closeJournalWriter();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void recordUpsert(Transaction transaction) {
+        record(List.of(upsertEntry(transaction)));
+    }
+
+    @Override
+    public void recordUpserts(Collection<Transaction> transactions) {
+        List<ExcelJournalEntry> entries = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            entries.add(upsertEntry(transaction));
+        }
+        record(entries);
+    }
+
+    @Override
+    public void recordDelete(Long id) {
+        record(List.of(ExcelJournalEntry.builder()
+                .operation(ExcelJournalEntry.Operation.DELETE)
+                .transactionId(id)
+                .build()));
+    }
+
+    private static ExcelJournalEntry upsertEntry(Transaction transaction) {
+        return ExcelJournalEntry.builder()
+                .operation(ExcelJournalEntry.Operation.UPSERT)
+                .transactionId(transaction.getId())
+                .description(transaction.getDescription())
+                .amount(transaction.getAmount())
+                .date(transaction.getDate())
+                .build();
+    }
+
+    /**
+     * Journal the entries once the surrounding DB transaction commits, or right away if there is none,
+     * so rolled back changes never reach the workbook.
+     */
+    private void record(List<ExcelJournalEntry> entries) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(entries);
+                }
+            });
+        } else {
+            append(entries);
+        }
+    }
+
+    private void append(List<ExcelJournalEntry> entries) {
+        int pendingCount;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (ExcelJournalEntry entry : entries) {
+                entry.setSequence(++sequence);
+                entry.setRecordedAt(now);
+
+                pending.remove(entry.getTransactionId());
+                pending.put(entry.getTransactionId(), entry);
+            }
+            // One journal write for the whole group
+            writeToJournal(entries);
+            pendingCount = pending.size();
+        }
+
+        if (pendingCount >= batchSize) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            fileOperationExecutor.execute(() -> {
+                try {
+                    flush();
+                } catch (RuntimeException ignored) {
+                    // Recorded in lastError, the interval flush retries
+                } finally {
+                    flushScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flushScheduled.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.excel.write-behind.flush-interval-ms:2000}")
+    public void flushOnInterval() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            flush();
+        } catch (RuntimeException ignored) {
+            // Recorded in lastError, retried on the next interval
+        }
+    }
+
+    @Override
+    public int flush() {
+        if (!enabled) {
+            return 0;
+        }
+
+        // The file lock also serializes flushes, so entries are applied to the workbook in order
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.lockForWrite("flush")) {
+            List<ExcelJournalEntry> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+
+            long start = System.currentTimeMillis();
+            List<Transaction> upserts = new ArrayList<>();
+            List<Long> deletedIds = new ArrayList<>();
+            long maxSequence = 0;
+            for (ExcelJournalEntry entry : batch) {
+                if (entry.getOperation() == ExcelJournalEntry.Operation.DELETE) {
+                    deletedIds.add(entry.getTransactionId());
+                } else {
+                    upserts.add(entry.toTransaction());
+                }
+                maxSequence = Math.max(maxSequence, entry.getSequence());
+            }
+
+            try {
+                excelExportService.applyChangesToExcel(upserts, deletedIds);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    // Anything journaled during the failed flush is newer and wins
+                    for (ExcelJournalEntry entry : batch) {
+                        pending.putIfAbsent(entry.getTransactionId(), entry);
+                    }
+                }
+                lastError = e.getMessage();
+                throw e;
+            }
+
+            synchronized (this) {
+                compactJournal();
+            }
+
+            lastFlushedSequence = maxSequence;
+            lastFlushAt = System.currentTimeMillis();
+            lastFlushSize = batch.size();
+            lastFlushDurationMs = lastFlushAt - start;
+            Timer.builder("excel.write-behind.flush")
+                    .description("Time to merge one batch of journaled changes into the workbook")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(lastFlushDurationMs, TimeUnit.MILLISECONDS);
+            totalFlushedEntries += batch.size();
+            lastError = null;
+            return batch.size();
+        }
+    }
+
+    @Override
+    public ExcelJournalStatus getStatus() {
+        int pendingCount;
+        long oldestRecordedAt = Long.MAX_VALUE;
+        long lastRecordedSequence;
+        boolean behind;
+        synchronized (this) {
+            pendingCount = pending.size();
+            for (ExcelJournalEntry entry : pending.values()) {
+                oldestRecordedAt = Math.min(oldestRecordedAt, entry.getRecordedAt());
+            }
+            lastRecordedSequence = sequence;
+            behind = journalBehind;
+        }
+
+        return ExcelJournalStatus.builder()
+                .enabled(enabled)
+                .pendingEntries(pendingCount)
+                .oldestPendingAgeMs(pendingCount == 0 ? 0 : System.currentTimeMillis() - oldestRecordedAt)
+                .lastRecordedSequence(lastRecordedSequence)
+                .lastFlushedSequence(lastFlushedSequence)
+                .lastFlushAt(lastFlushAt)
+                .lastFlushSize(lastFlushSize)
+                .lastFlushDurationMs(lastFlushDurationMs)
+                .totalFlushedEntries(totalFlushedEntries)
+                .journalDurable(!behind)
+                .totalAppendFailures(totalAppendFailures)
+                .lastError(lastError)
+                .build();
+    }
+
+    private void writeToJournal(List<ExcelJournalEntry> entries) {
+        if (journalBehind) {
+            // Entries missing from the file; rewriting it from memory journals them along with these
+            if (!compactJournal()) {
+                totalAppendFailures++;
+            }
+            return;
+        }
+        try {
+            if (journalChannel == null) {
+                openJournalWriter();
+            }
+            StringBuilder lines = new StringBuilder();
+            for (ExcelJournalEntry entry : entries) {
+                lines.append(objectMapper.writeValueAsString(entry)).append(System.lineSeparator());
+            }
+            writeFully(journalChannel, lines);
+            journalChannel.force(false);
+        } catch (IOException e) {
+            // Still pending in memory and flushed to the workbook as usual, but lost if the service dies first
+            journalBehind = true;
+            totalAppendFailures++;
+            lastError = "Failed to append to journal: " + e.getMessage();
+            // The file may end in a partial line; the next write replaces it rather than appending to it
+            closeJournalWriter();
+        }
+    }
+
+    /**
+     * Rewrite the journal so it only holds entries that are still pending.
+     *
+     * @return whether the journal on disk now holds every pending entry
+     */
+    private boolean compactJournal() {
+        Path path = Paths.get(journalFilePath);
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        closeJournalWriter();
+        boolean written = false;
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (ExcelJournalEntry entry : pending.values()) {
+                lines.append(objectMapper.writeValueAsString(entry)).append(System.lineSeparator());
+            }
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(channel, lines);
+                // On disk before the rename can make it the journal
+                channel.force(true);
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(path.toAbsolutePath().getParent());
+            journalBehind = false;
+            written = true;
+        } catch (IOException e) {
+            // The old journal still holds what it held; replaying flushed entries is harmless, the latest entry per
+            // ID still wins
+            lastError = "Failed to compact journal: " + e.getMessage();
+        }
+        try {
+            openJournalWriter();
+        } catch (IOException e) {
+            lastError = "Failed to reopen journal: " + e.getMessage();
+        }
+        return written;
+    }
+
+    private static void writeFully(FileChannel channel, CharSequence lines) throws IOException {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Makes the rename itself durable. Not every platform can open a directory, and there the rename is as
+     * durable as the file system makes it.
+     */
+    private static void forceDirectory(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void openJournalWriter() throws IOException {
+        Path path = Paths.get(journalFilePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        journalChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void closeJournalWriter() {
+        if (journalChannel != null) {
+            try {
+                journalChannel.close();
+            } catch (IOException ignored) {
+            }
+            journalChannel = null;
+        }
+    }
+}
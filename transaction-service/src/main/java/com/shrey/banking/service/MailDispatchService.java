@@ -0,0 +1,13 @@
+package com.shrey.banking.service;
+
+public interface MailDispatchService {
+    /**
+     * Deliver due outbox entries on the email executor, unless a dispatch is already running
+     */
+    public void requestDispatch();
+
+    /**
+     * Deliver due outbox entries on the calling thread, within the rate limit. Returns how many were sent.
+     */
+    public int dispatchDue();
+}
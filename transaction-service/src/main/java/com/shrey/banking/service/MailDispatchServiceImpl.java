@@ -0,0 +1,441 @@
+package com.shrey.banking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrey.banking.dto.MailAttachmentMode;
+import com.shrey.banking.dto.MailDigestLine;
+import com.shrey.banking.dto.MailEvent;
+import com.shrey.banking.entity.MailOutboxEntry;
+import com.shrey.banking.entity.MailOutboxStatus;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.MailOutboxRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers the mail outbox. Due entries are rendered and sent as one batch over a single SMTP connection,
+ * capped by a per-minute rate limit. In digest mode up to max-events entries are rolled into one mail, sent
+ * once that many are waiting or the oldest has waited max-wait-ms. Failed sends are retried with backoff.
+ */
+@Service
+public class MailDispatchServiceImpl implements MailDispatchService {
+    private static final long RATE_WINDOW_MS = 60_000;
+    private static final String SNAPSHOT_HEADER = "X-Transactions-Snapshot";
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private TemplateRenderer templateRenderer;
+
+    @Autowired
+    private WorkbookSnapshotStore workbookSnapshotStore;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("emailExecutor")
+    private Executor emailExecutor;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.mail.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.mail.outbox.retry-backoff-ms:30000}")
+    private long retryBackoffMs;
+
+    @Value("${app.mail.outbox.retention-ms:86400000}")
+    private long retentionMs;
+
+    // 0 means no limit
+    @Value("${app.mail.rate-limit.per-minute:60}")
+    private int ratePerMinute;
+
+    @Value("${app.mail.digest.enabled:false}")
+    private boolean digestEnabled;
+
+    @Value("${app.mail.digest.max-events:100}")
+    private int digestMaxEvents;
+
+    @Value("${app.mail.digest.max-wait-ms:60000}")
+    private long digestMaxWaitMs;
+
+    @Value("${app.mail.attachment:workbook}")
+    private MailAttachmentMode attachmentMode;
+
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean(false);
+    // One dispatch at a time; also guards the rate window
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+
+    private long windowStart;
+    private int sentInWindow;
+
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("mail.outbox.pending", mailOutboxRepository, repository -> repository.countByStatus(MailOutboxStatus.PENDING))
+                .description("Outbox entries waiting to be sent")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void requestDispatch() {
+        if (!dispatchScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            emailExecutor.execute(() -> {
+                // Cleared first, so entries queued while this run is busy get a run of their own
+                dispatchScheduled.set(false);
+                try {
+                    dispatchDue();
+                } catch (RuntimeException ignored) {
+                    // Entries stay pending, the next poll retries
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dispatchScheduled.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:1000}")
+    public void dispatchOnInterval() {
+        requestDispatch();
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.purge-interval-ms:3600000}")
+    public void purgeSent() {
+        mailOutboxRepository.deleteSentBefore(Instant.now().minusMillis(retentionMs));
+    }
+
+    @Override
+    public int dispatchDue() {
+        dispatchLock.lock();
+        try {
+            int sent = 0;
+            while (true) {
+                int allowance = remainingInWindow();
+                if (allowance == 0) {
+                    meterRegistry.counter("mail.outbox.rate-limited").increment();
+                    return sent;
+                }
+
+                Instant now = Instant.now();
+                int pageSize = digestEnabled ? digestMaxEvents : Math.min(batchSize, allowance);
+                List<MailOutboxEntry> entries = mailOutboxRepository.findDue(now, PageRequest.of(0, pageSize));
+                if (entries.isEmpty()) {
+                    return sent;
+                }
+                if (digestEnabled && entries.size() < digestMaxEvents
+                        && entries.get(0).getCreatedAt().isAfter(now.minusMillis(digestMaxWaitMs))) {
+                    // Wait for a fuller digest
+                    return sent;
+                }
+
+                sent += deliver(entries);
+                if (entries.size() < pageSize) {
+                    return sent;
+                }
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Render the entries, one mail each or one digest, and send them as one batch. Returns the entries sent.
+     */
+    private int deliver(List<MailOutboxEntry> entries) {
+        List<MimeMessage> messages = new ArrayList<>();
+        List<List<MailOutboxEntry>> messageEntries = new ArrayList<>();
+        try {
+            WorkbookSnapshotStore.Snapshot snapshot = attachmentMode == MailAttachmentMode.WORKBOOK
+                    ? workbookSnapshotStore.latest() : null;
+            TemplateRenderer.Batch renderer = templateRenderer.batch();
+            if (digestEnabled) {
+                List<MailOutboxEntry> included = new ArrayList<>();
+                List<MailEvent> events = new ArrayList<>();
+                List<MailDigestLine> lines = new ArrayList<>();
+                for (MailOutboxEntry entry : entries) {
+                    MailEvent event = readEvent(entry);
+                    if (event != null) {
+                        included.add(entry);
+                        events.add(event);
+                        lines.add(digestLine(entry, event));
+                    }
+                }
+                if (!included.isEmpty()) {
+                    messages.add(renderDigest(renderer, lines, snapshot, delta(included, events)));
+                    messageEntries.add(included);
+                }
+            } else {
+                for (MailOutboxEntry entry : entries) {
+                    MailEvent event = readEvent(entry);
+                    if (event != null) {
+                        messages.add(render(renderer, entry, event, snapshot));
+                        messageEntries.add(List.of(entry));
+                    }
+                }
+            }
+        } catch (MessagingException | IOException e) {
+            retryAll(entries, e);
+            mailOutboxRepository.saveAll(entries);
+            return 0;
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        MailException sendError = null;
+        if (!messages.isEmpty()) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                // JavaMailSender sends the whole array over one connection
+                mailSender.send(messages.toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                failures = e.getFailedMessages();
+                sendError = e;
+            } catch (MailException e) {
+                sendError = e;
+            }
+            sample.stop(Timer.builder("mail.send.batch")
+                    .description("Time to send one batch of mails over a single SMTP connection")
+                    .register(meterRegistry));
+            recordSent(messages.size());
+        }
+
+        int sent = 0;
+        Instant now = Instant.now();
+        for (int i = 0; i < messages.size(); i++) {
+            Exception failure = failures.get(messages.get(i));
+            if (failure == null && sendError != null && failures.isEmpty()) {
+                // Nothing went out, e.g. the connection or login failed
+                failure = sendError;
+            }
+            if (failure != null) {
+                retryAll(messageEntries.get(i), failure);
+                continue;
+            }
+            for (MailOutboxEntry entry : messageEntries.get(i)) {
+                entry.setStatus(MailOutboxStatus.SENT);
+                entry.setSentAt(now);
+                entry.setLastError(null);
+                meterRegistry.counter("mail.outbox.delivered", "type", entry.getType().name()).increment();
+                sent++;
+            }
+            meterRegistry.counter("mail.messages.sent", "mode", digestEnabled ? "digest" : "single").increment();
+        }
+        mailOutboxRepository.saveAll(entries);
+        return sent;
+    }
+
+    private MailEvent readEvent(MailOutboxEntry entry) {
+        try {
+            return objectMapper.readValue(entry.getPayload(), MailEvent.class);
+        } catch (JsonProcessingException e) {
+            // Retrying cannot fix the payload
+            entry.setStatus(MailOutboxStatus.FAILED);
+            entry.setLastError("Unreadable payload: " + e.getOriginalMessage());
+            meterRegistry.counter("mail.outbox.failed", "type", entry.getType().name()).increment();
+            return null;
+        }
+    }
+
+    private void retryAll(List<MailOutboxEntry> entries, Exception error) {
+        Instant now = Instant.now();
+        for (MailOutboxEntry entry : entries) {
+            if (entry.getStatus() != MailOutboxStatus.PENDING) {
+                continue;
+            }
+            entry.setAttempts(entry.getAttempts() + 1);
+            entry.setLastError(error.getMessage());
+            if (entry.getAttempts() >= maxAttempts) {
+                entry.setStatus(MailOutboxStatus.FAILED);
+                meterRegistry.counter("mail.outbox.failed", "type", entry.getType().name()).increment();
+            } else {
+                entry.setNextAttemptAt(now.plusMillis(retryBackoffMs << Math.min(entry.getAttempts() - 1, 10)));
+                meterRegistry.counter("mail.outbox.retried", "type", entry.getType().name()).increment();
+            }
+        }
+    }
+
+    private int remainingInWindow() {
+        if (ratePerMinute <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= RATE_WINDOW_MS) {
+            windowStart = now;
+            sentInWindow = 0;
+        }
+        return Math.max(0, ratePerMinute - sentInWindow);
+    }
+
+    private void recordSent(int messages) {
+        sentInWindow += messages;
+    }
+
+    private MimeMessage render(TemplateRenderer.Batch renderer, MailOutboxEntry entry, MailEvent event,
+                               WorkbookSnapshotStore.Snapshot snapshot) throws MessagingException {
+        String userName = fromEmail.split("@")[0];
+        Transaction transaction = event.getTransaction();
+        byte[] delta = delta(List.of(entry), List.of(event));
+        return switch (entry.getType()) {
+            case TRANSACTION_CREATED -> createMessage("New Transaction Created",
+                    renderer.render("transaction-created", context -> setTransactionVariables(context, userName, transaction)),
+                    snapshot, delta);
+            case TRANSACTION_UPDATED -> createMessage("Transaction Updated", renderer.render("transaction-updated", context -> {
+                Transaction previous = event.getPrevious();
+                context.setVariable("userName", userName);
+                context.setVariable("oldDescription", previous.getDescription());
+                context.setVariable("oldAmount", previous.getAmount());
+                context.setVariable("oldDate", previous.getDate());
+                context.setVariable("newDescription", transaction.getDescription());
+                context.setVariable("newAmount", transaction.getAmount());
+                context.setVariable("newDate", transaction.getDate());
+            }), snapshot, delta);
+            case TRANSACTION_DELETED -> createMessage("Transaction Deleted",
+                    renderer.render("transaction-deleted", context -> setTransactionVariables(context, userName, transaction)),
+                    snapshot, delta);
+            case TRANSACTIONS_CREATED_SUMMARY -> createMessage(event.getCount() + " Transactions Created",
+                    renderer.render("transactions-batch-created", context -> {
+                        context.setVariable("userName", userName);
+                        context.setVariable("count", event.getCount());
+                        context.setVariable("totalAmount", event.getTotalAmount());
+                        context.setVariable("transactions", event.getTransactions());
+                    }), snapshot, delta);
+        };
+    }
+
+    private MimeMessage renderDigest(TemplateRenderer.Batch renderer, List<MailDigestLine> lines,
+                                     WorkbookSnapshotStore.Snapshot snapshot, byte[] delta) throws MessagingException {
+        String htmlContent = renderer.render("transactions-digest", context -> {
+            context.setVariable("userName", fromEmail.split("@")[0]);
+            context.setVariable("lines", lines);
+        });
+        return createMessage(lines.size() + " Transaction Changes", htmlContent, snapshot, delta);
+    }
+
+    private MimeMessage createMessage(String subject, String htmlContent, WorkbookSnapshotStore.Snapshot snapshot,
+                                      byte[] delta) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true); // true for attachments
+
+        helper.setFrom(fromEmail);
+        helper.setTo(fromEmail); // Send to self
+        helper.setSubject(subject);
+        helper.setText(htmlContent, true); // true for HTML
+
+        // Pre-encoded copy of the last published workbook, shared by every mail that attaches it
+        if (snapshot != null) {
+            helper.getRootMimeMultipart().addBodyPart(snapshot.toBodyPart());
+            message.setHeader(SNAPSHOT_HEADER, snapshot.id());
+        }
+        if (delta != null) {
+            helper.addAttachment("transactions-delta.csv", new ByteArrayResource(delta), "text/csv");
+        }
+        return message;
+    }
+
+    /**
+     * CSV of only the rows the mail is about, or null unless delta attachments are on. Batch summaries
+     * carry the rows listed in their mail, not the whole batch.
+     */
+    private byte[] delta(List<MailOutboxEntry> entries, List<MailEvent> events) {
+        if (attachmentMode != MailAttachmentMode.DELTA) {
+            return null;
+        }
+        StringBuilder csv = new StringBuilder("Action,ID,Description,Amount,Date\r\n");
+        for (int i = 0; i < entries.size(); i++) {
+            MailEvent event = events.get(i);
+            switch (entries.get(i).getType()) {
+                case TRANSACTION_CREATED -> appendRow(csv, "Created", event.getTransaction());
+                case TRANSACTION_UPDATED -> {
+                    appendRow(csv, "Before update", event.getPrevious());
+                    appendRow(csv, "Updated", event.getTransaction());
+                }
+                case TRANSACTION_DELETED -> appendRow(csv, "Deleted", event.getTransaction());
+                case TRANSACTIONS_CREATED_SUMMARY -> event.getTransactions().forEach(row -> appendRow(csv, "Created", row));
+            }
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendRow(StringBuilder csv, String action, Transaction transaction) {
+        String description = transaction.getDescription() == null ? "" : transaction.getDescription();
+        csv.append(action).append(',')
+                .append(transaction.getId() == null ? "" : transaction.getId()).append(',')
+                .append('"').append(description.replace("\"", "\"\"")).append("\",")
+                .append(transaction.getAmount()).append(',')
+                .append(transaction.getDate() == null ? "" : transaction.getDate())
+                .append("\r\n");
+    }
+
+    private static void setTransactionVariables(Context context, String userName, Transaction transaction) {
+        context.setVariable("userName", userName);
+        context.setVariable("description", transaction.getDescription());
+        context.setVariable("amount", transaction.getAmount());
+        context.setVariable("date", transaction.getDate());
+    }
+
+    private static MailDigestLine digestLine(MailOutboxEntry entry, MailEvent event) {
+        Transaction transaction = event.getTransaction();
+        return switch (entry.getType()) {
+            case TRANSACTION_CREATED -> line("Created", transaction, null);
+            case TRANSACTION_UPDATED -> line("Updated", transaction, "was " + event.getPrevious().getDescription()
+                    + ", " + event.getPrevious().getAmount() + ", " + event.getPrevious().getDate());
+            case TRANSACTION_DELETED -> line("Deleted", transaction, null);
+            case TRANSACTIONS_CREATED_SUMMARY -> MailDigestLine.builder()
+                    .action("Created")
+                    .description(event.getCount() + " transactions in one batch")
+                    .amount(event.getTotalAmount())
+                    .build();
+        };
+    }
+
+    private static MailDigestLine line(String action, Transaction transaction, String details) {
+        return MailDigestLine.builder()
+                .action(action)
+                .description(transaction.getDescription())
+                .amount(transaction.getAmount())
+                .date(transaction.getDate())
+                .details(details)
+                .build();
+    }
+}
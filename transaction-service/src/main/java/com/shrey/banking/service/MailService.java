@@ -2,8 +2,11 @@ package com.shrey.banking.service;
 
 import com.shrey.banking.entity.Transaction;
 
+import java.util.List;
+
 public interface MailService {
     public void sendTransactionCreatedEmail(Transaction transaction);
     public void sendTransactionUpdatedEmail(Transaction oldTransaction, Transaction newTransaction);
     public void sendTransactionDeletedEmail(Transaction transaction);
+    public void sendTransactionsCreatedSummaryEmail(List<Transaction> transactions);
 }
@@ -1,156 +1,99 @@
 package com.shrey.banking.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrey.banking.dto.MailEvent;
+import com.shrey.banking.entity.MailOutboxEntry;
+import com.shrey.banking.entity.MailOutboxStatus;
+import com.shrey.banking.entity.MailType;
 import com.shrey.banking.entity.Transaction;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.shrey.banking.repository.MailOutboxRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.context.Context;
-import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.io.File;
+import java.time.Instant;
+import java.util.List;
 
+/**
+ * Queues notifications in the mail outbox, inside the caller's DB transaction when there is one, so a mail
+ * is recorded exactly when its change commits. {@link MailDispatchService} renders and delivers them.
+ */
 @Service
 public class MailServiceImpl implements MailService {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private MailOutboxRepository mailOutboxRepository;
 
     @Autowired
-    private SpringTemplateEngine templateEngine;
+    private MailDispatchService mailDispatchService;
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    @Autowired
+    private ObjectMapper objectMapper;
 
-    @Value("${app.excel.import.file.path}")
-    private String excelPath;
+    // Rows listed in a batch summary, the rest are only counted
+    private static final int SUMMARY_ROWS = 50;
 
-    @Async("emailExecutor")
+    @Override
+    @Transactional
     public void sendTransactionCreatedEmail(Transaction transaction) {
-        String toEmail = fromEmail; // Send to self
-
-        String userName = fromEmail.split("@")[0];
-
-        MimeMessage message = mailSender.createMimeMessage();
-        try {
-            MimeMessageHelper helper = new MimeMessageHelper(message, true); // true for attachments
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("New Transaction Created");
-
-            Context context = new Context();
-            context.setVariable("userName", userName);
-            context.setVariable("description", transaction.getDescription());
-            context.setVariable("amount", transaction.getAmount());
-            context.setVariable("date", transaction.getDate());
-
-            String htmlContent = templateEngine.process("transaction-created", context);
-
-            helper.setText(htmlContent, true); // true for HTML
-
-            ExcelFileLock.getLock().lock();
-            try {
-                File attachment = new File(excelPath);
-                if (attachment.exists()) {
-                    helper.addAttachment("transactions.xlsx", attachment);
-                }
-            } finally {
-                ExcelFileLock.getLock().unlock();
-            }
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Failed to send email: " + e.getMessage());
-        }
+        enqueue(MailType.TRANSACTION_CREATED, MailEvent.builder()
+                .transaction(transaction)
+                .build());
     }
 
-    @Async("emailExecutor")
+    @Override
+    @Transactional
     public void sendTransactionUpdatedEmail(Transaction oldTransaction, Transaction newTransaction) {
-        String toEmail = fromEmail; // Send to self
-
-        String userName = fromEmail.split("@")[0];
-
-        MimeMessage message = mailSender.createMimeMessage();
-        try {
-            MimeMessageHelper helper = new MimeMessageHelper(message, true); // true for attachments
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Transaction Updated");
-
-            Context context = new Context();
-            context.setVariable("userName", userName);
-            context.setVariable("oldDescription", oldTransaction.getDescription());
-            context.setVariable("oldAmount", oldTransaction.getAmount());
-            context.setVariable("oldDate", oldTransaction.getDate());
-            context.setVariable("newDescription", newTransaction.getDescription());
-            context.setVariable("newAmount", newTransaction.getAmount());
-            context.setVariable("newDate", newTransaction.getDate());
-
-            String htmlContent = templateEngine.process("transaction-updated", context);
-
-            helper.setText(htmlContent, true); // true for HTML
-
-            // Attach Excel file with simple lock coordination
-            ExcelFileLock.getLock().lock();
-            try {
-                File attachment = new File(excelPath);
-                if (attachment.exists()) {
-                    helper.addAttachment("transactions.xlsx", attachment);
-                }
-            } finally {
-                ExcelFileLock.getLock().unlock();
-            }
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Failed to send email: " + e.getMessage());
-        }
+        enqueue(MailType.TRANSACTION_UPDATED, MailEvent.builder()
+                .transaction(newTransaction)
+                .previous(oldTransaction)
+                .build());
     }
 
-    @Async("emailExecutor")
+    @Override
+    @Transactional
     public void sendTransactionDeletedEmail(Transaction transaction) {
-        String toEmail = fromEmail; // Send to self
+        enqueue(MailType.TRANSACTION_DELETED, MailEvent.builder()
+                .transaction(transaction)
+                .build());
+    }
 
-        String userName = fromEmail.split("@")[0];
+    @Override
+    @Transactional
+    public void sendTransactionsCreatedSummaryEmail(List<Transaction> transactions) {
+        enqueue(MailType.TRANSACTIONS_CREATED_SUMMARY, MailEvent.builder()
+                .transactions(List.copyOf(transactions.subList(0, Math.min(SUMMARY_ROWS, transactions.size()))))
+                .count(transactions.size())
+                .totalAmount(transactions.stream().mapToDouble(Transaction::getAmount).sum())
+                .build());
+    }
 
-        MimeMessage message = mailSender.createMimeMessage();
+    private void enqueue(MailType type, MailEvent event) {
+        String payload;
         try {
-            MimeMessageHelper helper = new MimeMessageHelper(message, true); // true for attachments
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Transaction Deleted");
-
-            Context context = new Context();
-            context.setVariable("userName", userName);
-            context.setVariable("description", transaction.getDescription());
-            context.setVariable("amount", transaction.getAmount());
-            context.setVariable("date", transaction.getDate());
-
-            String htmlContent = templateEngine.process("transaction-deleted", context);
-
-            helper.setText(htmlContent, true); // true for HTML
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + type + " mail: " + e.getMessage(), e);
+        }
 
-            // Attach Excel file with simple lock coordination
-            ExcelFileLock.getLock().lock();
-            try {
-                File attachment = new File(excelPath);
-                if (attachment.exists()) {
-                    helper.addAttachment("transactions.xlsx", attachment);
-                }
-            } finally {
-                ExcelFileLock.getLock().unlock();
+        Instant now = Instant.now();
+        mailOutboxRepository.save(MailOutboxEntry.builder()
+                .type(type)
+                .payload(payload)
+                .status(MailOutboxStatus.PENDING)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+
+        // Deliver soon after commit rather than on the next poll
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                mailDispatchService.requestDispatch();
             }
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Failed to send email: " + e.getMessage());
-        }
+        });
     }
-}
\ No newline at end of file
+}
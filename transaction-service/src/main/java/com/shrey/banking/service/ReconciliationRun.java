@@ -0,0 +1,205 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.util.ContentHash;
+import com.shrey.banking.util.LongHashSet;
+import org.springframework.cache.Cache;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * One reconciliation of the transaction table against a full snapshot of rows (e.g. the spreadsheet).
+ * Rows are fed in chunks; IDs known to the DB are updated when their content hash changed, everything else
+ * is inserted, and DB rows that never showed up are deleted on {@link #finish()}. All writes go out as JDBC
+ * batches and must run inside the caller's transaction.
+ * A partial run covers a snapshot of only some rows (e.g. some month partitions): only the DB rows in its scope
+ * are candidates for deletion, and rows with IDs outside the scope are matched against the whole table.
+ */
+public class ReconciliationRun {
+    private static final String INSERT_SQL = "insert into transaction (id, description, amount, date) values (?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "update transaction set description = ?, amount = ?, date = ? where id = ?";
+    private static final String DELETE_SQL = "delete from transaction where id = ?";
+    private static final String EXISTING_IDS_SQL = "select id from transaction where id in (%s)";
+    private static final String NEXT_ID_BLOCK_SQL = "select next value for " + Transaction.ID_SEQUENCE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final LongHashSet existingIds;
+    private final LongHashSet seenIds;
+    private final ExcelSyncState excelSyncState;
+    private final Cache transactionsCache;
+    // Null for a full snapshot; otherwise out-of-scope IDs that finish() must not delete, e.g. rows held elsewhere
+    private final LongPredicate retained;
+    private final long startedAt = System.currentTimeMillis();
+
+    private long rowsExamined;
+    private long rowsUnchanged;
+    private long inserted;
+    private long updated;
+    private boolean finished;
+    private long nextId;
+    private long idBlockEnd = -1;
+
+    ReconciliationRun(JdbcTemplate jdbcTemplate, int batchSize, LongHashSet existingIds, ExcelSyncState excelSyncState,
+                      Cache transactionsCache, LongPredicate retained) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.existingIds = existingIds;
+        this.seenIds = new LongHashSet(existingIds.size());
+        this.excelSyncState = excelSyncState;
+        this.transactionsCache = transactionsCache;
+        this.retained = retained;
+    }
+
+    public void accept(List<Transaction> transactions) {
+        List<Transaction> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<long[]> updatedHashes = new ArrayList<>();
+        LongHashSet outOfScopeIds = retained != null ? findOutOfScope(transactions) : null;
+
+        for (Transaction transaction : transactions) {
+            Long id = transaction.getId();
+            if (id != null && (existingIds.contains(id) || outOfScopeIds != null && outOfScopeIds.contains(id))) {
+                seenIds.add(id);
+                long hash = ContentHash.of(transaction);
+                if (excelSyncState.isRowUnchanged(id, hash)) {
+                    rowsUnchanged++;
+                    continue;
+                }
+                updates.add(new Object[]{transaction.getDescription(), transaction.getAmount(), transaction.getDate(), id});
+                updatedHashes.add(new long[]{id, hash});
+            } else {
+                // No ID, or an ID the DB does not know: treat as new
+                inserts.add(transaction);
+            }
+        }
+        rowsExamined += transactions.size();
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+            updated += updates.size();
+            for (long[] idAndHash : updatedHashes) {
+                excelSyncState.putRowHash(idAndHash[0], idAndHash[1]);
+            }
+        }
+        if (!inserts.isEmpty()) {
+            insert(inserts);
+            inserted += inserts.size();
+        }
+    }
+
+    /**
+     * Delete DB rows that were not part of the snapshot and return what this run changed.
+     */
+    public ReconciliationSummary finish() {
+        if (finished) {
+            throw new IllegalStateException("Reconciliation run already finished");
+        }
+        finished = true;
+
+        List<Object[]> deletes = new ArrayList<>();
+        long[] deleted = {0};
+        existingIds.forEach(id -> {
+            if (!seenIds.contains(id) && (retained == null || !retained.test(id))) {
+                deletes.add(new Object[]{id});
+                excelSyncState.removeRowHash(id);
+                if (deletes.size() >= batchSize) {
+                    jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+                    deleted[0] += deletes.size();
+                    deletes.clear();
+                }
+            }
+        });
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+            deleted[0] += deletes.size();
+        }
+
+        // One clear instead of an eviction per row; applied when the surrounding transaction commits
+        if (transactionsCache != null && updated + deleted[0] > 0) {
+            transactionsCache.clear();
+        }
+
+        return ReconciliationSummary.builder()
+                .startedAt(startedAt)
+                .durationMs(System.currentTimeMillis() - startedAt)
+                .rowsExamined(rowsExamined)
+                .rowsUnchanged(rowsUnchanged)
+                .rowsApplied(inserted + updated + deleted[0])
+                .inserted(inserted)
+                .updated(updated)
+                .deleted(deleted[0])
+                .build();
+    }
+
+    /**
+     * Whether the snapshot had this ID and the DB knew it, i.e. the row was matched rather than inserted
+     */
+    public boolean isMatched(long id) {
+        return seenIds.contains(id);
+    }
+
+    public long inserted() {
+        return inserted;
+    }
+
+    /**
+     * IDs in the chunk that the DB has outside this run's scope
+     */
+    private LongHashSet findOutOfScope(List<Transaction> transactions) {
+        List<Object> candidates = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            Long id = transaction.getId();
+            if (id != null && !existingIds.contains(id)) {
+                candidates.add(id);
+            }
+        }
+        LongHashSet found = new LongHashSet(candidates.size());
+        for (int from = 0; from < candidates.size(); from += batchSize) {
+            List<Object> batch = candidates.subList(from, Math.min(from + batchSize, candidates.size()));
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            jdbcTemplate.queryForList(EXISTING_IDS_SQL.formatted(placeholders), Long.class, batch.toArray())
+                    .forEach(found::add);
+        }
+        return found;
+    }
+
+    /**
+     * Batch insert with IDs assigned up front, so the new rows get their content hash recorded
+     */
+    private void insert(List<Transaction> transactions) {
+        List<Object[]> rows = new ArrayList<>(transactions.size());
+        List<long[]> insertedHashes = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            long id = nextId();
+            rows.add(new Object[]{id, transaction.getDescription(), transaction.getAmount(), transaction.getDate()});
+            insertedHashes.add(new long[]{id, ContentHash.of(transaction)});
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        for (long[] idAndHash : insertedHashes) {
+            excelSyncState.putRowHash(idAndHash[0], idAndHash[1]);
+        }
+    }
+
+    /**
+     * Hands out IDs from the same pooled sequence Hibernate uses: a sequence value v reserves
+     * (v - allocationSize, v], so neither side ever reuses the other's IDs.
+     */
+    private long nextId() {
+        if (nextId > idBlockEnd) {
+            Long blockEnd = jdbcTemplate.queryForObject(NEXT_ID_BLOCK_SQL, Long.class);
+            if (blockEnd == null) {
+                throw new IllegalStateException("Sequence " + Transaction.ID_SEQUENCE + " returned no value");
+            }
+            idBlockEnd = blockEnd;
+            nextId = Math.max(1, blockEnd - Transaction.ID_ALLOCATION_SIZE + 1);
+        }
+        return nextId++;
+    }
+}
@@ -0,0 +1,15 @@
+package com.shrey.banking.service;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.function.LongPredicate;
+
+public interface TransactionReconciliationService {
+    ReconciliationRun startRun();
+
+    /**
+     * Run against a snapshot of only the given months. A null month stands for the transactions without a date.
+     * DB rows of those months missing from the snapshot are deleted unless retained says otherwise.
+     */
+    ReconciliationRun startRun(Collection<YearMonth> months, LongPredicate retained);
+}
@@ -0,0 +1,104 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.config.CacheConfig;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import com.shrey.banking.util.ContentHash;
+import com.shrey.banking.util.LongHashSet;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+@Service
+public class TransactionReconciliationServiceImpl implements TransactionReconciliationService {
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.reconciliation.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ReconciliationRun startRun() {
+        LongHashSet existingIds = new LongHashSet((int) transactionRepository.count());
+        try (Stream<Long> ids = transactionRepository.streamAllIds()) {
+            ids.forEach(existingIds::add);
+        }
+        return startRun(existingIds, null);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ReconciliationRun startRun(Collection<YearMonth> months, LongPredicate retained) {
+        LongHashSet existingIds = new LongHashSet();
+        for (YearMonth month : months) {
+            try (Stream<Long> ids = month != null
+                    ? transactionRepository.streamIdsByDate(month.atDay(1), month.plusMonths(1).atDay(1))
+                    : transactionRepository.streamUndatedIds()) {
+                ids.forEach(existingIds::add);
+            }
+        }
+        return startRun(existingIds, retained);
+    }
+
+    private ReconciliationRun startRun(LongHashSet existingIds, LongPredicate retained) {
+        if (!excelSyncState.isRowHashesSeeded()) {
+            seedRowHashes();
+        }
+
+        // Row hashes are updated as the run writes, so they are only trustworthy if it commits
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    excelSyncState.resetRowHashes();
+                }
+            }
+        });
+
+        return new ReconciliationRun(jdbcTemplate, batchSize, existingIds, excelSyncState,
+                cacheManager.getCache(CacheConfig.TRANSACTIONS_CACHE), retained);
+    }
+
+    /**
+     * Hash every row once so later runs can tell which spreadsheet rows actually changed
+     */
+    private void seedRowHashes() {
+        try (Stream<Transaction> transactions = transactionRepository.streamAllOrderById()) {
+            Iterator<Transaction> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                Transaction transaction = iterator.next();
+                excelSyncState.putRowHash(transaction.getId(), ContentHash.of(transaction));
+                entityManager.detach(transaction);
+            }
+        }
+        excelSyncState.markRowHashesSeeded();
+    }
+}
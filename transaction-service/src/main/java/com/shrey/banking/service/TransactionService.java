@@ -1,13 +1,21 @@
 package com.shrey.banking.service;
 
+import com.shrey.banking.dto.CursorPage;
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.dto.TransactionFilter;
 import com.shrey.banking.entity.Transaction;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface TransactionService {
     Transaction saveTransaction(Transaction transaction);
-    List<Transaction> getAllTransactions();
+    List<Transaction> saveTransactions(List<Transaction> transactions);
+    CursorPage<Transaction> getTransactions(TransactionFilter filter, String cursor, Integer size);
     Transaction getTransactionById(Long id);
+    void streamTransactions(OutputStream out) throws IOException;
     Transaction updateTransaction(Long id, Transaction updated);
     Transaction deleteTransaction(Long id);
-    void upsertTransactions(List<Transaction> transactions);
+    ReconciliationSummary upsertTransactions(List<Transaction> transactions);
 }
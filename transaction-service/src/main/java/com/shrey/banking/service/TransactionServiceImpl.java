@@ -1,105 +1,361 @@
 package com.shrey.banking.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shrey.banking.config.CacheConfig;
+import com.shrey.banking.dto.CursorPage;
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.dto.TransactionFilter;
 import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.exception.InvalidCursorException;
+import com.shrey.banking.exception.InvalidTransactionException;
 import com.shrey.banking.exception.TransactionNotFoundException;
 import com.shrey.banking.repository.TransactionRepository;
+import com.shrey.banking.util.ContentHash;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionServiceImpl implements TransactionService {
+    // Date part of a cursor whose last row has no date, e.g. one updated without a date
+    private static final String NO_DATE = "null";
 
     @Autowired
     private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionReconciliationService transactionReconciliationService;
     
     @Autowired
     private ExcelExportService excelExportService;
 
+    @Autowired
+    private ExcelWriteBehindService excelWriteBehindService;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    @Autowired
+    private ExcelFileCoordinator excelFileCoordinator;
+
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.pagination.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.pagination.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${app.transactions.stream.flush-rows:1000}")
+    private int streamFlushRows;
+
+    @Value("${app.transactions.batch.max-size:5000}")
+    private int maxBatchSize;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int jdbcBatchSize;
+
     @Override
+    @CachePut(cacheNames = CacheConfig.TRANSACTIONS_CACHE, key = "#result.id")
     public Transaction saveTransaction(Transaction transaction) {
         Transaction savedTransaction;
-        ExcelFileLock.getLock().lock();
-        try {
-            if (transaction.getDate() == null) {
-                transaction.setDate(LocalDate.now());
-            }
+        if (transaction.getDate() == null) {
+            transaction.setDate(LocalDate.now());
+        }
 
-            savedTransaction = transactionRepository.save(transaction);
-            
-            excelExportService.saveTransactionToExcel(savedTransaction);
+        // Until the row is journaled or in the sheet, an import would take it for one deleted there
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.holdForMutation("create")) {
+            // A retried create with the same reference gets the original back, with no second row, row update or email
+            if (transaction.getReference() != null) {
+                Optional<Transaction> existing = transactionRepository.findByReference(transaction.getReference());
+                if (existing.isPresent()) {
+                    return existing.get();
+                }
+            }
 
-        } finally {
-            ExcelFileLock.getLock().unlock();
+            try {
+                savedTransaction = transactionRepository.save(transaction);
+                if (excelWriteBehindService.isEnabled()) {
+                    excelWriteBehindService.recordUpsert(savedTransaction);
+                } else {
+                    // Only the workbook write takes the file lock, the DB insert never waits on it
+                    excelExportService.saveTransactionToExcel(savedTransaction);
+                }
+            } catch (DataIntegrityViolationException e) {
+                // Lost the race against a concurrent create with the same reference
+                if (transaction.getReference() == null) {
+                    throw e;
+                }
+                return transactionRepository.findByReference(transaction.getReference()).orElseThrow(() -> e);
+            }
+            excelSyncState.putRowHash(savedTransaction.getId(), ContentHash.of(savedTransaction));
         }
-        
+
         mailService.sendTransactionCreatedEmail(savedTransaction);
         
         return savedTransaction;
     }
 
+    /**
+     * Validates the whole batch up front, then persists it in one DB transaction. Inserts go out as JDBC
+     * batches, the workbook is updated once and a single summary email is queued with the rows.
+     * Items whose reference is already stored, or repeated within the batch, resolve to the existing
+     * transaction instead of a new one; the result lines up with the input.
+     */
     @Override
-    public List<Transaction> getAllTransactions() {
-        return transactionRepository.findAll();
+    @Transactional
+    public List<Transaction> saveTransactions(List<Transaction> transactions) {
+        validateBatch(transactions);
+        // Released once the transaction completes
+        excelFileCoordinator.holdForMutation("create-batch");
+
+        Map<String, Transaction> byReference = new HashMap<>();
+        Set<String> references = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getReference() != null) {
+                references.add(transaction.getReference());
+            }
+        }
+        if (!references.isEmpty()) {
+            for (Transaction existing : transactionRepository.findByReferenceIn(references)) {
+                byReference.put(existing.getReference(), existing);
+            }
+        }
+
+        List<Transaction> results = new ArrayList<>(transactions.size());
+        List<Transaction> savedTransactions = new ArrayList<>(transactions.size());
+        boolean writeBehind = excelWriteBehindService.isEnabled();
+        for (Transaction transaction : transactions) {
+            Transaction existing = transaction.getReference() != null ? byReference.get(transaction.getReference()) : null;
+            if (existing != null) {
+                results.add(existing);
+                continue;
+            }
+
+            if (transaction.getDate() == null) {
+                transaction.setDate(LocalDate.now());
+            }
+            entityManager.persist(transaction);
+            savedTransactions.add(transaction);
+            results.add(transaction);
+            if (transaction.getReference() != null) {
+                byReference.put(transaction.getReference(), transaction);
+            }
+
+            // Keep the persistence context to one JDBC batch
+            if (savedTransactions.size() % jdbcBatchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        if (savedTransactions.isEmpty()) {
+            return results;
+        }
+        if (writeBehind) {
+            // Journaled after commit
+            excelWriteBehindService.recordUpserts(savedTransactions);
+        } else {
+            excelExportService.applyChangesToExcel(savedTransactions, List.of());
+        }
+
+        // Queued in this transaction, so the summary exists exactly when the rows do
+        mailService.sendTransactionsCreatedSummaryEmail(savedTransactions);
+        afterCommit(() -> {
+            for (Transaction transaction : savedTransactions) {
+                excelSyncState.putRowHash(transaction.getId(), ContentHash.of(transaction));
+            }
+        });
+
+        return results;
+    }
+
+    private void validateBatch(List<Transaction> transactions) {
+        List<String> errors = new ArrayList<>();
+        if (transactions == null || transactions.isEmpty()) {
+            errors.add("batch is empty");
+        } else if (transactions.size() > maxBatchSize) {
+            errors.add("batch has " + transactions.size() + " transactions, the limit is " + maxBatchSize);
+        } else {
+            for (int i = 0; i < transactions.size(); i++) {
+                Transaction transaction = transactions.get(i);
+                if (transaction == null) {
+                    errors.add("[" + i + "] transaction is null");
+                    continue;
+                }
+                if (transaction.getId() != null) {
+                    errors.add("[" + i + "] id must not be set");
+                }
+                if (transaction.getDescription() == null || transaction.getDescription().isBlank()) {
+                    errors.add("[" + i + "] description is required");
+                }
+                if (!Double.isFinite(transaction.getAmount())) {
+                    errors.add("[" + i + "] amount must be a finite number");
+                }
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new InvalidTransactionException(errors);
+        }
     }
 
     @Override
+    public CursorPage<Transaction> getTransactions(TransactionFilter filter, String cursor, Integer size) {
+        int pageSize = (size == null || size <= 0) ? defaultPageSize : Math.min(size, maxPageSize);
+
+        LocalDate afterDate = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            // Cursor is the (date, id) of the last row on the previous page
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+                afterDate = NO_DATE.equals(parts[0]) ? null : LocalDate.parse(parts[0]);
+                afterId = Long.parseLong(parts[1]);
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new InvalidCursorException(cursor);
+            }
+        }
+
+        // One extra row tells whether there is a next page without a count query
+        List<Transaction> rows = transactionRepository.findPage(filter, afterDate, afterId, pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            Transaction last = rows.get(pageSize - 1);
+            String date = last.getDate() != null ? last.getDate().toString() : NO_DATE;
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((date + ":" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        return CursorPage.<Transaction>builder()
+                .items(rows)
+                .size(rows.size())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    @Cacheable(cacheNames = CacheConfig.TRANSACTIONS_CACHE, key = "#id")
     public Transaction getTransactionById(Long id) {
         return transactionRepository.findById(id).orElseThrow(() -> new TransactionNotFoundException(id));
     }
 
+    /**
+     * Writes every transaction as one JSON object per line, in id order, straight from the result set.
+     * Rows are detached once written so the persistence context stays empty however large the ledger is.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamTransactions(OutputStream out) throws IOException {
+        // Flushing is batched below, not after every row
+        ObjectWriter writer = objectMapper.writerFor(Transaction.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+             Stream<Transaction> transactions = transactionRepository.streamAllOrderById()) {
+            // The response owns the stream, only flush it
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            long rows = 0;
+            for (Transaction transaction : (Iterable<Transaction>) transactions::iterator) {
+                writer.writeValue(generator, transaction);
+                generator.writeRaw('\n');
+                entityManager.detach(transaction);
+
+                // First row goes out right away, then in batches
+                if (++rows == 1 || rows % streamFlushRows == 0) {
+                    generator.flush();
+                }
+            }
+            // Closing the generator flushes the tail
+        }
+    }
+
     @Override
     @Transactional
+    @CachePut(cacheNames = CacheConfig.TRANSACTIONS_CACHE, key = "#id")
     public Transaction updateTransaction(Long id, Transaction updatedTransaction) {
-        Transaction oldTransaction;
-        Transaction savedTransaction;
-        ExcelFileLock.getLock().lock();
-        try {
-            Transaction existingTransaction = getTransactionById(id);
-            
-            oldTransaction = Transaction.builder()
-                    .id(existingTransaction.getId())
-                    .description(existingTransaction.getDescription())
-                    .amount(existingTransaction.getAmount())
-                    .date(existingTransaction.getDate())
-                    .build();
-            
-            existingTransaction.setDescription(updatedTransaction.getDescription());
-            existingTransaction.setAmount(updatedTransaction.getAmount());
-            existingTransaction.setDate(updatedTransaction.getDate());
-
-            savedTransaction = transactionRepository.save(existingTransaction);
-            
-            excelExportService.updateTransactionInExcel(id, updatedTransaction);
-
-        } finally {
-            ExcelFileLock.getLock().unlock();
+        // Released once the transaction completes, so a running import cannot put the old sheet row back over it
+        excelFileCoordinator.holdForMutation("update");
+        Transaction existingTransaction = getTransactionById(id);
+
+        Transaction oldTransaction = Transaction.builder()
+                .id(existingTransaction.getId())
+                .description(existingTransaction.getDescription())
+                .amount(existingTransaction.getAmount())
+                .date(existingTransaction.getDate())
+                .build();
+
+        existingTransaction.setDescription(updatedTransaction.getDescription());
+        existingTransaction.setAmount(updatedTransaction.getAmount());
+        existingTransaction.setDate(updatedTransaction.getDate());
+
+        Transaction savedTransaction = transactionRepository.save(existingTransaction);
+
+        if (excelWriteBehindService.isEnabled()) {
+            // Journaled after commit
+            excelWriteBehindService.recordUpsert(savedTransaction);
+        } else {
+            // Still before commit: the DB row lock keeps concurrent updates of this row in order
+            excelExportService.updateTransactionInExcel(id, savedTransaction);
         }
-        
+
+        long hash = ContentHash.of(savedTransaction);
+        afterCommit(() -> excelSyncState.putRowHash(id, hash));
+
         mailService.sendTransactionUpdatedEmail(oldTransaction, savedTransaction);
 
         return savedTransaction;
     }
 
     @Override
+    @CacheEvict(cacheNames = CacheConfig.TRANSACTIONS_CACHE, key = "#id")
     public Transaction deleteTransaction(Long id) {
-        Transaction transaction;
-        ExcelFileLock.getLock().lock();
-        try {
-            transaction = getTransactionById(id);
+        Transaction transaction = getTransactionById(id);
+        try (ExcelFileCoordinator.Hold ignored = excelFileCoordinator.holdForMutation("delete")) {
             transactionRepository.deleteById(id);
-            
-            excelExportService.deleteTransactionInExcel(id);
-
-        } finally {
-            ExcelFileLock.getLock().unlock();
+            if (excelWriteBehindService.isEnabled()) {
+                excelWriteBehindService.recordDelete(id);
+            } else {
+                excelExportService.deleteTransactionInExcel(id);
+            }
+            excelSyncState.removeRowHash(id);
         }
 
         mailService.sendTransactionDeletedEmail(transaction);
@@ -109,47 +365,26 @@ public class TransactionServiceImpl implements TransactionService {
 
     @Override
     @Transactional
-    public void upsertTransactions(List<Transaction> transactions) {
-        // Get all existing transaction IDs from database
-        List<Long> existingIds = transactionRepository.findAll()
-                .stream()
-                .map(Transaction::getId)
-                .toList();
-
-        // Get all transaction IDs from Excel (only those with IDs)
-        List<Long> excelIds = transactions.stream()
-                .map(Transaction::getId)
-                .filter(Objects::nonNull)
-                .toList();
-
-        // Find IDs that exist in DB but not in Excel (these should be deleted)
-        List<Long> idsToDelete = existingIds.stream()
-                .filter(id -> !excelIds.contains(id))
-                .toList();
-
-        // Delete transactions that are no longer in Excel
-        if (!idsToDelete.isEmpty()) {
-            transactionRepository.deleteAllById(idsToDelete);
-        }
+    public ReconciliationSummary upsertTransactions(List<Transaction> transactions) {
+        excelFileCoordinator.holdForMutation("upsert");
+        ReconciliationRun run = transactionReconciliationService.startRun();
+        run.accept(transactions);
+        return run.finish();
+    }
 
-        // Process upserts for transactions from Excel
-        for (Transaction transaction : transactions) {
-            if (transaction.getId() != null) {
-                try {
-                    Transaction existingTransaction = getTransactionById(transaction.getId());
-                    existingTransaction.setDescription(transaction.getDescription());
-                    existingTransaction.setAmount(transaction.getAmount());
-                    existingTransaction.setDate(transaction.getDate());
-
-                    transactionRepository.save(existingTransaction);
-                } catch (TransactionNotFoundException e) {
-                    // ID present in Excel but not in DB, treat as new
-                    transaction.setId(null);
-                    transactionRepository.save(transaction);
+    /**
+     * Run once the surrounding DB transaction commits, or right away if there is none
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
                 }
-            } else {
-                transactionRepository.save(transaction);
-            }
+            });
+        } else {
+            action.run();
         }
     }
 }
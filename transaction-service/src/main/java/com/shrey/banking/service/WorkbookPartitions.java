@@ -0,0 +1,157 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.WorkbookLayout;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Which workbook file a transaction belongs in. With the single layout that is always the configured file. With
+ * the monthly layout every month of transaction date gets its own file next to it, e.g. transactions-2025-07.xlsx,
+ * so edits, imports and exports only touch the months involved. Transactions without a date share one partition,
+ * e.g. transactions-undated.xlsx, which stays put as the months go by; a null month stands for it. Also keeps the
+ * partitions that need a rewrite from the DB.
+ */
+@Component
+public class WorkbookPartitions {
+    private static final String EXTENSION = ".xlsx";
+    private static final String UNDATED = "undated";
+
+    @Value("${app.excel.import.file.path}")
+    private String excelFilePath;
+
+    @Value("${app.excel.layout:single}")
+    private WorkbookLayout layout;
+
+    private Path workbook;
+    private String stem;
+    private Pattern partitionPattern;
+    private Path undated;
+
+    // Guarded by this
+    private final Set<Path> dirty = new HashSet<>();
+
+    @PostConstruct
+    public void resolvePaths() {
+        workbook = Paths.get(excelFilePath).toAbsolutePath().normalize();
+        String fileName = workbook.getFileName().toString();
+        stem = fileName.endsWith(EXTENSION) ? fileName.substring(0, fileName.length() - EXTENSION.length()) : fileName;
+        partitionPattern = Pattern.compile(Pattern.quote(stem) + "-(\\d{4}-\\d{2})" + Pattern.quote(EXTENSION));
+        undated = workbook.resolveSibling(stem + "-" + UNDATED + EXTENSION);
+    }
+
+    public boolean isPartitioned() {
+        return layout == WorkbookLayout.MONTHLY;
+    }
+
+    /**
+     * The configured workbook. Holds every transaction with the single layout; with the monthly layout it is only
+     * read once, to split it, when no partitions exist yet.
+     */
+    public Path workbook() {
+        return workbook;
+    }
+
+    /**
+     * Workbook the transaction with this date belongs in
+     */
+    public Path pathFor(LocalDate date) {
+        return isPartitioned() ? pathFor(monthOf(date)) : workbook();
+    }
+
+    /**
+     * Partition of the month, or the undated partition for null
+     */
+    public Path pathFor(YearMonth month) {
+        return month != null ? workbook.resolveSibling(stem + "-" + month + EXTENSION) : undated;
+    }
+
+    /**
+     * Month of the date, or null for the undated partition
+     */
+    public YearMonth monthOf(LocalDate date) {
+        return date != null ? YearMonth.from(date) : null;
+    }
+
+    /**
+     * Month of a partition file, or null for the undated partition and paths that are not partitions
+     */
+    public YearMonth monthOf(Path path) {
+        Matcher matcher = partitionPattern.matcher(path.getFileName().toString());
+        return matcher.matches() ? YearMonth.parse(matcher.group(1)) : null;
+    }
+
+    public boolean isPartition(Path path) {
+        return isPartitionFile(path.getFileName().toString());
+    }
+
+    private boolean isPartitionFile(String fileName) {
+        return partitionPattern.matcher(fileName).matches() || fileName.equals(undated.getFileName().toString());
+    }
+
+    /**
+     * Workbook mails attach: the whole ledger, or the current month's partition
+     */
+    public Path active() {
+        return isPartitioned() ? pathFor(YearMonth.now()) : workbook();
+    }
+
+    /**
+     * Whether a file name in the workbook's directory is one the service reads
+     */
+    public boolean isWorkbookFile(String fileName) {
+        return isPartitioned() ? isPartitionFile(fileName)
+                : fileName.equals(workbook.getFileName().toString());
+    }
+
+    /**
+     * The workbook files to import: the configured one, or every partition on disk in month order, the undated
+     * one last
+     */
+    public List<Path> existing() throws IOException {
+        if (!isPartitioned()) {
+            return List.of(workbook());
+        }
+        Path directory = workbook.getParent();
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(this::isPartition).sorted().toList();
+        }
+    }
+
+    /**
+     * Queues the partition for a rewrite from the DB by the next export, e.g. to write back IDs of rows added in
+     * the sheet. Ignored with the single layout, where every export rewrites the whole workbook.
+     */
+    public synchronized void markDirty(Path path) {
+        if (isPartitioned()) {
+            dirty.add(path);
+        }
+    }
+
+    public synchronized boolean hasDirty() {
+        return !dirty.isEmpty();
+    }
+
+    public synchronized Set<Path> takeDirty() {
+        Set<Path> taken = new TreeSet<>(dirty);
+        dirty.clear();
+        return taken;
+    }
+}
@@ -0,0 +1,198 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.util.LongLongHashMap;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Where each transaction sits in the first sheet of each published workbook file, and which rows below the last
+ * one are empty. Lets single-row writes find their row without scanning the sheet. Built by exports and
+ * imports, which read every row anyway, and handed from one write to the next under the workbook write lock.
+ * Only trusted for the file version it was built for: after an external edit the next write scans once.
+ */
+@Component
+public class WorkbookRowIndex {
+    // By absolute path, guarded by this
+    private final Map<Path, Entry> entries = new HashMap<>();
+
+    /**
+     * Takes the index if it still describes the file at path, or null. Taken, not shared: a write that fails
+     * halfway must not leave an index behind that no longer matches what it did to the sheet.
+     */
+    public synchronized Rows take(Path path) throws IOException {
+        Entry current = entries.remove(key(path));
+        if (current == null) {
+            return null;
+        }
+        try {
+            return current.size == Files.size(path) && current.lastModified == Files.getLastModifiedTime(path).toMillis()
+                    ? current.rows : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Keeps rows as the index of the file now at path
+     */
+    public synchronized void publish(Rows rows, Path path) throws IOException {
+        publish(rows, path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+    }
+
+    public synchronized void publish(Rows rows, Path path, long size, long lastModified) {
+        entries.put(key(path), new Entry(rows, size, lastModified));
+    }
+
+    public synchronized boolean isKept(Path path) {
+        return entries.containsKey(key(path));
+    }
+
+    /**
+     * File whose index holds the transaction, or null. Not checked against the file: a stale answer costs the
+     * write one scan of that file, which finds the row or not.
+     */
+    public synchronized Path locate(long id) {
+        for (Map.Entry<Path, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().rows.find(id) >= 0) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indexed rows and tombstones, the rows emptied by deletes, over all indexed files; null while no index is kept
+     */
+    public synchronized Usage usage() {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        int rows = 0;
+        int tombstones = 0;
+        for (Entry entry : entries.values()) {
+            rows += entry.rows.size();
+            tombstones += entry.rows.freeRows();
+        }
+        return new Usage(rows, tombstones);
+    }
+
+    /**
+     * Rows and tombstones per indexed file
+     */
+    public synchronized Map<Path, Usage> usageByFile() {
+        Map<Path, Usage> usage = new TreeMap<>();
+        entries.forEach((path, entry) -> usage.put(path, new Usage(entry.rows.size(), entry.rows.freeRows())));
+        return usage;
+    }
+
+    public record Usage(int rows, int tombstones) {
+    }
+
+    private record Entry(Rows rows, long size, long lastModified) {
+    }
+
+    private static Path key(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Transaction ID to row number, plus a stack of empty rows that appends fill before growing the sheet
+     */
+    public static class Rows {
+        private static final long MISSING = -1;
+
+        private final LongLongHashMap rowsById;
+        private int[] freeRows = new int[16];
+        private int freeCount;
+        // First row after the last occupied one
+        private int end = 1;
+
+        public Rows() {
+            this(16);
+        }
+
+        public Rows(int expectedSize) {
+            rowsById = new LongLongHashMap(expectedSize);
+        }
+
+        /**
+         * Row of the transaction, or -1
+         */
+        public int find(long id) {
+            return (int) rowsById.get(id, MISSING);
+        }
+
+        /**
+         * Row for a transaction that is not in the sheet yet: a free row if there is one, otherwise a new one at
+         * the end. Rows up to maxRow are allowed.
+         */
+        public int allocate(long id, int maxRow) {
+            int row;
+            if (freeCount > 0) {
+                row = freeRows[--freeCount];
+            } else if (end <= maxRow) {
+                row = end++;
+            } else {
+                return -1;
+            }
+            rowsById.put(id, row);
+            return row;
+        }
+
+        /**
+         * Drops the transaction and frees its row, returns the row or -1
+         */
+        public int remove(long id) {
+            int row = find(id);
+            if (row >= 0) {
+                rowsById.remove(id);
+                free(row);
+            }
+            return row;
+        }
+
+        /**
+         * Records a row read from the sheet. Rows come in ascending order; empty rows skipped since the previous
+         * one become free.
+         */
+        public void occupied(long id, int row) {
+            if (id > 0) {
+                rowsById.put(id, row);
+            }
+            occupied(row);
+        }
+
+        /**
+         * Records a row holding data without an ID, e.g. typed in by hand and not imported yet
+         */
+        public void occupied(int row) {
+            while (end < row) {
+                free(end++);
+            }
+            end = Math.max(end, row + 1);
+        }
+
+        public int size() {
+            return rowsById.size();
+        }
+
+        public int freeRows() {
+            return freeCount;
+        }
+
+        private void free(int row) {
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            }
+            freeRows[freeCount++] = row;
+        }
+    }
+}
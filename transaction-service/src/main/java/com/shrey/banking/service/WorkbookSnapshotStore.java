@@ -0,0 +1,164 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.MailAttachmentMode;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.activation.DataHandler;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import jakarta.mail.util.ByteArrayDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Immutable, content-addressed copies of the published workbook for mail attachments. Each published version
+ * is read once, named by the SHA-256 of its bytes and kept base64-encoded, so every mail attaching it writes
+ * the same encoded bytes instead of re-reading and re-encoding the file. Versions with the same content share
+ * one snapshot. Never takes the workbook lock: published files are replaced by rename, never rewritten in place.
+ * With the monthly layout mails carry the current month's partition.
+ */
+@Component
+public class WorkbookSnapshotStore {
+    public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("emailExecutor")
+    private Executor emailExecutor;
+
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
+    // Other modes never attach the workbook, so publishing does not need to take a snapshot
+    @Value("${app.mail.attachment:workbook}")
+    private MailAttachmentMode attachmentMode;
+
+    // Snapshots kept by id, so a mail's snapshot can still be downloaded after the next few flushes
+    @Value("${app.mail.snapshot.retained:4}")
+    private int retained;
+
+    private volatile Version latest;
+    private final Map<String, Snapshot> snapshots = new LinkedHashMap<>();
+
+    /**
+     * Called after a new workbook version is published. Takes the snapshot on the email executor, so the
+     * publisher does not pay for reading and encoding the file while holding the write lock.
+     */
+    public void published() {
+        if (attachmentMode != MailAttachmentMode.WORKBOOK) {
+            return;
+        }
+        try {
+            emailExecutor.execute(() -> {
+                try {
+                    latest();
+                } catch (IOException ignored) {
+                    // The next mail takes the snapshot itself
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Same as above
+        }
+    }
+
+    /**
+     * Snapshot of the current workbook, or null if there is none
+     */
+    public Snapshot latest() throws IOException {
+        Path path = workbookPartitions.active();
+        Version current = latest;
+        try {
+            if (current != null && current.matches(path)) {
+                return current.snapshot;
+            }
+            return capture(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    public synchronized Snapshot find(String id) {
+        return snapshots.get(id);
+    }
+
+    private synchronized Snapshot capture(Path path) throws IOException {
+        // Another thread may have captured this version while we waited
+        Version current = latest;
+        if (current != null && current.matches(path)) {
+            return current.snapshot;
+        }
+
+        long size = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        byte[] content = Files.readAllBytes(path);
+        String id = sha256(content);
+
+        Snapshot snapshot = snapshots.get(id);
+        if (snapshot == null) {
+            snapshot = new Snapshot(id, path.getFileName().toString(), content.length, Instant.now(),
+                    Base64.getMimeEncoder().encode(content));
+            snapshots.put(id, snapshot);
+            while (snapshots.size() > Math.max(1, retained)) {
+                snapshots.remove(snapshots.keySet().iterator().next());
+            }
+            meterRegistry.counter("mail.snapshot.created").increment();
+        } else {
+            meterRegistry.counter("mail.snapshot.reused").increment();
+        }
+        latest = new Version(path, size, lastModified, snapshot);
+        return snapshot;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * One workbook version, base64-encoded with MIME line breaks
+     */
+    public record Snapshot(String id, String fileName, long size, Instant createdAt, byte[] encoded) {
+
+        public byte[] content() {
+            return Base64.getMimeDecoder().decode(encoded);
+        }
+
+        /**
+         * A new attachment part over the shared encoded bytes; a part can only belong to one message
+         */
+        public MimeBodyPart toBodyPart() throws MessagingException {
+            MimeBodyPart part = new PreencodedMimeBodyPart("base64");
+            part.setDataHandler(new DataHandler(new ByteArrayDataSource(encoded, CONTENT_TYPE)));
+            part.setFileName(fileName);
+            part.setDisposition(MimeBodyPart.ATTACHMENT);
+            return part;
+        }
+    }
+
+    private record Version(Path path, long size, long lastModified, Snapshot snapshot) {
+        boolean matches(Path path) throws IOException {
+            return this.path.equals(path) && size == Files.size(path) && lastModified == Files.getLastModifiedTime(path).toMillis();
+        }
+    }
+}
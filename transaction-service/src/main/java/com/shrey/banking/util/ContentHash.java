@@ -0,0 +1,45 @@
+package com.shrey.banking.util;
+
+import com.shrey.banking.entity.Transaction;
+
+import java.time.LocalDate;
+
+/**
+ * 64-bit FNV-1a hash over the user-visible fields of a transaction, used to detect changed rows.
+ */
+public final class ContentHash {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ContentHash() {
+    }
+
+    public static long of(Transaction transaction) {
+        return of(transaction.getDescription(), transaction.getAmount(), transaction.getDate());
+    }
+
+    public static long of(String description, double amount, LocalDate date) {
+        long hash = FNV_OFFSET_BASIS;
+        if (description != null) {
+            for (int i = 0; i < description.length(); i++) {
+                hash = mix(hash, description.charAt(i));
+            }
+        }
+        // Separator so ("ab", x) and ("a", ...) cannot line up
+        hash = mix(hash, 0x1F);
+        hash = mixLong(hash, Double.doubleToLongBits(amount));
+        hash = mixLong(hash, date != null ? date.toEpochDay() : Long.MIN_VALUE);
+        return hash;
+    }
+
+    private static long mixLong(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = mix(hash, (int) (value >>> shift) & 0xFF);
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+}
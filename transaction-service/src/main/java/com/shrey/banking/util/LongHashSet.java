@@ -0,0 +1,112 @@
+package com.shrey.banking.util;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing hash set of primitive longs. Avoids boxing every ID when diffing large ID sets.
+ */
+public class LongHashSet {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    // 0 marks an empty slot, so it is tracked separately
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(tableSizeFor((int) Math.min(1 << 30, (long) (expectedSize / LOAD_FACTOR) + 1)));
+    }
+
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int index = indexOf(value);
+        while (table[index] != 0) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        if (++size > resizeThreshold) {
+            rehash();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+
+        int index = indexOf(value);
+        while (table[index] != 0) {
+            if (table[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (containsZero) {
+            action.accept(0);
+        }
+        for (long value : table) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    private int indexOf(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash() {
+        long[] oldTable = table;
+        allocate(oldTable.length << 1);
+        for (long value : oldTable) {
+            if (value != 0) {
+                int index = indexOf(value);
+                while (table[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int minCapacity) {
+        return Math.max(16, Integer.highestOneBit(Math.max(minCapacity, 1) - 1) << 1);
+    }
+}
@@ -0,0 +1,154 @@
+package com.shrey.banking.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to primitive long values.
+ * Key 0 is reserved as the empty-slot marker; transaction IDs start at 1.
+ */
+public class LongLongHashMap {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongLongHashMap() {
+        this(16);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        allocate(tableSizeFor((int) Math.min(1 << 30, (long) (expectedSize / LOAD_FACTOR) + 1)));
+    }
+
+    public void put(long key, long value) {
+        checkKey(key);
+        int index = indexOf(key);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash();
+        }
+    }
+
+    public long get(long key, long missingValue) {
+        if (key == 0) {
+            return missingValue;
+        }
+
+        int index = indexOf(key);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return false;
+        }
+
+        int index = indexOf(key);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public void remove(long key) {
+        if (key == 0) {
+            return;
+        }
+
+        int index = indexOf(key);
+        while (keys[index] != 0) {
+            if (keys[index] == key) {
+                keys[index] = 0;
+                size--;
+                closeGap(index);
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    /**
+     * Shift later entries of the probe chain back into the freed slot so lookups never stop early
+     */
+    private void closeGap(int freed) {
+        int index = (freed + 1) & mask;
+        while (keys[index] != 0) {
+            int home = indexOf(keys[index]);
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((index - home) & mask) >= ((index - freed) & mask)) {
+                keys[freed] = keys[index];
+                values[freed] = values[index];
+                keys[index] = 0;
+                freed = index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private int indexOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = indexOf(oldKeys[i]);
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static void checkKey(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+    }
+
+    private static int tableSizeFor(int minCapacity) {
+        return Math.max(16, Integer.highestOneBit(Math.max(minCapacity, 1) - 1) << 1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.shrey.banking.benchmark;
+
+import com.shrey.banking.TransactionServiceApplication;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generated workbooks and a transaction-service context over them. The context runs without web server,
+ * file watcher, write-behind, mail polling or workbook snapshots, so only the benchmarked call touches the
+ * workbook and the DB.
+ */
+final class BenchmarkFixtures {
+    private static final Path FIXTURE_DIR = Paths.get("target", "benchmark-fixtures");
+    private static final String[] DESCRIPTIONS = {"Groceries", "Rent", "Fuel", "Coffee", "Electricity", "Gym", "Books"};
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Workbook with the given number of rows and no ID column, as a user would hand it in. Generated once
+     * and reused by later runs.
+     */
+    static Path workbook(int rows) throws IOException {
+        Path fixture = FIXTURE_DIR.resolve("transactions-" + rows + ".xlsx");
+        if (Files.exists(fixture)) {
+            return fixture;
+        }
+
+        Files.createDirectories(FIXTURE_DIR);
+        Path tempFile = Files.createTempFile(FIXTURE_DIR, "transactions-" + rows, ".xlsx.tmp");
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try (OutputStream os = Files.newOutputStream(tempFile)) {
+            workbook.setCompressTempFiles(true);
+            Sheet sheet = workbook.createSheet("transactions");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Description");
+            header.createCell(1).setCellValue("Amount");
+            header.createCell(2).setCellValue("Date");
+
+            // Same rows for the same size on every run
+            Random random = new Random(rows);
+            LocalDate firstDate = LocalDate.of(2020, 1, 1);
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)] + " " + i);
+                row.createCell(1).setCellValue(random.nextInt(50_000) / 100.0 + 0.01);
+                row.createCell(2).setCellValue(firstDate.plusDays(random.nextInt(2_000)).toString());
+            }
+            workbook.write(os);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        Files.move(tempFile, fixture, StandardCopyOption.REPLACE_EXISTING);
+        return fixture;
+    }
+
+    /**
+     * Starts the service on a private copy of the fixture. The startup import loads every row into a fresh
+     * in-memory DB and the export after it writes the generated IDs into the workbook.
+     */
+    static ConfigurableApplicationContext start(int rows) throws IOException {
+        Path dir = Files.createTempDirectory("transactions-benchmark");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(workbook(rows), workbook);
+
+        return new SpringApplicationBuilder(TransactionServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                // Command line arguments, so they win over application.properties
+                .run(
+                        "--benchmark.work-dir=" + dir,
+                        "--spring.datasource.url=jdbc:h2:mem:" + dir.getFileName(),
+                        "--spring.mail.username=benchmark@example.com",
+                        "--app.excel.import.file.path=" + workbook,
+                        "--app.excel.write-behind.journal.file.path=" + dir.resolve("transactions.journal"),
+                        "--app.excel.write-behind.enabled=false",
+                        "--app.excel.watcher.enabled=false",
+                        "--app.excel.compaction.enabled=false",
+                        "--app.mail.outbox.poll-interval-ms=3600000",
+                        "--app.mail.attachment=none",
+                        "--logging.level.root=WARN");
+    }
+
+    static Path workbookPath(ConfigurableApplicationContext context) {
+        return Paths.get(context.getEnvironment().getRequiredProperty("app.excel.import.file.path"));
+    }
+
+    static void stop(ConfigurableApplicationContext context) throws IOException {
+        Path dir = Paths.get(context.getEnvironment().getRequiredProperty("benchmark.work-dir"));
+        context.close();
+        FileSystemUtils.deleteRecursively(dir);
+    }
+}
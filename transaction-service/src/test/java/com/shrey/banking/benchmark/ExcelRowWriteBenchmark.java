@@ -0,0 +1,103 @@
+package com.shrey.banking.benchmark;
+
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.service.ExcelExportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-row writes straight into the workbook, each a full open and rewrite of the file: the path taken
+ * when write-behind is off. Run with {@code mvn -Pbenchmark test -Djmh.args=ExcelRowWrite}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class ExcelRowWriteBenchmark {
+
+    // The whole sheet is held in memory; 500000 rows needs -p rows=500000 -jvmArgsAppend -Xmx8g or more
+    @Param({"1000", "10000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private ExcelExportService excelExportService;
+    private Path workbook;
+    private Path pristine;
+    private long firstId;
+    private long nextNewId;
+    private long nextDeleteId;
+    private int invocations;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        context = BenchmarkFixtures.start(rows);
+        excelExportService = context.getBean(ExcelExportService.class);
+        workbook = BenchmarkFixtures.workbookPath(context);
+        pristine = workbook.resolveSibling("pristine.xlsx");
+        Files.copy(workbook, pristine);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        firstId = jdbcTemplate.queryForObject("select min(id) from transaction", Long.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void restoreWorkbook() throws IOException {
+        // Undo the rows added and removed by the previous iteration, so every iteration sees the same size
+        Files.copy(pristine, workbook, StandardCopyOption.REPLACE_EXISTING);
+        nextNewId = firstId + rows + 1_000_000;
+        nextDeleteId = firstId + rows / 2;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        BenchmarkFixtures.stop(context);
+    }
+
+    @Benchmark
+    public void saveRow() {
+        excelExportService.saveTransactionToExcel(transaction(nextNewId++));
+    }
+
+    @Benchmark
+    public void updateRow() {
+        // A row in the middle, found by scanning like any other update
+        long id = firstId + rows / 2;
+        excelExportService.updateTransactionInExcel(id, transaction(id));
+    }
+
+    @Benchmark
+    public void deleteRow() {
+        excelExportService.deleteTransactionInExcel(nextDeleteId++);
+    }
+
+    private Transaction transaction(long id) {
+        return Transaction.builder()
+                .id(id)
+                .description("Benchmark " + id)
+                .amount(10 + (invocations++ % 100))
+                .date(LocalDate.of(2025, 3, 1))
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.shrey.banking.benchmark;
+
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.service.ExcelExportService;
+import com.shrey.banking.service.ExcelImportService;
+import com.shrey.banking.service.ExcelSyncState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-sheet sync in both directions: the streaming export of the table, and an import of a workbook
+ * that matches the DB (every row parsed, hashed and compared, nothing written).
+ * Run with {@code mvn -Pbenchmark test -Djmh.args=ExcelSync}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class ExcelSyncBenchmark {
+
+    @Param({"1000", "10000", "100000", "500000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private ExcelExportService excelExportService;
+    private ExcelImportService excelImportService;
+    private ExcelSyncState excelSyncState;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        context = BenchmarkFixtures.start(rows);
+        excelExportService = context.getBean(ExcelExportService.class);
+        excelImportService = context.getBean(ExcelImportService.class);
+        excelSyncState = context.getBean(ExcelSyncState.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void forgetSync() {
+        // Otherwise the import sees an unchanged fingerprint and returns without reading the file
+        excelSyncState.markOutOfSync();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        BenchmarkFixtures.stop(context);
+    }
+
+    @Benchmark
+    public void exportAll() {
+        excelExportService.exportTransactionsToExcel();
+    }
+
+    @Benchmark
+    public ReconciliationSummary importAll() {
+        return excelImportService.importTransactionsFromExcel();
+    }
+}
@@ -0,0 +1,123 @@
+package com.shrey.banking.benchmark;
+
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.service.TemplateRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per rendered mail: a fresh context and {@code templateEngine.process} per message, as the mail services
+ * used to do, against {@link TemplateRenderer} for single mails and for a batch.
+ * Run with {@code mvn -Pbenchmark test -Djmh.args=TemplateRender}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TemplateRenderBenchmark {
+    private static final int MAILS = 100;
+
+    @Param({"transaction-created", "transactions-batch-created"})
+    private String template;
+
+    // spring.thymeleaf.enable-spring-el-compiler
+    @Param({"false", "true"})
+    private boolean springElCompiler;
+
+    private SpringTemplateEngine templateEngine;
+    private TemplateRenderer templateRenderer;
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setUp() {
+        // Same resolution and caching as the Boot auto-configuration
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        templateEngine.setEnableSpringELCompiler(springElCompiler);
+
+        templateRenderer = new TemplateRenderer();
+        ReflectionTestUtils.setField(templateRenderer, "templateEngine", templateEngine);
+
+        transactions = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            transactions.add(Transaction.builder()
+                    .id((long) i)
+                    .description("Groceries " + i)
+                    .amount(10 + i)
+                    .date(LocalDate.of(2025, 3, 1).plusDays(i))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAILS)
+    public void perMessageContext(Blackhole blackhole) {
+        for (int i = 0; i < MAILS; i++) {
+            Context context = new Context();
+            bind(context, i);
+            blackhole.consume(templateEngine.process(template, context));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAILS)
+    public void rendererSingle(Blackhole blackhole) {
+        for (int i = 0; i < MAILS; i++) {
+            int mail = i;
+            blackhole.consume(templateRenderer.render(template, context -> bind(context, mail)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAILS)
+    public void rendererBatch(Blackhole blackhole) {
+        TemplateRenderer.Batch batch = templateRenderer.batch();
+        for (int i = 0; i < MAILS; i++) {
+            int mail = i;
+            blackhole.consume(batch.render(template, context -> bind(context, mail)));
+        }
+    }
+
+    private void bind(Context context, int mail) {
+        Transaction transaction = transactions.get(mail % transactions.size());
+        context.setVariable("userName", "benchmark");
+        if (template.equals("transactions-batch-created")) {
+            context.setVariable("count", 5000 + mail);
+            context.setVariable("totalAmount", 123456.0 + mail);
+            context.setVariable("transactions", transactions);
+        } else {
+            context.setVariable("description", transaction.getDescription());
+            context.setVariable("amount", transaction.getAmount());
+            context.setVariable("date", transaction.getDate());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.shrey.banking.benchmark;
+
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import com.shrey.banking.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code TransactionServiceImpl.upsertTransactions} with a full snapshot of the table in which a share of
+ * the rows changed since the last call. Run with {@code mvn -Pbenchmark test -Djmh.args=Upsert}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class UpsertBenchmark {
+
+    @Param({"1000", "10000", "100000", "500000"})
+    private int rows;
+
+    @Param({"1", "100"})
+    private int changedPercent;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private List<Transaction> snapshot;
+    private double[] amounts;
+    private int invocations;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        context = BenchmarkFixtures.start(rows);
+        transactionService = context.getBean(TransactionService.class);
+
+        snapshot = new ArrayList<>(rows);
+        for (Transaction transaction : context.getBean(TransactionRepository.class).findAll()) {
+            snapshot.add(Transaction.builder()
+                    .id(transaction.getId())
+                    .description(transaction.getDescription())
+                    .amount(transaction.getAmount())
+                    .date(transaction.getDate())
+                    .build());
+        }
+        amounts = new double[snapshot.size()];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = snapshot.get(i).getAmount();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void changeRows() {
+        // Alternates between the original and a shifted amount, so the rows differ from the DB on every call
+        double shift = invocations++ % 2 == 0 ? 0.01 : 0;
+        int changed = snapshot.size() * changedPercent / 100;
+        for (int i = 0; i < changed; i++) {
+            snapshot.get(i).setAmount(amounts[i] + shift);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        BenchmarkFixtures.stop(context);
+    }
+
+    @Benchmark
+    public ReconciliationSummary upsert() {
+        return transactionService.upsertTransactions(snapshot);
+    }
+}
@@ -0,0 +1,157 @@
+package com.shrey.banking.load;
+
+import com.shrey.banking.TransactionServiceApplication;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the transaction endpoints with more concurrent clients than Tomcat has platform threads, once per
+ * thread mode, and prints throughput and latency side by side. Excluded from the default build, run with
+ * {@code mvn test -Pload-test}.
+ */
+@Tag("load")
+class TransactionLoadTests {
+    private static final int CLIENTS = 400;
+    private static final int REQUESTS = 4000;
+    private static final int WARMUP_REQUESTS = 1000;
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        LoadResult[] platform = run(false);
+        LoadResult[] virtual = run(true);
+
+        System.out.println();
+        System.out.println(LoadResult.HEADER);
+        for (int i = 0; i < platform.length; i++) {
+            System.out.println(platform[i]);
+            System.out.println(virtual[i]);
+        }
+
+        // Platform mode is expected to fail writes once the email pool's queue fills up, that is the point of the comparison
+        for (LoadResult result : virtual) {
+            assertEquals(0, result.errors(), () -> result.name() + " had failed requests");
+        }
+    }
+
+    private LoadResult[] run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        Path dir = Files.createDirectories(workDir.resolve(mode));
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionServiceApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("mailSender", new DiscardingMailSender()))
+                // Command line arguments, so they win over application.properties
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + mode,
+                        "--spring.mail.username=load@example.com",
+                        "--app.excel.import.file.path=" + workbook,
+                        "--app.excel.write-behind.journal.file.path=" + dir.resolve("transactions.journal"),
+                        "--logging.level.root=WARN")) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            AtomicInteger sequence = new AtomicInteger();
+            IntFunction<HttpRequest> create = i -> HttpRequest.newBuilder(URI.create(baseUrl + "/transactions"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"description\":\"Load " + mode + " " + sequence.incrementAndGet()
+                            + "\",\"amount\":12.5,\"date\":\"" + LocalDate.now() + "\"}"))
+                    .build();
+            IntFunction<HttpRequest> list = i -> HttpRequest.newBuilder(URI.create(baseUrl + "/transactions?size=50")).GET().build();
+
+            // Reads first: every write queues an email, and that backlog would otherwise skew the read numbers
+            drive(mode + " warmup", list, WARMUP_REQUESTS);
+            LoadResult reads = drive("GET  /transactions  " + mode, list, REQUESTS);
+            drive(mode + " warmup", create, WARMUP_REQUESTS);
+            LoadResult writes = drive("POST /transactions  " + mode, create, REQUESTS);
+            return new LoadResult[]{reads, writes};
+        }
+    }
+
+    /**
+     * Closed loop: every client sends its next request as soon as the previous answer arrives.
+     */
+    private static LoadResult drive(String name, IntFunction<HttpRequest> requests, int total) throws InterruptedException {
+        long[] latencies = new long[total];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        // Closing the client pool waits for every client to finish, before the HTTP client closes
+        try (HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < total) {
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(requests.apply(i), HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException | InterruptedException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - sent;
+                    }
+                });
+            }
+        }
+        return LoadResult.of(name, latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    record LoadResult(String name, int requests, int errors, double throughput, double p50Ms, double p99Ms, double maxMs) {
+        static final String HEADER = String.format("%-32s %8s %7s %10s %9s %9s %9s",
+                "scenario", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+
+        static LoadResult of(String name, long[] latencies, int errors, long elapsedNanos) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return new LoadResult(name, sorted.length, errors, sorted.length / (elapsedNanos / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            return sorted[(int) Math.ceil(quantile * sorted.length) - 1] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-32s %8d %7d %10.0f %9.1f %9.1f %9.1f", name, requests, errors, throughput, p50Ms, p99Ms, maxMs);
+        }
+    }
+
+    /**
+     * Builds messages as usual but never opens an SMTP connection
+     */
+    static class DiscardingMailSender extends JavaMailSenderImpl {
+        @Override
+        protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.shrey.banking.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.shrey.banking.TransactionServiceApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mixed workload against an in-process transaction-service with GreenMail as its SMTP server: CRUD on
+ * {@code /transactions} at a fixed rate while a user keeps saving edits to the workbook. Writes a
+ * {@link LoadReport}. Excluded from the default build, run with {@code mvn test -Pload-test
+ * -Dtest=TransactionWorkloadLoadTests}; {@code -Dload.rate} (ops/s) and {@code -Dload.duration-seconds} size the run.
+ */
+@Tag("load")
+class TransactionWorkloadLoadTests {
+    private static final int SEEDED = 200;
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP.dynamicPort());
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path workDir;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final Object workbookEditor = new Object();
+
+    @Test
+    void mixedWorkload() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("load.rate", "40"));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.duration-seconds", 30));
+
+        Path workbook = workDir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionServiceApplication.class)
+                // Command line arguments, so they win over application.properties
+                .run(
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:workload",
+                        "--spring.mail.username=load@example.com",
+                        "--spring.mail.host=localhost",
+                        "--spring.mail.port=" + greenMail.getSmtp().getPort(),
+                        "--spring.mail.properties.mail.smtp.auth=false",
+                        "--spring.mail.properties.mail.smtp.starttls.enable=false",
+                        "--spring.mail.properties.mail.smtp.starttls.required=false",
+                        "--app.excel.import.file.path=" + workbook,
+                        "--app.excel.write-behind.journal.file.path=" + workDir.resolve("transactions.journal"),
+                        "--logging.level.root=WARN");
+             HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+            // Rows that stay for the whole run, and rows waiting to be deleted
+            List<Long> kept = new ArrayList<>();
+            Queue<Long> deletable = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < SEEDED; i++) {
+                kept.add(create(http, baseUrl));
+                deletable.add(create(http, baseUrl));
+            }
+            // Into the workbook before the first edit, or the edit's import would remove them again
+            http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/excel/journal/flush"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+
+            LoadReport report = new LoadDriver()
+                    .add("GET /transactions", 30, LoadDriver.http(http, () ->
+                            get(baseUrl + "/transactions?size=50")))
+                    .add("GET /transactions/{id}", 25, LoadDriver.http(http, () ->
+                            get(baseUrl + "/transactions/" + pick(kept))))
+                    .add("POST /transactions", 20, () -> {
+                        deletable.add(create(http, baseUrl));
+                        return true;
+                    })
+                    .add("PUT /transactions/{id}", 15, LoadDriver.http(http, () ->
+                            HttpRequest.newBuilder(URI.create(baseUrl + "/transactions/" + pick(kept)))
+                                    .header("Content-Type", "application/json")
+                                    .PUT(HttpRequest.BodyPublishers.ofString(body()))
+                                    .build()))
+                    .add("DELETE /transactions/{id}", 8, () -> {
+                        Long id = deletable.poll();
+                        return id != null && http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/transactions/" + id))
+                                .DELETE().build(), HttpResponse.BodyHandlers.discarding()).statusCode() < 300;
+                    })
+                    .add("edit transactions.xlsx", 2, () -> editWorkbook(workbook))
+                    .run("transaction-workload", rate, duration);
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            report.counter("mails.received", greenMail.getReceivedMessages().length)
+                    .counter("workbook.imports", meterRegistry.find("excel.import").timers().stream()
+                            .mapToLong(Timer::count)
+                            .sum());
+            Path written = report.write();
+            System.out.println("Report written to " + written.toAbsolutePath());
+
+            for (LoadReport.EndpointStats stats : report.endpoints()) {
+                assertTrue(stats.requests() > 0, () -> stats.name() + " was never called");
+            }
+        }
+    }
+
+    private Long create(HttpClient http, String baseUrl) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/transactions"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IOException("Create failed with " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body()).get("id").asLong();
+    }
+
+    /**
+     * A user saving the workbook: appends a row and changes an amount, then replaces the file as one rename
+     * like a spreadsheet application does. One user, so edits queue behind each other.
+     */
+    private boolean editWorkbook(Path workbook) throws IOException {
+        synchronized (workbookEditor) {
+            Path edited = workbook.resolveSibling("transactions.xlsx.edit");
+            try (InputStream in = Files.newInputStream(workbook);
+                 XSSFWorkbook sheets = new XSSFWorkbook(in);
+                 OutputStream out = Files.newOutputStream(edited)) {
+                Sheet sheet = sheets.getSheetAt(0);
+                int last = sheet.getLastRowNum();
+                Row added = sheet.createRow(last + 1);
+                added.createCell(1).setCellValue("Edited in workbook " + sequence.incrementAndGet());
+                added.createCell(2).setCellValue(7.5);
+                added.createCell(3).setCellValue(LocalDate.now().toString());
+                if (last > 0) {
+                    Row changed = sheet.getRow(1 + ThreadLocalRandom.current().nextInt(last));
+                    if (changed != null && changed.getCell(2) != null) {
+                        changed.getCell(2).setCellValue(changed.getCell(2).getNumericCellValue() + 1);
+                    }
+                }
+                sheets.write(out);
+            }
+            Files.move(edited, workbook, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+    }
+
+    private String body() {
+        return "{\"description\":\"Workload " + sequence.incrementAndGet() + "\",\"amount\":12.5,\"date\":\""
+                + LocalDate.now() + "\"}";
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static long pick(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
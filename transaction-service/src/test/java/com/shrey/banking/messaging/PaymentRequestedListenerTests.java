@@ -0,0 +1,168 @@
+package com.shrey.banking.messaging;
+
+import com.shrey.banking.dto.PaymentRequestedEvent;
+import com.shrey.banking.dto.TransactionCreatedEvent;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "app.payments.transport=kafka",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        "app.kafka.consumer.retry.backoff-ms=100"
+})
+@EmbeddedKafka(partitions = 3, topics = {"payments.requested", "transactions.created", "payments.requested.DLT"})
+class PaymentRequestedListenerTests {
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @Test
+    void booksEachPaymentOnceAndRepliesToEveryRequest() {
+        try (Consumer<String, TransactionCreatedEvent> replies = replyConsumer("reply-test")) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(replies, "transactions.created");
+
+            PaymentRequestedEvent first = request(1L, 7L, 25.0);
+            PaymentRequestedEvent second = request(2L, 8L, 40.0);
+            kafkaTemplate.send("payments.requested", "7", first);
+            kafkaTemplate.send("payments.requested", "8", second);
+            // Redelivery of the first request
+            kafkaTemplate.send("payments.requested", "7", first);
+
+            List<TransactionCreatedEvent> received = receive(replies, Set.of(1L, 2L), 3);
+            assertEquals(3, received.size());
+
+            List<Long> firstPaymentTransactions = received.stream()
+                    .filter(event -> event.getPaymentId() == 1L)
+                    .map(TransactionCreatedEvent::getTransactionId)
+                    .distinct()
+                    .toList();
+            assertEquals(1, firstPaymentTransactions.size());
+        }
+
+        Transaction booked = transactionRepository.findByReference("payment-1").orElse(null);
+        assertNotNull(booked);
+        assertEquals(25.0, booked.getAmount());
+        assertTrue(transactionRepository.findByReference("payment-2").isPresent());
+        assertEquals(2, transactionRepository.findByReferenceIn(List.of("payment-1", "payment-2")).size());
+    }
+
+    @Test
+    void booksTheRestOfABatchAroundAnInvalidRequest() {
+        try (Consumer<String, TransactionCreatedEvent> replies = replyConsumer("reply-invalid-test");
+             Consumer<String, PaymentRequestedEvent> deadLetters = deadLetterConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(replies, "transactions.created");
+            embeddedKafka.consumeFromAnEmbeddedTopic(deadLetters, "payments.requested.DLT");
+
+            // Same key, so one partition and most likely one poll
+            PaymentRequestedEvent invalid = request(12L, 9L, 15.0);
+            invalid.setDescription(" ");
+            kafkaTemplate.send("payments.requested", "9", request(11L, 9L, 10.0));
+            kafkaTemplate.send("payments.requested", "9", invalid);
+            kafkaTemplate.send("payments.requested", "9", request(13L, 9L, 20.0));
+
+            List<TransactionCreatedEvent> received = receive(replies, Set.of(11L, 12L, 13L), 2);
+            assertEquals(Set.of(11L, 13L), received.stream().map(TransactionCreatedEvent::getPaymentId).collect(Collectors.toSet()));
+
+            ConsumerRecord<String, PaymentRequestedEvent> deadLetter =
+                    KafkaTestUtils.getSingleRecord(deadLetters, "payments.requested.DLT", Duration.ofSeconds(30));
+            assertEquals(12L, deadLetter.value().getPaymentId());
+        }
+
+        assertTrue(transactionRepository.findByReference("payment-11").isPresent());
+        assertTrue(transactionRepository.findByReference("payment-13").isPresent());
+        assertFalse(transactionRepository.findByReference("payment-12").isPresent());
+    }
+
+    /**
+     * Replies to the given payments, until expected have arrived or 30 seconds passed
+     */
+    private static List<TransactionCreatedEvent> receive(Consumer<String, TransactionCreatedEvent> replies,
+                                                         Set<Long> paymentIds, int expected) {
+        List<TransactionCreatedEvent> received = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (received.size() < expected && System.currentTimeMillis() < deadline) {
+            for (ConsumerRecord<String, TransactionCreatedEvent> record : KafkaTestUtils.getRecords(replies, Duration.ofSeconds(1))) {
+                if (!paymentIds.contains(record.value().getPaymentId())) {
+                    continue; // Reply to another test's request
+                }
+                received.add(record.value());
+                assertEquals(String.valueOf(record.value().getRecipientId()), record.key());
+            }
+        }
+        return received;
+    }
+
+    private static PaymentRequestedEvent request(Long paymentId, Long recipientId, double amount) {
+        return PaymentRequestedEvent.builder()
+                .paymentId(paymentId)
+                .recipientId(recipientId)
+                .reference("payment-" + paymentId)
+                .description("Payment to recipient " + recipientId)
+                .amount(amount)
+                .build();
+    }
+
+    private Consumer<String, TransactionCreatedEvent> replyConsumer(String group) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps(group, "false", embeddedKafka);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        JsonDeserializer<TransactionCreatedEvent> valueDeserializer = new JsonDeserializer<>(TransactionCreatedEvent.class, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), valueDeserializer).createConsumer();
+    }
+
+    private Consumer<String, PaymentRequestedEvent> deadLetterConsumer() {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("dead-letter-test", "false", embeddedKafka);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        JsonDeserializer<PaymentRequestedEvent> valueDeserializer = new JsonDeserializer<>(PaymentRequestedEvent.class, false);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), valueDeserializer).createConsumer();
+    }
+}
@@ -0,0 +1,166 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ExcelWatcherStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The pipeline on its own: file events go in, and the mocked import counts what comes out.
+ */
+class ExcelChangePipelineTests {
+    private static final long DEBOUNCE_MS = 100;
+
+    @TempDir
+    Path dir;
+
+    private ExcelChangePipeline pipeline;
+    private ExcelImportService excelImportService;
+    private ExcelSyncState excelSyncState;
+    private ExecutorService fileOperationExecutor;
+    private Path workbook;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workbook = dir.resolve("transactions.xlsx");
+        excelImportService = mock(ExcelImportService.class);
+        excelSyncState = mock(ExcelSyncState.class);
+        when(excelSyncState.isUnchangedSinceSync(any())).thenReturn(false);
+        fileOperationExecutor = Executors.newSingleThreadExecutor();
+
+        pipeline = new ExcelChangePipeline();
+        ReflectionTestUtils.setField(pipeline, "excelImportService", excelImportService);
+        ReflectionTestUtils.setField(pipeline, "excelExportService", mock(ExcelExportService.class));
+        ReflectionTestUtils.setField(pipeline, "excelSyncState", excelSyncState);
+        ReflectionTestUtils.setField(pipeline, "workbookPartitions", mock(WorkbookPartitions.class));
+        ReflectionTestUtils.setField(pipeline, "fileOperationExecutor", fileOperationExecutor);
+        ReflectionTestUtils.setField(pipeline, "debounceMs", DEBOUNCE_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+        fileOperationExecutor.shutdownNow();
+    }
+
+    @Test
+    void burstOfEventsForOneFileImportsOnce() throws InterruptedException {
+        // Excel saves through several writes in quick succession
+        for (int i = 0; i < 10; i++) {
+            pipeline.onFileEvent(workbook);
+            Thread.sleep(DEBOUNCE_MS / 10);
+        }
+
+        awaitIdle(1);
+        // And nothing trails behind the window
+        Thread.sleep(DEBOUNCE_MS * 3);
+        verify(excelImportService, times(1)).importTransactionsFromExcel();
+        ExcelWatcherStatus status = pipeline.getStatus();
+        assertEquals(10, status.getEventsReceived());
+        assertEquals(9, status.getEventsCoalesced());
+        assertEquals(1, status.getImportsStarted());
+        assertNull(status.getLastError());
+    }
+
+    @Test
+    void fileUnchangedSinceTheLastSyncIsNotImported() throws IOException, InterruptedException {
+        // The service's own export
+        when(excelSyncState.isUnchangedSinceSync(workbook)).thenReturn(true);
+        pipeline.onFileEvent(workbook);
+        pipeline.onFileEvent(workbook);
+
+        await(() -> pipeline.getStatus().getSelfWritesSuppressed() == 1);
+        Thread.sleep(DEBOUNCE_MS * 3);
+        verify(excelImportService, never()).importTransactionsFromExcel();
+        assertEquals(1, pipeline.getStatus().getSelfWritesSuppressed());
+        assertEquals(0, pipeline.getStatus().getImportsStarted());
+
+        // Then someone edits it
+        when(excelSyncState.isUnchangedSinceSync(workbook)).thenReturn(false);
+        pipeline.onFileEvent(workbook);
+        awaitIdle(1);
+        verify(excelImportService, times(1)).importTransactionsFromExcel();
+    }
+
+    @Test
+    void changesDuringAnImportQueueASingleRerun() throws InterruptedException {
+        CountDownLatch importing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger imports = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (imports.incrementAndGet() == 1) {
+                importing.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return null;
+        }).when(excelImportService).importTransactionsFromExcel();
+
+        pipeline.onFileEvent(workbook);
+        assertTrue(importing.await(5, TimeUnit.SECONDS));
+
+        // Several files settle while the first import holds the pipeline
+        for (int i = 0; i < 5; i++) {
+            pipeline.onFileEvent(dir.resolve("transactions-2024-0" + (i + 1) + ".xlsx"));
+        }
+        await(() -> pipeline.getStatus().getImportsDeferred() == 5);
+        assertEquals(1, imports.get());
+
+        release.countDown();
+        awaitIdle(2);
+        Thread.sleep(DEBOUNCE_MS * 3);
+        assertEquals(2, imports.get());
+        ExcelWatcherStatus status = pipeline.getStatus();
+        assertEquals(2, status.getImportsStarted());
+        assertFalse(status.isImportRunning());
+    }
+
+    @Test
+    void failedImportIsReportedAndDoesNotBlockTheNext() throws InterruptedException {
+        doAnswer(invocation -> {
+            throw new IllegalStateException("Invalid amount 'twelve' in row 3");
+        }).doReturn(null).when(excelImportService).importTransactionsFromExcel();
+
+        pipeline.onFileEvent(workbook);
+        awaitIdle(1);
+        assertEquals("Invalid amount 'twelve' in row 3", pipeline.getStatus().getLastError());
+
+        pipeline.onFileEvent(workbook);
+        awaitIdle(2);
+        assertNull(pipeline.getStatus().getLastError());
+    }
+
+    private void awaitIdle(long importsStarted) throws InterruptedException {
+        await(() -> pipeline.getStatus().getImportsStarted() == importsStarted && !pipeline.getStatus().isImportRunning());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ExcelCompactionStatus;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        // The tests run the threshold check themselves
+        "app.excel.watcher.enabled=false",
+        "app.excel.write-behind.flush-interval-ms=3600000",
+        "app.excel.compaction.check-interval-ms=3600000",
+        "app.excel.compaction.tombstone-ratio=0.25",
+        "app.excel.compaction.min-tombstones=4",
+        "spring.datasource.url=jdbc:h2:mem:excel-compaction-tests"
+})
+class ExcelCompactionServiceTests {
+
+    @Autowired
+    private ExcelCompactionServiceImpl excelCompactionService;
+
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
+    @Autowired
+    private WorkbookRowIndex workbookRowIndex;
+
+    private Path workbook;
+    private List<Transaction> ledger;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void clearTheLedger() {
+        transactionRepository.deleteAll();
+        workbook = workbookPartitions.workbook();
+    }
+
+    @Test
+    void waitsForTheMinimumNumberOfTombstones() throws IOException {
+        exportLedger(12);
+        long compactions = excelCompactionService.getStatus().getTotalCompactions();
+
+        // A quarter of the rows, but fewer tombstones than the minimum
+        delete(0, 3, 6);
+        excelCompactionService.compactOverThreshold();
+        assertEquals(compactions, excelCompactionService.getStatus().getTotalCompactions());
+        assertEquals(3, excelCompactionService.getStatus().getTombstones());
+
+        delete(5);
+        excelCompactionService.compactOverThreshold();
+        ExcelCompactionStatus status = excelCompactionService.getStatus();
+        assertEquals(compactions + 1, status.getTotalCompactions());
+        assertEquals("threshold", status.getLastTrigger());
+        assertEquals(4, status.getLastTombstonesRemoved());
+        assertDenseWithEveryLiveRow();
+    }
+
+    @Test
+    void waitsForTheTombstoneRatio() throws IOException {
+        exportLedger(20);
+        long compactions = excelCompactionService.getStatus().getTotalCompactions();
+
+        // Past the minimum, but only a fifth of the rows
+        delete(1, 5, 9, 13);
+        excelCompactionService.compactOverThreshold();
+        assertEquals(compactions, excelCompactionService.getStatus().getTotalCompactions());
+        assertEquals(0.2, excelCompactionService.getStatus().getTombstoneRatio());
+
+        delete(10);
+        excelCompactionService.compactOverThreshold();
+        assertEquals(compactions + 1, excelCompactionService.getStatus().getTotalCompactions());
+        assertDenseWithEveryLiveRow();
+    }
+
+    @Test
+    void explicitCompactionIgnoresTheThreshold() throws IOException {
+        exportLedger(12);
+        delete(4);
+
+        assertTrue(excelCompactionService.compact("manual"));
+        assertEquals("manual", excelCompactionService.getStatus().getLastTrigger());
+        assertDenseWithEveryLiveRow();
+        // Nothing left to remove
+        assertTrue(excelCompactionService.compact("manual"));
+        assertEquals(0, excelCompactionService.getStatus().getLastTombstonesRemoved());
+    }
+
+    @Test
+    void leavesAWorkbookWithUnimportedEditsAlone() throws IOException {
+        exportLedger(12);
+        delete(0, 1, 2, 3);
+        // Typed into the sheet and not imported yet; a rewrite from the DB would lose it
+        try (InputStream in = Files.newInputStream(workbook); Workbook edited = new XSSFWorkbook(in)) {
+            edited.getSheetAt(0).getRow(5).createCell(1).setCellValue("Edited by hand");
+            try (OutputStream out = Files.newOutputStream(workbook)) {
+                edited.write(out);
+            }
+        }
+        byte[] before = Files.readAllBytes(workbook);
+        long compactions = excelCompactionService.getStatus().getTotalCompactions();
+
+        excelCompactionService.compactOverThreshold();
+        assertFalse(excelCompactionService.compact("manual"));
+        assertEquals(compactions, excelCompactionService.getStatus().getTotalCompactions());
+        assertNotNull(excelCompactionService.getStatus().getLastSkipReason());
+        assertArrayEquals(before, Files.readAllBytes(workbook));
+    }
+
+    private void exportLedger(int rows) {
+        ledger = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            ledger.add(transactionRepository.save(Transaction.builder()
+                    .description("Compaction test " + i)
+                    .amount(i)
+                    .date(LocalDate.of(2024, 5, 1))
+                    .build()));
+        }
+        // A fresh export leaves no tombstones, one row per transaction from row 1
+        excelExportService.exportTransactionsToExcel();
+    }
+
+    /**
+     * Deletes the transactions at these positions of what is left of the ledger from the DB and the sheet, the way
+     * the API does
+     */
+    private void delete(int... positions) {
+        List<Transaction> deleted = new ArrayList<>();
+        for (int position : positions) {
+            deleted.add(ledger.get(position));
+        }
+        for (Transaction transaction : deleted) {
+            transactionRepository.deleteById(transaction.getId());
+            excelExportService.deleteTransactionInExcel(transaction.getId());
+        }
+        ledger.removeAll(deleted);
+    }
+
+    private void assertDenseWithEveryLiveRow() throws IOException {
+        Map<Integer, Long> rows = rows(workbook);
+        List<Integer> dense = new ArrayList<>();
+        for (int row = 1; row <= ledger.size(); row++) {
+            dense.add(row);
+        }
+        assertEquals(dense, new ArrayList<>(rows.keySet()));
+        assertEquals(ledger.stream().map(Transaction::getId).toList(), new ArrayList<>(rows.values()));
+
+        // The rewrite leaves an index of the new file behind, without tombstones
+        assertEquals(new WorkbookRowIndex.Usage(ledger.size(), 0), workbookRowIndex.usage());
+        for (Transaction transaction : ledger) {
+            assertEquals(workbook, workbookRowIndex.locate(transaction.getId()));
+        }
+    }
+
+    private static Map<Integer, Long> rows(Path path) throws IOException {
+        Map<Integer, Long> rows = new TreeMap<>();
+        try (InputStream in = Files.newInputStream(path); Workbook workbook = new XSSFWorkbook(in)) {
+            for (Row row : workbook.getSheetAt(0)) {
+                if (row.getRowNum() > 0 && row.getCell(0) != null) {
+                    rows.put(row.getRowNum(), (long) row.getCell(0).getNumericCellValue());
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,243 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes against the workbook: the full export, and single-row writes with and without a kept row index
+ */
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        // The tests write and export explicitly
+        "app.excel.watcher.enabled=false",
+        "app.excel.write-behind.flush-interval-ms=3600000",
+        "app.excel.compaction.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:excel-export-service-tests"
+})
+class ExcelExportServiceTests {
+
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
+    @Autowired
+    private WorkbookRowIndex workbookRowIndex;
+
+    @Autowired
+    private ExcelImportService excelImportService;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    private Path workbook;
+    private List<Transaction> ledger;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void exportAFewRows() {
+        transactionRepository.deleteAll();
+        ledger = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            ledger.add(save("Row " + i, i * 10));
+        }
+        // One row per transaction in ID order, from row 1
+        excelExportService.exportTransactionsToExcel();
+        workbook = workbookPartitions.workbook();
+    }
+
+    @Test
+    void savedRowTakesTheRowADeleteFreed() throws IOException {
+        Transaction deleted = ledger.get(1);
+        excelExportService.deleteTransactionInExcel(deleted.getId());
+        assertNull(workbookRowIndex.locate(deleted.getId()));
+
+        Transaction added = save("Added", 60);
+        excelExportService.saveTransactionToExcel(added);
+
+        Map<Integer, Long> rows = rows(workbook);
+        assertEquals(added.getId(), rows.get(2));
+        assertEquals(5, rows.size());
+        assertFalse(rows.containsValue(deleted.getId()));
+    }
+
+    @Test
+    void updateAfterADeleteFindsItsRow() throws IOException {
+        excelExportService.deleteTransactionInExcel(ledger.get(0).getId());
+        Transaction updated = ledger.get(3);
+        updated.setDescription("Row 4 (updated)");
+        excelExportService.updateTransactionInExcel(updated.getId(), updated);
+
+        Map<Integer, Long> rows = rows(workbook);
+        assertNull(rows.get(1));
+        assertEquals(updated.getId(), rows.get(4));
+        assertEquals(4, rows.size());
+        assertEquals("Row 4 (updated)", description(workbook, 4));
+        assertEquals(workbook, workbookRowIndex.locate(updated.getId()));
+    }
+
+    @Test
+    void rebuildsTheIndexOfAnEditedWorkbookAndFillsItsGaps() throws IOException {
+        // Someone emptied rows 2 and 4 and moved row 3 down to 8; the kept index no longer describes the file
+        try (InputStream in = Files.newInputStream(workbook); Workbook edited = new XSSFWorkbook(in)) {
+            Sheet sheet = edited.getSheetAt(0);
+            sheet.removeRow(sheet.getRow(2));
+            sheet.removeRow(sheet.getRow(4));
+            sheet.shiftRows(3, 3, 5);
+            try (OutputStream out = Files.newOutputStream(workbook)) {
+                edited.write(out);
+            }
+        }
+
+        Transaction moved = ledger.get(2);
+        moved.setAmount(35);
+        Transaction added = save("Added", 70);
+        excelExportService.applyChangesToExcel(List.of(moved, added), List.of(ledger.get(4).getId()));
+
+        Map<Integer, Long> rows = rows(workbook);
+        // Updated where it was moved to, and the new row fills a gap instead of growing the sheet
+        assertEquals(ledger.get(0).getId(), rows.get(1));
+        assertEquals(moved.getId(), rows.get(8));
+        assertEquals(3, rows.size());
+        int addedRow = rows.entrySet().stream()
+                .filter(entry -> entry.getValue().equals(added.getId()))
+                .findFirst().orElseThrow().getKey();
+        assertTrue(addedRow < 8, "appended at " + addedRow);
+        assertEquals(35, amount(workbook, 8));
+    }
+
+    @Test
+    void fullExportContinuesOnFurtherSheetsAndReadsBack() throws IOException {
+        for (int i = 6; i <= 25; i++) {
+            ledger.add(save("Row " + i, i * 10));
+        }
+        // Ten rows a sheet instead of a million, so 25 transactions need three sheets
+        Object target = AopTestUtils.getTargetObject(excelExportService);
+        int maxRowIndex = (int) ReflectionTestUtils.getField(target, "maxRowIndex");
+        ReflectionTestUtils.setField(target, "maxRowIndex", 10);
+        try {
+            excelExportService.exportTransactionsToExcel();
+        } finally {
+            ReflectionTestUtils.setField(target, "maxRowIndex", maxRowIndex);
+        }
+
+        List<Transaction> exported = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(workbook); Workbook written = new XSSFWorkbook(in)) {
+            assertEquals(3, written.getNumberOfSheets());
+            assertEquals(List.of("transactions", "transactions (2)", "transactions (3)"),
+                    List.of(written.getSheetName(0), written.getSheetName(1), written.getSheetName(2)));
+            for (Sheet sheet : written) {
+                assertEquals("ID", sheet.getRow(0).getCell(0).getStringCellValue());
+                assertTrue(sheet.isColumnHidden(0));
+                assertTrue(sheet.getLastRowNum() <= 10);
+                for (Row row : sheet) {
+                    if (row.getRowNum() > 0) {
+                        exported.add(Transaction.builder()
+                                .id((long) row.getCell(0).getNumericCellValue())
+                                .description(row.getCell(1).getStringCellValue())
+                                .amount(row.getCell(2).getNumericCellValue())
+                                .date(LocalDate.parse(row.getCell(3).getStringCellValue()))
+                                .build());
+                    }
+                }
+            }
+        }
+        assertEquals(ledger.stream().map(ExcelExportServiceTests::withoutReference).toList(),
+                exported.stream().map(ExcelExportServiceTests::withoutReference).toList());
+        // Only the first sheet takes single-row writes, so only it is indexed
+        assertEquals(new WorkbookRowIndex.Usage(10, 0), workbookRowIndex.usage());
+
+        // The import reads every sheet back and finds nothing to change; the rows were saved behind its back,
+        // so it hashes the table afresh
+        excelSyncState.resetRowHashes();
+        excelSyncState.markOutOfSync();
+        ReconciliationSummary summary = excelImportService.importTransactionsFromExcel();
+        assertEquals(25, summary.getRowsExamined());
+        assertEquals(25, summary.getRowsUnchanged());
+        assertEquals(0, summary.getDeleted());
+    }
+
+    private static List<Object> withoutReference(Transaction transaction) {
+        return List.of(transaction.getId(), transaction.getDescription(), transaction.getAmount(), transaction.getDate());
+    }
+
+    private Transaction save(String description, double amount) {
+        return transactionRepository.save(Transaction.builder()
+                .description(description)
+                .amount(amount)
+                .date(LocalDate.of(2024, 5, 1))
+                .build());
+    }
+
+    /**
+     * Transaction ID by row number, over the rows of the first sheet that hold one
+     */
+    private static Map<Integer, Long> rows(Path path) throws IOException {
+        Map<Integer, Long> rows = new TreeMap<>();
+        try (InputStream in = Files.newInputStream(path); Workbook workbook = new XSSFWorkbook(in)) {
+            for (Row row : workbook.getSheetAt(0)) {
+                if (row.getRowNum() > 0 && row.getCell(0) != null) {
+                    rows.put(row.getRowNum(), (long) row.getCell(0).getNumericCellValue());
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static String description(Path path, int rowNum) throws IOException {
+        try (InputStream in = Files.newInputStream(path); Workbook workbook = new XSSFWorkbook(in)) {
+            return workbook.getSheetAt(0).getRow(rowNum).getCell(1).getStringCellValue();
+        }
+    }
+
+    private static double amount(Path path, int rowNum) throws IOException {
+        try (InputStream in = Files.newInputStream(path); Workbook workbook = new XSSFWorkbook(in)) {
+            return workbook.getSheetAt(0).getRow(rowNum).getCell(2).getNumericCellValue();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * API writes racing an import. The import is paused right after its journal flush, when it lists the files to
+ * read and is about to take its snapshot of DB IDs; a write that landed there would be reconciled against a
+ * sheet that does not have it. Runs with the write-behind journal and with direct row writes.
+ */
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        // The tests flush and import explicitly
+        "app.excel.watcher.enabled=false",
+        "app.excel.write-behind.flush-interval-ms=3600000",
+        "app.excel.compaction.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:import-concurrency-tests"
+})
+class ExcelImportConcurrencyTests {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @MockitoSpyBean
+    private WorkbookPartitions workbookPartitions;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ExcelImportService excelImportService;
+
+    @Autowired
+    private ExcelWriteBehindService excelWriteBehindService;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    private final AtomicBoolean pauseNextRun = new AtomicBoolean();
+    private CountDownLatch paused;
+    private CountDownLatch resume;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void pauseImportsAtTheirSnapshot() throws IOException {
+        paused = new CountDownLatch(1);
+        resume = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (pauseNextRun.compareAndSet(true, false)) {
+                paused.countDown();
+                assertTrue(resume.await(30, TimeUnit.SECONDS));
+            }
+            return invocation.callRealMethod();
+        }).when(workbookPartitions).existing();
+    }
+
+    @AfterEach
+    void shutdown() {
+        resume.countDown();
+        executor.shutdownNow();
+        ReflectionTestUtils.setField(excelWriteBehindService, "enabled", true);
+    }
+
+    @Test
+    void createDuringAnImportIsKept() throws Exception {
+        assertCreateDuringAnImportIsKept();
+    }
+
+    @Test
+    void updateDuringAnImportIsKept() throws Exception {
+        assertUpdateDuringAnImportIsKept();
+    }
+
+    @Test
+    void createDuringAnImportIsKeptWithDirectRowWrites() throws Exception {
+        ReflectionTestUtils.setField(excelWriteBehindService, "enabled", false);
+        assertCreateDuringAnImportIsKept();
+    }
+
+    @Test
+    void updateDuringAnImportIsKeptWithDirectRowWrites() throws Exception {
+        ReflectionTestUtils.setField(excelWriteBehindService, "enabled", false);
+        assertUpdateDuringAnImportIsKept();
+    }
+
+    private void assertCreateDuringAnImportIsKept() throws Exception {
+        Transaction created = duringImport(() -> transactionService.saveTransaction(Transaction.builder()
+                .description("Created during import")
+                .amount(12.5)
+                .date(LocalDate.of(2025, 3, 1))
+                .build()));
+
+        assertTrue(transactionRepository.existsById(created.getId()));
+        // Once in the sheet it survives the next import under the same ID
+        importAfterFlush();
+        assertEquals("Created during import", transactionRepository.findById(created.getId()).orElseThrow().getDescription());
+    }
+
+    private void assertUpdateDuringAnImportIsKept() throws Exception {
+        Transaction existing = transactionRepository.findAll().get(0);
+        Transaction change = Transaction.builder()
+                .description(existing.getDescription() + " (updated during import)")
+                .amount(existing.getAmount() + 1)
+                .date(existing.getDate())
+                .build();
+        duringImport(() -> transactionService.updateTransaction(existing.getId(), change));
+
+        assertEquals(change.getDescription(), transactionRepository.findById(existing.getId()).orElseThrow().getDescription());
+        importAfterFlush();
+        Transaction stored = transactionRepository.findById(existing.getId()).orElseThrow();
+        assertEquals(change.getDescription(), stored.getDescription());
+        assertEquals(change.getAmount(), stored.getAmount());
+    }
+
+    /**
+     * Runs the API write while an import is paused at its snapshot, and checks the write waits for the import
+     */
+    private <T> T duringImport(Callable<T> write) throws Exception {
+        excelSyncState.markOutOfSync();
+        pauseNextRun.set(true);
+        Future<ReconciliationSummary> importing = executor.submit(excelImportService::importTransactionsFromExcel);
+        assertTrue(paused.await(30, TimeUnit.SECONDS));
+
+        Future<T> writing = executor.submit(write);
+        assertThrows(TimeoutException.class, () -> writing.get(500, TimeUnit.MILLISECONDS));
+        resume.countDown();
+
+        assertFalse(importing.get(30, TimeUnit.SECONDS).isFileUnchanged());
+        return writing.get(30, TimeUnit.SECONDS);
+    }
+
+    private void importAfterFlush() {
+        excelWriteBehindService.flush();
+        excelSyncState.markOutOfSync();
+        excelImportService.importTransactionsFromExcel();
+    }
+}
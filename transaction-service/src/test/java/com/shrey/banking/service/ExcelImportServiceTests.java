@@ -0,0 +1,270 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The streaming reader against workbooks written the ways Excel and POI write them: shared and inline strings,
+ * text, numeric and date-formatted cells, and sheets with and without the hidden ID column
+ */
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        // The tests import explicitly
+        "app.excel.watcher.enabled=false",
+        "app.excel.write-behind.flush-interval-ms=3600000",
+        "app.excel.compaction.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:excel-import-service-tests"
+})
+class ExcelImportServiceTests {
+
+    @Autowired
+    private ExcelImportService excelImportService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
+    private Transaction rent;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void startFromOneTransaction() {
+        transactionRepository.deleteAll();
+        excelSyncState.resetRowHashes();
+        rent = transactionRepository.save(Transaction.builder()
+                .description("Rent")
+                .amount(1200)
+                .date(LocalDate.of(2024, 5, 1))
+                .build());
+    }
+
+    @Test
+    void readsSharedStringsAndDateCells() throws IOException {
+        writeWorkbook(workbook -> {
+            Sheet sheet = sheetWithIdColumn(workbook, "transactions");
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+
+            Row changed = sheet.createRow(1);
+            changed.createCell(0).setCellValue(rent.getId());
+            changed.createCell(1).setCellValue("Rent (May)");
+            changed.createCell(2).setCellValue(1250);
+            changed.createCell(3).setCellValue("2024-05-01");
+
+            // Typed in by hand: no ID, amount entered as text, a real date cell
+            Row added = sheet.createRow(2);
+            added.createCell(1).setCellValue("Coffee");
+            added.createCell(2).setCellValue("3.5");
+            added.createCell(3).setCellValue(LocalDate.of(2024, 5, 20));
+            added.getCell(3).setCellStyle(dateStyle);
+
+            // An ID of zero is no ID
+            Row zeroId = sheet.createRow(3);
+            zeroId.createCell(0).setCellValue(0);
+            zeroId.createCell(1).setCellValue("Tea");
+            zeroId.createCell(2).setCellValue(2);
+            zeroId.createCell(3).setCellValue("2024-05-21");
+        });
+
+        ReconciliationSummary summary = importWorkbook();
+
+        assertEquals(3, summary.getRowsExamined());
+        assertEquals(1, summary.getUpdated());
+        assertEquals(2, summary.getInserted());
+        List<Transaction> stored = stored();
+        assertEquals(rent.getId(), stored.get(0).getId());
+        assertTransaction(stored.get(0), "Rent (May)", 1250, LocalDate.of(2024, 5, 1));
+        assertTransaction(stored.get(1), "Coffee", 3.5, LocalDate.of(2024, 5, 20));
+        assertTransaction(stored.get(2), "Tea", 2, LocalDate.of(2024, 5, 21));
+    }
+
+    @Test
+    void readsInlineStringsAndSheetsWithoutTheIdColumn() throws IOException {
+        writeWorkbook(workbook -> {
+            Sheet first = sheetWithIdColumn(workbook, "transactions");
+            Row kept = first.createRow(1);
+            kept.createCell(0).setCellValue(rent.getId());
+            kept.createCell(1).setCellValue("Rent");
+            kept.createCell(2).setCellValue(1200);
+            kept.createCell(3).setCellValue("2024-05-01");
+        }, streaming -> {
+            // Streamed sheets hold their strings inline; this one starts at the description column
+            Sheet second = streaming.createSheet("more");
+            Row header = second.createRow(0);
+            header.createCell(0).setCellValue("Description");
+            header.createCell(1).setCellValue("Amount");
+            header.createCell(2).setCellValue("Date");
+            Row groceries = second.createRow(1);
+            groceries.createCell(0).setCellValue("Groceries");
+            groceries.createCell(1).setCellValue(85.5);
+            groceries.createCell(2).setCellValue("2024-06-02");
+        });
+
+        ReconciliationSummary summary = importWorkbook();
+
+        assertEquals(2, summary.getRowsExamined());
+        assertEquals(1, summary.getRowsUnchanged());
+        assertEquals(1, summary.getInserted());
+        List<Transaction> stored = stored();
+        assertEquals(2, stored.size());
+        assertTransaction(stored.get(1), "Groceries", 85.5, LocalDate.of(2024, 6, 2));
+    }
+
+    @Test
+    void skipsBlankRowsAndDatesBlankRowsToday() throws IOException {
+        writeWorkbook(workbook -> {
+            Sheet sheet = sheetWithIdColumn(workbook, "transactions");
+            Row kept = sheet.createRow(1);
+            kept.createCell(0).setCellValue(rent.getId());
+            kept.createCell(1).setCellValue("Rent");
+            kept.createCell(2).setCellValue(1200);
+            kept.createCell(3).setCellValue("2024-05-01");
+
+            // Cells left behind by a cleared row
+            Row blank = sheet.createRow(2);
+            blank.createCell(1).setCellValue("  ");
+            blank.createCell(2).setCellValue(0);
+            blank.createCell(3).setCellValue("");
+
+            Row undated = sheet.createRow(4);
+            undated.createCell(1).setCellValue("Parking");
+            undated.createCell(2).setCellValue(4);
+
+            // A number where the date goes, without a date format
+            Row serial = sheet.createRow(5);
+            serial.createCell(1).setCellValue("Toll");
+            serial.createCell(2).setCellValue(6);
+            serial.createCell(3).setCellValue(45000);
+
+            // No amount, still a transaction
+            Row free = sheet.createRow(6);
+            free.createCell(1).setCellValue("Free sample");
+            free.createCell(3).setCellValue("2024-05-02");
+        });
+
+        ReconciliationSummary summary = importWorkbook();
+
+        assertEquals(4, summary.getRowsExamined());
+        List<Transaction> stored = stored();
+        assertEquals(4, stored.size());
+        assertTransaction(stored.get(1), "Parking", 4, LocalDate.now());
+        assertTransaction(stored.get(2), "Toll", 6, LocalDate.now());
+        assertTransaction(stored.get(3), "Free sample", 0, LocalDate.of(2024, 5, 2));
+    }
+
+    @Test
+    void malformedRowFailsTheImportAndChangesNothing() throws IOException {
+        for (String[] malformed : List.of(new String[]{"twelve", "2024-05-02"}, new String[]{"12", "02/05/2024"})) {
+            writeWorkbook(workbook -> {
+                Sheet sheet = sheetWithIdColumn(workbook, "transactions");
+                Row changed = sheet.createRow(1);
+                changed.createCell(0).setCellValue(rent.getId());
+                changed.createCell(1).setCellValue("Rent (changed)");
+                changed.createCell(2).setCellValue(1300);
+                changed.createCell(3).setCellValue("2024-05-01");
+                Row bad = sheet.createRow(2);
+                bad.createCell(1).setCellValue("Lunch");
+                bad.createCell(2).setCellValue(malformed[0]);
+                bad.createCell(3).setCellValue(malformed[1]);
+            });
+
+            RuntimeException e = assertThrows(RuntimeException.class, this::importWorkbook);
+            if (malformed[0].equals("twelve")) {
+                assertTrue(e.getMessage().contains("Invalid amount 'twelve' in row 3"), e.getMessage());
+            }
+            List<Transaction> stored = stored();
+            assertEquals(1, stored.size());
+            assertTransaction(stored.get(0), "Rent", 1200, LocalDate.of(2024, 5, 1));
+        }
+    }
+
+    private ReconciliationSummary importWorkbook() {
+        excelSyncState.markOutOfSync();
+        return excelImportService.importTransactionsFromExcel();
+    }
+
+    private void writeWorkbook(Consumer<XSSFWorkbook> sheets) throws IOException {
+        writeWorkbook(sheets, streaming -> { });
+    }
+
+    /**
+     * Sheets written through XSSF keep their strings in the shared strings table; sheets added through SXSSF
+     * after them write theirs inline
+     */
+    private void writeWorkbook(Consumer<XSSFWorkbook> sheets, Consumer<SXSSFWorkbook> streamedSheets) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            sheets.accept(workbook);
+            SXSSFWorkbook streaming = new SXSSFWorkbook(workbook);
+            try (OutputStream out = Files.newOutputStream(workbookPartitions.workbook())) {
+                streamedSheets.accept(streaming);
+                streaming.write(out);
+            } finally {
+                streaming.dispose();
+            }
+        }
+    }
+
+    private static Sheet sheetWithIdColumn(XSSFWorkbook workbook, String name) {
+        Sheet sheet = workbook.createSheet(name);
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("ID");
+        header.createCell(1).setCellValue("Description");
+        header.createCell(2).setCellValue("Amount");
+        header.createCell(3).setCellValue("Date");
+        return sheet;
+    }
+
+    private List<Transaction> stored() {
+        return transactionRepository.findAll().stream()
+                .sorted(Comparator.comparing(Transaction::getId))
+                .toList();
+    }
+
+    private static void assertTransaction(Transaction transaction, String description, double amount, LocalDate date) {
+        assertEquals(description, transaction.getDescription());
+        assertEquals(amount, transaction.getAmount());
+        assertEquals(date, transaction.getDate());
+    }
+}
@@ -0,0 +1,289 @@
+package com.shrey.banking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrey.banking.config.ExcelHealthConfig;
+import com.shrey.banking.dto.ExcelJournalEntry;
+import com.shrey.banking.dto.ExcelJournalStatus;
+import com.shrey.banking.entity.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The journal on its own: the workbook is a mock, so every flush is checked by what it would have merged.
+ */
+class ExcelWriteBehindServiceTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<ExcelWriteBehindServiceImpl> started = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    private Path journal;
+    private ExcelExportService excelExportService;
+
+    @BeforeEach
+    void setUp() {
+        journal = dir.resolve("transactions.journal");
+        excelExportService = mock(ExcelExportService.class);
+    }
+
+    @AfterEach
+    void closeJournals() {
+        started.forEach(service -> ReflectionTestUtils.invokeMethod(service, "closeJournalWriter"));
+    }
+
+    @Test
+    void replaysTheJournalAfterACrash() throws IOException {
+        Files.write(journal, List.of(
+                line(upsert(1, 1L, "Rent", 1200)),
+                line(upsert(2, 2L, "Groceries", 80)),
+                line(upsert(3, 1L, "Rent (corrected)", 1250)),
+                line(delete(4, 2L)),
+                // Torn write, the crash hit half way through the line
+                "{\"sequence\":5,\"operation\":\"UPS"), StandardCharsets.UTF_8);
+
+        ExcelWriteBehindServiceImpl service = start(500);
+        ExcelJournalStatus status = service.getStatus();
+        assertEquals(2, status.getPendingEntries());
+        assertEquals(4, status.getLastRecordedSequence());
+        // The oldest pending entry is sequence 3, so everything up to 2 already reached the workbook
+        assertEquals(2, status.getLastFlushedSequence());
+
+        assertEquals(2, service.flush());
+        assertFlushed(List.of(transaction(1L, "Rent (corrected)", 1250)), List.of(2L));
+    }
+
+    @Test
+    void keepsWhatIsJournaledAfterATornTail() throws IOException {
+        Files.writeString(journal, line(upsert(1, 1L, "Rent", 1200)) + "\n{\"sequence\":2,\"oper", StandardCharsets.UTF_8);
+
+        ExcelWriteBehindServiceImpl service = start(500);
+        service.recordUpsert(transaction(3L, "Utilities", 95));
+
+        // A second crash before any flush: the entry journaled after the torn tail must replay too
+        ExcelWriteBehindServiceImpl restarted = start(500);
+        assertEquals(2, restarted.getStatus().getPendingEntries());
+        assertEquals(2, restarted.flush());
+        assertFlushed(List.of(transaction(1L, "Rent", 1200), transaction(3L, "Utilities", 95)), List.of());
+    }
+
+    @Test
+    void coalescesChangesPerTransaction() throws IOException {
+        ExcelWriteBehindServiceImpl service = start(500);
+        service.recordUpsert(transaction(1L, "Rent", 1200));
+        service.recordUpserts(List.of(transaction(2L, "Groceries", 80), transaction(1L, "Rent (corrected)", 1250)));
+        service.recordDelete(2L);
+        service.recordUpsert(transaction(3L, "Utilities", 95));
+
+        // Every change is journaled, only the latest per ID is pending
+        assertEquals(5, Files.readAllLines(journal).size());
+        assertEquals(3, service.getStatus().getPendingEntries());
+
+        assertEquals(3, service.flush());
+        assertFlushed(List.of(transaction(1L, "Rent (corrected)", 1250), transaction(3L, "Utilities", 95)), List.of(2L));
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void compactsTheJournalOnFlush() throws IOException {
+        ExcelWriteBehindServiceImpl service = start(500);
+        service.recordUpsert(transaction(1L, "Rent", 1200));
+        service.recordUpsert(transaction(2L, "Groceries", 80));
+        service.flush();
+        assertEquals(List.of(), Files.readAllLines(journal));
+
+        // Appends after a compaction land in the rewritten journal and carry on the sequence
+        service.recordUpsert(transaction(3L, "Utilities", 95));
+        List<String> lines = Files.readAllLines(journal);
+        assertEquals(1, lines.size());
+        assertEquals(3, objectMapper.readValue(lines.get(0), ExcelJournalEntry.class).getSequence());
+        assertEquals(2, service.getStatus().getLastFlushedSequence());
+    }
+
+    @Test
+    void keepsAFailedFlushPendingBehindNewerChanges() throws IOException {
+        ExcelWriteBehindServiceImpl service = start(500);
+        service.recordUpsert(transaction(1L, "Rent", 1200));
+        service.recordUpsert(transaction(2L, "Groceries", 80));
+
+        // Rent changes again while the failing flush is writing the workbook
+        doAnswer(invocation -> {
+            service.recordUpsert(transaction(1L, "Rent (corrected)", 1250));
+            throw new IllegalStateException("Workbook is locked");
+        }).when(excelExportService).applyChangesToExcel(anyList(), anyList());
+        assertThrows(IllegalStateException.class, service::flush);
+        assertEquals("Workbook is locked", service.getStatus().getLastError());
+        assertEquals(3, Files.readAllLines(journal).size());
+
+        doAnswer(invocation -> null).when(excelExportService).applyChangesToExcel(anyList(), anyList());
+        assertEquals(2, service.flush());
+        assertFlushed(List.of(transaction(1L, "Rent (corrected)", 1250), transaction(2L, "Groceries", 80)), List.of());
+        assertEquals(List.of(), Files.readAllLines(journal));
+    }
+
+    @Test
+    void flushesOnceABatchIsPending() {
+        ExcelWriteBehindServiceImpl service = start(2);
+        service.recordUpsert(transaction(1L, "Rent", 1200));
+        verify(excelExportService, never()).applyChangesToExcel(anyList(), anyList());
+
+        service.recordUpsert(transaction(2L, "Groceries", 80));
+        verify(excelExportService, times(1)).applyChangesToExcel(anyList(), anyList());
+        assertEquals(0, service.getStatus().getPendingEntries());
+    }
+
+    @Test
+    void failedFlushOnShutdownStaysInTheJournal() throws IOException {
+        ExcelWriteBehindServiceImpl service = start(500);
+        service.recordUpsert(transaction(1L, "Rent", 1200));
+        doThrow(new IllegalStateException("Disk full")).when(excelExportService).applyChangesToExcel(anyList(), anyList());
+        service.shutdown();
+
+        doAnswer(invocation -> null).when(excelExportService).applyChangesToExcel(anyList(), anyList());
+        ExcelWriteBehindServiceImpl restarted = start(500);
+        assertEquals(1, restarted.flush());
+        assertTrue(Files.readAllLines(journal).isEmpty());
+    }
+
+    @Test
+    void failedAppendIsReportedUntilTheJournalIsRewritten() throws IOException {
+        ExcelWriteBehindServiceImpl service = start(500);
+        service.recordUpsert(transaction(1L, "Rent", 1200));
+
+        // The journal file is lost and its place taken by something that cannot be written to
+        ((FileChannel) ReflectionTestUtils.getField(service, "journalChannel")).close();
+        Files.delete(journal);
+        Files.createDirectory(journal);
+        Files.writeString(journal.resolve("blocker"), "");
+
+        service.recordUpsert(transaction(2L, "Groceries", 80));
+        ExcelJournalStatus status = service.getStatus();
+        assertFalse(status.isJournalDurable());
+        assertEquals(1, status.getTotalAppendFailures());
+        assertTrue(status.getLastError().startsWith("Failed to append to journal"), status.getLastError());
+        assertEquals(Status.DOWN, journalHealth(service).getStatus());
+        // Still on its way to the workbook
+        assertEquals(2, status.getPendingEntries());
+
+        // The next write retries the whole journal, and fails again
+        service.recordDelete(1L);
+        assertEquals(2, service.getStatus().getTotalAppendFailures());
+        assertFalse(service.getStatus().isJournalDurable());
+
+        Files.delete(journal.resolve("blocker"));
+        Files.delete(journal);
+        service.recordUpsert(transaction(3L, "Utilities", 95));
+        assertTrue(service.getStatus().isJournalDurable());
+        assertEquals(Status.UP, journalHealth(service).getStatus());
+
+        // Everything still pending made it into the rewritten journal, so a crash now loses nothing
+        ExcelWriteBehindServiceImpl restarted = start(500);
+        assertEquals(3, restarted.flush());
+        assertFlushed(List.of(transaction(2L, "Groceries", 80), transaction(3L, "Utilities", 95)), List.of(1L));
+    }
+
+    private static Health journalHealth(ExcelWriteBehindService service) {
+        return new ExcelHealthConfig().excelJournalHealthIndicator(service).health();
+    }
+
+    private ExcelWriteBehindServiceImpl start(int batchSize) {
+        ExcelWriteBehindServiceImpl service = new ExcelWriteBehindServiceImpl();
+        ReflectionTestUtils.setField(service, "excelExportService", excelExportService);
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "excelFileCoordinator", mock(ExcelFileCoordinator.class));
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "fileOperationExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "batchSize", batchSize);
+        ReflectionTestUtils.setField(service, "journalFilePath", journal.toString());
+        try {
+            service.replayJournal();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        started.add(service);
+        return service;
+    }
+
+    /**
+     * Checks the last flush merged exactly these upserts and deletes.
+     */
+    @SuppressWarnings("unchecked")
+    private void assertFlushed(List<Transaction> upserts, List<Long> deletedIds) {
+        ArgumentCaptor<List<Transaction>> upserted = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<Long>> deleted = ArgumentCaptor.forClass(List.class);
+        verify(excelExportService, atLeastOnce()).applyChangesToExcel(upserted.capture(), deleted.capture());
+        assertEquals(sorted(upserts), sorted(upserted.getValue()));
+        assertEquals(deletedIds, deleted.getValue());
+    }
+
+    private static List<Transaction> sorted(List<Transaction> transactions) {
+        return transactions.stream().sorted(Comparator.comparing(Transaction::getId)).toList();
+    }
+
+    private String line(ExcelJournalEntry entry) throws IOException {
+        return objectMapper.writeValueAsString(entry);
+    }
+
+    private static ExcelJournalEntry upsert(long sequence, Long id, String description, double amount) {
+        return ExcelJournalEntry.builder()
+                .sequence(sequence)
+                .operation(ExcelJournalEntry.Operation.UPSERT)
+                .transactionId(id)
+                .description(description)
+                .amount(amount)
+                .date(LocalDate.of(2024, 5, 1))
+                .recordedAt(System.currentTimeMillis())
+                .build();
+    }
+
+    private static ExcelJournalEntry delete(long sequence, Long id) {
+        return ExcelJournalEntry.builder()
+                .sequence(sequence)
+                .operation(ExcelJournalEntry.Operation.DELETE)
+                .transactionId(id)
+                .recordedAt(System.currentTimeMillis())
+                .build();
+    }
+
+    private static Transaction transaction(Long id, String description, double amount) {
+        return Transaction.builder()
+                .id(id)
+                .description(description)
+                .amount(amount)
+                .date(LocalDate.of(2024, 5, 1))
+                .build();
+    }
+}
@@ -0,0 +1,214 @@
+package com.shrey.banking.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.shrey.banking.dto.MailAttachmentMode;
+import com.shrey.banking.entity.MailOutboxEntry;
+import com.shrey.banking.entity.MailOutboxStatus;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.MailOutboxRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "spring.mail.properties.mail.smtp.starttls.required=false",
+        // Tests dispatch explicitly or through the after-commit nudge, never the poll
+        "app.mail.outbox.poll-interval-ms=3600000",
+        // Own outbox, cached contexts of other tests poll the shared testdb
+        "spring.datasource.url=jdbc:h2:mem:mail-dispatch-tests"
+})
+class MailDispatchServiceTests {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private static final ExecutorService DISPATCHES = Executors.newSingleThreadExecutor();
+
+    private static String workbookPath;
+
+    @Autowired
+    private MailService mailService;
+
+    @Autowired
+    private MailDispatchService mailDispatchService;
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private WorkbookSnapshotStore workbookSnapshotStore;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        workbookPath = workbook.toString();
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void resetDispatcher() throws Exception {
+        // Wait for the previous test's after-commit dispatches, a late one would save back rows deleted below
+        ReflectionTestUtils.setField(mailDispatchService, "emailExecutor", DISPATCHES);
+        DISPATCHES.submit(() -> { }).get();
+        mailDispatchService.dispatchDue();
+        mailOutboxRepository.deleteAll();
+        ReflectionTestUtils.setField(mailDispatchService, "ratePerMinute", 0);
+        ReflectionTestUtils.setField(mailDispatchService, "digestEnabled", false);
+        ReflectionTestUtils.setField(mailDispatchService, "attachmentMode", MailAttachmentMode.WORKBOOK);
+        ReflectionTestUtils.setField(mailDispatchService, "windowStart", 0L);
+        ReflectionTestUtils.setField(mailDispatchService, "sentInWindow", 0);
+    }
+
+    @Test
+    void deliversQueuedMailsWithTheWorkbookAttached() throws Exception {
+        Transaction rent = transaction(1L, "Rent", 1200);
+        mailService.sendTransactionCreatedEmail(rent);
+        mailService.sendTransactionUpdatedEmail(rent, transaction(1L, "Rent (March)", 1250));
+        mailService.sendTransactionDeletedEmail(rent);
+
+        assertTrue(greenMail.waitForIncomingEmail(10_000, 3));
+        mailDispatchService.dispatchDue();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(List.of("New Transaction Created", "Transaction Deleted", "Transaction Updated"),
+                Arrays.stream(received).map(this::subject).sorted().toList());
+        assertTrue(GreenMailUtil.getBody(received[0]).contains("transactions.xlsx"));
+        assertTrue(mailOutboxRepository.findAll().stream().allMatch(entry -> entry.getStatus() == MailOutboxStatus.SENT));
+
+        // Every mail references the same snapshot, which still decodes to the workbook
+        String snapshotId = received[0].getHeader("X-Transactions-Snapshot", null);
+        assertNotNull(snapshotId);
+        assertTrue(Arrays.stream(received).allMatch(message -> snapshotId.equals(header(message, "X-Transactions-Snapshot"))));
+        assertEquals(Files.size(Paths.get(workbookPath)), workbookSnapshotStore.find(snapshotId).content().length);
+    }
+
+    @Test
+    void attachesOnlyTheAffectedRowsInDeltaMode() {
+        ReflectionTestUtils.setField(mailDispatchService, "attachmentMode", MailAttachmentMode.DELTA);
+        mailService.sendTransactionUpdatedEmail(transaction(7L, "Gym", 40), transaction(7L, "Gym, \"annual\"", 400));
+
+        assertTrue(greenMail.waitForIncomingEmail(10_000, 1));
+        MimeMessage received = greenMail.getReceivedMessages()[0];
+        String body = GreenMailUtil.getBody(received);
+        assertTrue(body.contains("transactions-delta.csv"));
+        assertTrue(body.contains("Before update,7,\"Gym\",40.0,2025-03-01"));
+        assertTrue(body.contains("Updated,7,\"Gym, \"\"annual\"\"\",400.0,2025-03-01"));
+        assertFalse(body.contains("transactions.xlsx"));
+    }
+
+    @Test
+    void holdsBackMailsOverTheRateLimit() {
+        ReflectionTestUtils.setField(mailDispatchService, "ratePerMinute", 2);
+        for (int i = 0; i < 4; i++) {
+            mailService.sendTransactionCreatedEmail(transaction((long) i, "Coffee " + i, 3));
+        }
+
+        assertTrue(greenMail.waitForIncomingEmail(10_000, 2));
+        mailDispatchService.dispatchDue();
+
+        assertEquals(2, greenMail.getReceivedMessages().length);
+        assertEquals(2, mailOutboxRepository.countByStatus(MailOutboxStatus.PENDING));
+    }
+
+    @Test
+    void rollsEventsIntoOneDigest() {
+        ReflectionTestUtils.setField(mailDispatchService, "digestEnabled", true);
+        ReflectionTestUtils.setField(mailDispatchService, "digestMaxEvents", 3);
+        ReflectionTestUtils.setField(mailDispatchService, "digestMaxWaitMs", 3_600_000L);
+
+        mailService.sendTransactionCreatedEmail(transaction(1L, "Groceries", 80));
+        mailService.sendTransactionsCreatedSummaryEmail(List.of(transaction(2L, "Fuel", 60), transaction(3L, "Parking", 5)));
+        // Not enough events yet and none old enough
+        assertEquals(0, mailDispatchService.dispatchDue());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+
+        mailService.sendTransactionDeletedEmail(transaction(1L, "Groceries", 80));
+        assertTrue(greenMail.waitForIncomingEmail(10_000, 1));
+        mailDispatchService.dispatchDue();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals("3 Transaction Changes", subject(received[0]));
+        String body = GreenMailUtil.getBody(received[0]);
+        assertTrue(body.contains("Groceries"));
+        assertTrue(body.contains("2 transactions in one batch"));
+        assertEquals(3, mailOutboxRepository.countByStatus(MailOutboxStatus.SENT));
+    }
+
+    @Test
+    void keepsMailsQueuedWhileTheServerIsDown() {
+        greenMail.stop();
+        mailService.sendTransactionCreatedEmail(transaction(1L, "Gym", 40));
+        mailDispatchService.dispatchDue();
+
+        MailOutboxEntry entry = mailOutboxRepository.findAll().get(0);
+        assertEquals(MailOutboxStatus.PENDING, entry.getStatus());
+        assertEquals(1, entry.getAttempts());
+        assertNotNull(entry.getLastError());
+        assertTrue(entry.getNextAttemptAt().isAfter(Instant.now()));
+
+        greenMail.start();
+        entry.setNextAttemptAt(Instant.now());
+        mailOutboxRepository.save(entry);
+        assertEquals(1, mailDispatchService.dispatchDue());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    private String header(MimeMessage message, String name) {
+        try {
+            return message.getHeader(name, null);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String subject(MimeMessage message) {
+        try {
+            return message.getSubject();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Transaction transaction(Long id, String description, double amount) {
+        return Transaction.builder()
+                .id(id)
+                .description(description)
+                .amount(amount)
+                .date(LocalDate.of(2025, 3, 1))
+                .build();
+    }
+}
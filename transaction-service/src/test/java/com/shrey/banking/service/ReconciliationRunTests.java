@@ -0,0 +1,167 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs straight against the DB, without a workbook: each test hands the run its own snapshot of the table.
+ */
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        "app.excel.watcher.enabled=false",
+        "app.reconciliation.batch-size=7",
+        "spring.datasource.url=jdbc:h2:mem:reconciliation-run-tests"
+})
+class ReconciliationRunTests {
+
+    @Autowired
+    private TransactionReconciliationService transactionReconciliationService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void startFromAFewRows() {
+        transactionRepository.deleteAll();
+        for (int i = 1; i <= 20; i++) {
+            transactionRepository.save(transaction(null, "Existing " + i, i));
+        }
+        // Saved behind the run's back, so let the next run hash the table afresh
+        excelSyncState.resetRowHashes();
+    }
+
+    @Test
+    void insertsUpdatesAndDeletesAgainstTheSnapshot() {
+        List<Transaction> existing = transactionRepository.findAll();
+        List<Transaction> snapshot = new ArrayList<>();
+        // Ten rows as they are, five changed, the last five left out
+        for (int i = 0; i < 15; i++) {
+            Transaction row = existing.get(i);
+            snapshot.add(i < 10 ? row : transaction(row.getId(), row.getDescription() + " (edited)", row.getAmount()));
+        }
+        snapshot.add(transaction(null, "New without an ID", 5));
+        snapshot.add(transaction(987_654_321L, "New with an unknown ID", 6));
+
+        ReconciliationSummary summary = transactionTemplate.execute(status -> {
+            ReconciliationRun run = transactionReconciliationService.startRun();
+            // Chunks smaller and larger than the batch size
+            run.accept(snapshot.subList(0, 3));
+            run.accept(snapshot.subList(3, snapshot.size()));
+            assertTrue(run.isMatched(existing.get(0).getId()));
+            assertFalse(run.isMatched(existing.get(19).getId()));
+            assertEquals(2, run.inserted());
+            ReconciliationSummary finished = run.finish();
+            assertThrows(IllegalStateException.class, run::finish);
+            return finished;
+        });
+
+        assertEquals(17, summary.getRowsExamined());
+        assertEquals(10, summary.getRowsUnchanged());
+        assertEquals(5, summary.getUpdated());
+        assertEquals(2, summary.getInserted());
+        assertEquals(5, summary.getDeleted());
+        assertEquals(12, summary.getRowsApplied());
+
+        List<Transaction> stored = transactionRepository.findAll();
+        assertEquals(17, stored.size());
+        assertEquals(existing.get(10).getDescription() + " (edited)",
+                transactionRepository.findById(existing.get(10).getId()).orElseThrow().getDescription());
+        assertFalse(transactionRepository.existsById(existing.get(19).getId()));
+        // Unknown IDs are inserted under a fresh ID, never the one from the sheet
+        assertFalse(transactionRepository.existsById(987_654_321L));
+        assertTrue(stored.stream().anyMatch(row -> row.getDescription().equals("New with an unknown ID")));
+    }
+
+    @Test
+    void rolledBackRunLeavesTheTableAlone() {
+        List<Transaction> before = transactionRepository.findAll();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            ReconciliationRun run = transactionReconciliationService.startRun();
+            run.accept(List.of(transaction(null, "Never committed", 1)));
+            run.finish();
+            status.setRollbackOnly();
+        });
+
+        assertEquals(before, transactionRepository.findAll());
+    }
+
+    @Test
+    void allocatesIdsInStepWithHibernate() {
+        Set<Long> ids = new HashSet<>();
+        transactionRepository.findAll().forEach(row -> ids.add(row.getId()));
+
+        // Alternate between the run and JPA so each draws blocks while the other holds one
+        for (int round = 0; round < 4; round++) {
+            List<Transaction> inserts = LongStream.range(0, 60 + round)
+                    .mapToObj(i -> transaction(null, "Run insert", i))
+                    .toList();
+            transactionTemplate.executeWithoutResult(status -> {
+                ReconciliationRun run = transactionReconciliationService.startRun();
+                run.accept(new ArrayList<>(transactionRepository.findAll()));
+                run.accept(inserts);
+                run.finish();
+            });
+            for (int i = 0; i < 30; i++) {
+                ids.add(transactionRepository.save(transaction(null, "JPA insert", i)).getId());
+            }
+        }
+
+        List<Transaction> stored = transactionRepository.findAll();
+        stored.forEach(row -> ids.add(row.getId()));
+        assertEquals(stored.size(), ids.size(), "an ID was handed out twice");
+        assertEquals(20 + 4 * 30 + 60 + 61 + 62 + 63, stored.size());
+        assertTrue(stored.stream().allMatch(row -> row.getId() > 0));
+    }
+
+    private static Transaction transaction(Long id, String description, double amount) {
+        return Transaction.builder()
+                .id(id)
+                .description(description)
+                .amount(amount)
+                .date(LocalDate.of(2024, 5, 1))
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.CursorPage;
+import com.shrey.banking.dto.TransactionFilter;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.exception.InvalidCursorException;
+import com.shrey.banking.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        "app.excel.watcher.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:transaction-paging-tests"
+})
+class TransactionPagingTests {
+    private static final String PREFIX = "Paging test ";
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private final TransactionFilter filter = TransactionFilter.builder().descriptionPrefix(PREFIX).build();
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void clearTestRows() {
+        transactionRepository.deleteAll(transactionRepository.findAll().stream()
+                .filter(transaction -> transaction.getDescription().startsWith(PREFIX))
+                .toList());
+    }
+
+    @Test
+    void pagesThroughDatedAndUndatedTransactions() {
+        List<Transaction> saved = new ArrayList<>();
+        saved.add(save(LocalDate.of(2024, 5, 2)));
+        saved.add(save(null));
+        saved.add(save(LocalDate.of(2024, 5, 1)));
+        saved.add(save(LocalDate.of(2024, 5, 2)));
+        saved.add(save(null));
+        saved.add(save(null));
+        saved.add(save(LocalDate.of(2023, 12, 31)));
+
+        // Newest first, ties by id, undated last
+        List<Long> expected = saved.stream()
+                .sorted(Comparator.comparing(Transaction::getDate, Comparator.nullsLast(Comparator.reverseOrder()))
+                        .thenComparing(Transaction::getId, Comparator.reverseOrder()))
+                .map(Transaction::getId)
+                .toList();
+
+        for (int size = 1; size <= saved.size() + 1; size++) {
+            assertEquals(expected, pageAll(size), "page size " + size);
+        }
+    }
+
+    @Test
+    void pagesThroughOnlyUndatedTransactions() {
+        Transaction first = save(null);
+        Transaction second = save(null);
+
+        CursorPage<Transaction> page = transactionService.getTransactions(filter, null, 1);
+        assertEquals(List.of(second.getId()), ids(page));
+        assertEquals("null:" + second.getId(), decode(page.getNextCursor()));
+
+        page = transactionService.getTransactions(filter, page.getNextCursor(), 1);
+        assertEquals(List.of(first.getId()), ids(page));
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        for (String cursor : List.of("not base64!", encode("2024-05-01"), encode("2024-13-01:5"), encode("null:x"))) {
+            assertThrows(InvalidCursorException.class, () -> transactionService.getTransactions(filter, cursor, 10), cursor);
+        }
+    }
+
+    private List<Long> pageAll(int size) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<Transaction> page = transactionService.getTransactions(filter, cursor, size);
+            ids.addAll(ids(page));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private Transaction save(LocalDate date) {
+        // Straight to the repository, the API fills in a missing date on create
+        return transactionRepository.save(Transaction.builder()
+                .description(PREFIX + date)
+                .amount(10)
+                .date(date)
+                .build());
+    }
+
+    private static List<Long> ids(CursorPage<Transaction> page) {
+        return page.getItems().stream().map(Transaction::getId).toList();
+    }
+
+    private static String encode(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+}
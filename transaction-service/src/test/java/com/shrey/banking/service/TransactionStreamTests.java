@@ -0,0 +1,125 @@
+package com.shrey.banking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        "app.excel.watcher.enabled=false",
+        "app.transactions.stream.flush-rows=3",
+        "spring.datasource.url=jdbc:h2:mem:transaction-stream-tests"
+})
+class TransactionStreamTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void startFromAKnownLedger() {
+        transactionRepository.deleteAll();
+        for (int i = 1; i <= 10; i++) {
+            transactionRepository.save(Transaction.builder()
+                    .description("Stream test " + i)
+                    .amount(i * 1.5)
+                    // Every third row undated, e.g. updated without a date
+                    .date(i % 3 == 0 ? null : LocalDate.of(2024, 5, i))
+                    .reference(i % 2 == 0 ? "payment-" + i : null)
+                    .build());
+        }
+    }
+
+    @Test
+    void streamsTheLedgerAsNdjson() throws Exception {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/transactions/stream")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElse(""));
+        assertTrue(response.body().endsWith("\n"));
+        assertEquals(ledger(), parse(response.body()));
+    }
+
+    @Test
+    void flushesTheFirstRowThenInBatches() throws IOException {
+        List<String> flushed = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushed.add(toString(StandardCharsets.UTF_8));
+            }
+        };
+        transactionService.streamTransactions(out);
+
+        // Row 1, rows 3, 6 and 9, then the tail
+        assertEquals(List.of(1, 3, 6, 9, 10), flushed.stream().map(body -> parse(body).size()).toList());
+        assertTrue(flushed.get(0).endsWith("\n"));
+        assertEquals(ledger(), parse(out.toString(StandardCharsets.UTF_8)));
+    }
+
+    private List<Transaction> ledger() {
+        return transactionRepository.findAll().stream()
+                .sorted(Comparator.comparing(Transaction::getId))
+                .toList();
+    }
+
+    private List<Transaction> parse(String body) {
+        List<Transaction> rows = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (line.isEmpty()) continue;
+            try {
+                rows.add(objectMapper.readValue(line, Transaction.class));
+            } catch (IOException e) {
+                throw new AssertionError("Not one JSON object per line: " + line, e);
+            }
+        }
+        return rows;
+    }
+}
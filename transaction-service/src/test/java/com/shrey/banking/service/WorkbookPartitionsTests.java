@@ -0,0 +1,248 @@
+package com.shrey.banking.service;
+
+import com.shrey.banking.dto.ReconciliationSummary;
+import com.shrey.banking.entity.Transaction;
+import com.shrey.banking.repository.TransactionRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.mail.username=test@example.com",
+        "spring.mail.host=localhost",
+        "spring.mail.port=2525",
+        "app.excel.layout=monthly",
+        // The tests flush, import and export explicitly
+        "app.excel.watcher.enabled=false",
+        "app.excel.write-behind.flush-interval-ms=3600000",
+        "app.excel.compaction.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:workbook-partitions-tests"
+})
+class WorkbookPartitionsTests {
+    private static final YearMonth MAY = YearMonth.of(2024, 5);
+    private static final YearMonth JUNE = YearMonth.of(2024, 6);
+
+    @Autowired
+    private WorkbookPartitions workbookPartitions;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ExcelImportService excelImportService;
+
+    @Autowired
+    private ExcelExportService excelExportService;
+
+    @Autowired
+    private ExcelWriteBehindService excelWriteBehindService;
+
+    @Autowired
+    private ExcelSyncState excelSyncState;
+
+    private Path may;
+    private Path june;
+    private Path undated;
+    private Transaction rent;
+    private Transaction groceries;
+    private Transaction holiday;
+    private Transaction refund;
+
+    @DynamicPropertySource
+    static void scratchWorkbook(DynamicPropertyRegistry registry) throws IOException {
+        // Keep the test away from the checked-in workbook
+        Path dir = Files.createTempDirectory("transactions-test");
+        Path workbook = dir.resolve("transactions.xlsx");
+        Files.copy(Paths.get("src/main/resources/transactions.xlsx"), workbook);
+        registry.add("app.excel.import.file.path", workbook::toString);
+        registry.add("app.excel.write-behind.journal.file.path", () -> dir.resolve("transactions.journal").toString());
+    }
+
+    @BeforeEach
+    void startFromTwoMonthsAndAnUndatedRow() throws IOException {
+        excelWriteBehindService.flush();
+        transactionRepository.deleteAll();
+        excelSyncState.resetRowHashes();
+        rent = save("Rent", 1200, LocalDate.of(2024, 5, 1));
+        groceries = save("Groceries", 85.5, LocalDate.of(2024, 5, 31));
+        holiday = save("Holiday", 640, LocalDate.of(2024, 6, 11));
+        refund = save("Refund", -20, null);
+
+        // Rewrite every partition from the DB; the ones of months it no longer has are removed
+        workbookPartitions.existing().forEach(workbookPartitions::markDirty);
+        excelExportService.exportTransactionsToExcel();
+
+        may = workbookPartitions.pathFor(MAY);
+        june = workbookPartitions.pathFor(JUNE);
+        undated = workbookPartitions.pathFor((LocalDate) null);
+    }
+
+    @Test
+    void routesTransactionsByMonthAndUndatedOnesToTheirOwnPartition() throws IOException {
+        assertEquals("transactions-2024-05.xlsx", may.getFileName().toString());
+        assertEquals(may, workbookPartitions.pathFor(LocalDate.of(2024, 5, 31)));
+        assertEquals(MAY, workbookPartitions.monthOf(may));
+        assertEquals("transactions-undated.xlsx", undated.getFileName().toString());
+        assertNull(workbookPartitions.monthOf(undated));
+        // Stays where it is when the month turns
+        assertNotEquals(workbookPartitions.active(), undated);
+
+        assertTrue(workbookPartitions.isWorkbookFile("transactions-2024-05.xlsx"));
+        assertTrue(workbookPartitions.isWorkbookFile("transactions-undated.xlsx"));
+        assertFalse(workbookPartitions.isWorkbookFile("transactions.xlsx"));
+        assertFalse(workbookPartitions.isWorkbookFile("transactions-2024-5.xlsx"));
+
+        assertEquals(List.of(may, june, undated), workbookPartitions.existing());
+        assertEquals(Set.of(rent.getId(), groceries.getId()), rows(may).keySet());
+        assertEquals(Set.of(holiday.getId()), rows(june).keySet());
+        assertEquals(Set.of(refund.getId()), rows(undated).keySet());
+    }
+
+    @Test
+    void exportRewritesOnlyTheQueuedPartitions() throws IOException {
+        // Changed behind the export's back, so only a rewrite from the DB shows them
+        transactionRepository.save(withDescription(rent, "Rent (corrected)"));
+        transactionRepository.save(withDescription(holiday, "Holiday (corrected)"));
+
+        workbookPartitions.markDirty(may);
+        excelExportService.exportTransactionsToExcel();
+
+        assertFalse(workbookPartitions.hasDirty());
+        assertEquals("Rent (corrected)", rows(may).get(rent.getId()));
+        assertEquals("Holiday", rows(june).get(holiday.getId()));
+    }
+
+    @Test
+    void updateMovesTheRowToThePartitionOfItsNewDate() throws IOException {
+        transactionService.updateTransaction(rent.getId(), withDate(rent, LocalDate.of(2024, 6, 2)));
+        transactionService.updateTransaction(refund.getId(), withDate(refund, LocalDate.of(2024, 5, 7)));
+        transactionService.updateTransaction(holiday.getId(), withDate(holiday, null));
+        excelWriteBehindService.flush();
+
+        assertEquals(Set.of(groceries.getId(), refund.getId()), rows(may).keySet());
+        assertEquals(Set.of(rent.getId()), rows(june).keySet());
+        assertEquals(Set.of(holiday.getId()), rows(undated).keySet());
+    }
+
+    @Test
+    void importMovesARowWhoseDateChangedInTheSheet() throws IOException {
+        edit(may, sheet -> row(sheet, groceries.getId()).createCell(3).setCellValue("2024-06-15"));
+
+        excelImportService.importTransactionsFromExcel();
+        excelWriteBehindService.flush();
+
+        assertEquals(LocalDate.of(2024, 6, 15), transactionRepository.findById(groceries.getId()).orElseThrow().getDate());
+        assertEquals(Set.of(rent.getId()), rows(may).keySet());
+        assertEquals(Set.of(holiday.getId(), groceries.getId()), rows(june).keySet());
+    }
+
+    @Test
+    void importOfOneMonthLeavesTheOtherPartitionsAlone() throws IOException {
+        edit(may, sheet -> {
+            sheet.removeRow(row(sheet, rent.getId()));
+            row(sheet, groceries.getId()).createCell(1).setCellValue("Groceries (edited)");
+        });
+
+        ReconciliationSummary summary = excelImportService.importTransactionsFromExcel();
+
+        assertEquals(1, summary.getRowsExamined());
+        assertEquals(1, summary.getUpdated());
+        // Only May's rows were up for deletion
+        assertEquals(1, summary.getDeleted());
+        assertFalse(transactionRepository.existsById(rent.getId()));
+        assertEquals("Groceries (edited)", transactionRepository.findById(groceries.getId()).orElseThrow().getDescription());
+        assertTrue(transactionRepository.existsById(holiday.getId()));
+        assertTrue(transactionRepository.existsById(refund.getId()));
+    }
+
+    private Transaction save(String description, double amount, LocalDate date) {
+        return transactionRepository.save(Transaction.builder()
+                .description(description)
+                .amount(amount)
+                .date(date)
+                .build());
+    }
+
+    private static Transaction withDescription(Transaction transaction, String description) {
+        transaction.setDescription(description);
+        return transaction;
+    }
+
+    private static Transaction withDate(Transaction transaction, LocalDate date) {
+        return Transaction.builder()
+                .description(transaction.getDescription())
+                .amount(transaction.getAmount())
+                .date(date)
+                .build();
+    }
+
+    /**
+     * Descriptions by ID of the rows in the first sheet of the workbook
+     */
+    private static Map<Long, String> rows(Path path) throws IOException {
+        Map<Long, String> rows = new HashMap<>();
+        try (InputStream in = Files.newInputStream(path); Workbook workbook = new XSSFWorkbook(in)) {
+            for (Row row : workbook.getSheetAt(0)) {
+                if (row.getRowNum() > 0) {
+                    rows.put((long) row.getCell(0).getNumericCellValue(), row.getCell(1).getStringCellValue());
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static Row row(Sheet sheet, long id) {
+        for (Row row : sheet) {
+            if (row.getRowNum() > 0 && (long) row.getCell(0).getNumericCellValue() == id) {
+                return row;
+            }
+        }
+        throw new AssertionError("No row for " + id);
+    }
+
+    /**
+     * Edits the workbook the way someone with the file open would. Cells are replaced rather than changed, since
+     * POI keeps the inline string of a cell the export wrote over a new value.
+     */
+    private static void edit(Path path, Consumer<Sheet> change) throws IOException {
+        FileTime before = Files.getLastModifiedTime(path);
+        try (InputStream in = Files.newInputStream(path); Workbook workbook = new XSSFWorkbook(in)) {
+            change.accept(workbook.getSheetAt(0));
+            try (OutputStream out = Files.newOutputStream(path)) {
+                workbook.write(out);
+            }
+        }
+        Files.setLastModifiedTime(path, FileTime.fromMillis(before.toMillis() + 1000));
+    }
+}
@@ -0,0 +1,140 @@
+package com.shrey.banking.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkbookRowIndexTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendsAfterTheLastRowAndStopsAtTheLimit() {
+        WorkbookRowIndex.Rows rows = new WorkbookRowIndex.Rows();
+        assertEquals(1, rows.allocate(10, 3));
+        assertEquals(2, rows.allocate(11, 3));
+        assertEquals(3, rows.allocate(12, 3));
+        assertEquals(-1, rows.allocate(13, 3));
+        assertEquals(-1, rows.find(13));
+        assertEquals(3, rows.size());
+    }
+
+    @Test
+    void allocateAfterRemoveReusesTheFreedRow() {
+        WorkbookRowIndex.Rows rows = new WorkbookRowIndex.Rows();
+        for (long id = 1; id <= 5; id++) {
+            rows.allocate(id, 100);
+        }
+
+        assertEquals(2, rows.remove(2));
+        assertEquals(4, rows.remove(4));
+        assertEquals(-1, rows.remove(4));
+        assertEquals(2, rows.freeRows());
+
+        // Last freed first, and only then past the end
+        assertEquals(4, rows.allocate(6, 100));
+        assertEquals(2, rows.allocate(7, 100));
+        assertEquals(6, rows.allocate(8, 100));
+        assertEquals(0, rows.freeRows());
+    }
+
+    @Test
+    void gapsBetweenRowsReadFromTheSheetBecomeFree() {
+        WorkbookRowIndex.Rows rows = new WorkbookRowIndex.Rows(4);
+        rows.occupied(100, 1);
+        // Typed in without an ID: takes its row, but nothing to find it by
+        rows.occupied(3);
+        rows.occupied(101, 6);
+        // No ID yet
+        rows.occupied(0, 7);
+
+        assertEquals(1, rows.find(100));
+        assertEquals(6, rows.find(101));
+        assertEquals(2, rows.size());
+        assertEquals(3, rows.freeRows());
+
+        Set<Integer> allocated = new HashSet<>();
+        for (long id = 200; id < 203; id++) {
+            allocated.add(rows.allocate(id, 100));
+        }
+        assertEquals(Set.of(2, 4, 5), allocated);
+        assertEquals(8, rows.allocate(203, 100));
+    }
+
+    @Test
+    void freeRowStackGrowsPastItsInitialCapacity() {
+        WorkbookRowIndex.Rows rows = new WorkbookRowIndex.Rows();
+        rows.occupied(1, 1);
+        rows.occupied(2, 100);
+
+        assertEquals(98, rows.freeRows());
+        for (int row = 99; row >= 2; row--) {
+            assertEquals(row, rows.allocate(1000 + row, 1000));
+        }
+        assertEquals(101, rows.allocate(2000, 1000));
+    }
+
+    @Test
+    void takeOnlyHandsOutAnIndexThatStillDescribesTheFile() throws IOException {
+        WorkbookRowIndex index = new WorkbookRowIndex();
+        Path workbook = Files.writeString(dir.resolve("transactions.xlsx"), "v1");
+        WorkbookRowIndex.Rows rows = new WorkbookRowIndex.Rows();
+        rows.occupied(42, 1);
+
+        index.publish(rows, workbook);
+        assertTrue(index.isKept(workbook));
+        assertEquals(workbook, index.locate(42));
+        assertNull(index.locate(43));
+        assertSame(rows, index.take(workbook));
+        // Taken, not shared
+        assertFalse(index.isKept(workbook));
+        assertNull(index.take(workbook));
+
+        index.publish(rows, workbook);
+        // Edited outside the service
+        Files.writeString(workbook, "v2, longer");
+        assertNull(index.take(workbook));
+
+        index.publish(rows, workbook);
+        Files.setLastModifiedTime(workbook, FileTime.fromMillis(Files.getLastModifiedTime(workbook).toMillis() + 1000));
+        assertNull(index.take(workbook));
+
+        index.publish(rows, workbook);
+        Files.delete(workbook);
+        assertNull(index.take(workbook));
+    }
+
+    @Test
+    void countsRowsAndTombstonesPerFile() throws IOException {
+        WorkbookRowIndex index = new WorkbookRowIndex();
+        assertNull(index.usage());
+
+        WorkbookRowIndex.Rows may = new WorkbookRowIndex.Rows();
+        may.occupied(1, 1);
+        may.occupied(2, 3);
+        WorkbookRowIndex.Rows june = new WorkbookRowIndex.Rows();
+        june.occupied(3, 1);
+        june.remove(3);
+        Path mayPath = Files.writeString(dir.resolve("transactions-2024-05.xlsx"), "may");
+        Path junePath = Files.writeString(dir.resolve("transactions-2024-06.xlsx"), "june");
+        index.publish(may, mayPath);
+        index.publish(june, junePath);
+
+        assertEquals(new WorkbookRowIndex.Usage(2, 2), index.usage());
+        assertEquals(new WorkbookRowIndex.Usage(2, 1), index.usageByFile().get(mayPath));
+        assertEquals(new WorkbookRowIndex.Usage(0, 1), index.usageByFile().get(junePath));
+    }
+}
@@ -0,0 +1,51 @@
+package com.shrey.banking.util;
+
+import com.shrey.banking.entity.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ContentHashTests {
+    private static final LocalDate DATE = LocalDate.of(2024, 5, 1);
+
+    @Test
+    void ignoresTheIdAndReference() {
+        Transaction row = Transaction.builder().id(1L).description("Rent").amount(1200).date(DATE).build();
+        Transaction stored = Transaction.builder().id(99L).description("Rent").amount(1200).date(DATE).reference("payment-5").build();
+
+        assertEquals(ContentHash.of(row), ContentHash.of(stored));
+        assertEquals(ContentHash.of(row), ContentHash.of("Rent", 1200, DATE));
+    }
+
+    @Test
+    void changesWithEveryVisibleField() {
+        List<Long> hashes = List.of(
+                ContentHash.of("Rent", 1200, DATE),
+                ContentHash.of("Rent ", 1200, DATE),
+                ContentHash.of("rent", 1200, DATE),
+                ContentHash.of("Rent", 1200.01, DATE),
+                ContentHash.of("Rent", -1200, DATE),
+                ContentHash.of("Rent", 1200, DATE.plusDays(1)),
+                ContentHash.of("Rent", 1200, null),
+                // The separator keeps a shifted description apart from the amount that follows it
+                ContentHash.of("Ren", 1200, DATE),
+                ContentHash.of("", 1200, DATE));
+
+        assertEquals(hashes.size(), new HashSet<>(hashes).size());
+    }
+
+    @Test
+    void spreadsSimilarRows() {
+        // Rows that differ only in a counter, like repeated monthly payments
+        Set<Long> hashes = new HashSet<>();
+        for (int i = 0; i < 50_000; i++) {
+            hashes.add(ContentHash.of("Payment " + i, i % 100, DATE.plusDays(i % 365)));
+        }
+        assertEquals(50_000, hashes.size());
+    }
+}
@@ -0,0 +1,62 @@
+package com.shrey.banking.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSetTests {
+
+    @Test
+    void growsWellPastItsExpectedSize() {
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Sequential IDs like the DB hands out, mixed with arbitrary ones
+            long value = i % 2 == 0 ? i : random.nextLong();
+            assertEquals(expected.add(value), set.add(value));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long value : expected) {
+            assertTrue(set.contains(value));
+        }
+        assertFalse(set.contains(-1));
+        assertFalse(set.contains(100_001));
+    }
+
+    @Test
+    void keepsZeroApartFromEmptySlots() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0));
+        assertTrue(set.isEmpty());
+
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertTrue(set.add(-7));
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    void visitsEveryValueOnce() {
+        LongHashSet set = new LongHashSet(0);
+        for (long value = -50; value <= 50; value++) {
+            set.add(value);
+            set.add(value);
+        }
+
+        Set<Long> visited = new HashSet<>();
+        set.forEach(value -> assertTrue(visited.add(value), "visited twice: " + value));
+        assertEquals(101, visited.size());
+        assertEquals(101, set.size());
+    }
+}
@@ -0,0 +1,97 @@
+package com.shrey.banking.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongLongHashMapTests {
+
+    @Test
+    void growsWellPastItsExpectedSize() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        for (long key = 1; key <= 100_000; key++) {
+            map.put(key, key * 31);
+        }
+        // Overwrites keep the size
+        map.put(7, -1);
+
+        assertEquals(100_000, map.size());
+        assertEquals(-1, map.get(7, 0));
+        for (long key = 8; key <= 100_000; key++) {
+            assertEquals(key * 31, map.get(key, 0));
+        }
+        assertEquals(42, map.get(100_001, 42));
+        assertFalse(map.containsKey(100_001));
+    }
+
+    @Test
+    void removalKeepsTheRestReachable() {
+        // Mirror a HashMap through random puts and removes; collisions and wrap-around make the probe chains long
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.put(key, i);
+                expected.put(key, (long) i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 5_000; key++) {
+            Long value = expected.get(key);
+            assertEquals(value != null, map.containsKey(key), "key " + key);
+            assertEquals(value != null ? value : -1, map.get(key, -1), "key " + key);
+        }
+    }
+
+    @Test
+    void removesEverythingInAnyOrder() {
+        LongLongHashMap map = new LongLongHashMap();
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1; key <= 1_000; key++) {
+            map.put(key, key);
+            keys.add(key);
+        }
+        Collections.shuffle(keys, new Random(3));
+
+        for (int i = 0; i < keys.size(); i++) {
+            map.remove(keys.get(i));
+            map.remove(keys.get(i));
+            assertEquals(keys.size() - i - 1, map.size());
+            for (int j = i + 1; j < keys.size(); j++) {
+                assertTrue(map.containsKey(keys.get(j)));
+            }
+        }
+        map.put(5, 5);
+        assertEquals(5, map.get(5, 0));
+    }
+
+    @Test
+    void reservesKeyZero() {
+        LongLongHashMap map = new LongLongHashMap();
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, 1));
+        assertFalse(map.containsKey(0));
+        assertEquals(9, map.get(0, 9));
+        map.remove(0);
+
+        map.put(1, 1);
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(1));
+    }
+}